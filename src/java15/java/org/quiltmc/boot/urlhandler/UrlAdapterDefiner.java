@@ -0,0 +1,42 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.urlhandler;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+
+/** The java 15 version of {@code UrlAdapterDefiner}, used through META-INF/versions/15 in the jar. Adapters are defined
+ * as hidden classes when the delegate's own lookup allows it, so they can be unloaded with nothing else referring to
+ * them by name. */
+final class UrlAdapterDefiner {
+
+	private UrlAdapterDefiner() {}
+
+	static Class<?> define(Class<?> host, Lookup lookup, byte[] bytes) throws ReflectiveOperationException {
+		// Defining a hidden class needs full privilege access in the same package, which privateLookupIn doesn't give
+		// across modules
+		if (lookup != null && lookup.hasFullPrivilegeAccess()) {
+			Class<?> lookupClass = lookup.lookupClass();
+			if (lookupClass.getClassLoader() == host.getClassLoader()
+				&& lookupClass.getPackageName().equals(host.getPackageName())) {
+				return lookup.defineHiddenClass(bytes, true).lookupClass();
+			}
+		}
+
+		return MethodHandles.privateLookupIn(host, MethodHandles.lookup()).defineClass(bytes);
+	}
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+import org.quiltmc.boot.java9.QuiltUrlStreamHandlerProvider;
+
+/** The java 9 version of {@code UrlHandlerProviders}, used through META-INF/versions/9 in the jar. */
+final class UrlHandlerProviders {
+
+	private UrlHandlerProviders() {}
+
+	/** @return True if {@link java.net.URL} will find {@link QuiltUrlStreamHandlerProvider}, which it only looks for
+	 *         in the system class loader. */
+	static boolean registered() {
+		return QuiltUrlStreamHandlerProvider.class.getClassLoader() == ClassLoader.getSystemClassLoader();
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.java9;
+
+import java.net.URLStreamHandler;
+import java.net.spi.URLStreamHandlerProvider;
+
+import org.quiltmc.boot.urlhandler.BootUrlStreamHandler;
+
+/** Provides the quilt.*fs url schemes on java 9 and later, so {@link java.net.URL} doesn't need to search the
+ * {@code java.protocol.handler.pkgs} packages by reflection for every scheme it hasn't seen before.
+ * <p>
+ * Service providers can't be added through META-INF/versions, so this is at the root of the jar, compiled for java 9.
+ * It is the only class there which isn't compiled for java 8, and is alone in this package so tools which scan the
+ * jar on java 8 can skip it. */
+public final class QuiltUrlStreamHandlerProvider extends URLStreamHandlerProvider {
+
+	@Override
+	public URLStreamHandler createURLStreamHandler(String protocol) {
+		// Protocols are always lower case by the time they get here
+		if (protocol.length() != "quilt.afs".length() || !protocol.startsWith("quilt.") || !protocol.endsWith("fs")) {
+			return null;
+		}
+
+		char letter = protocol.charAt("quilt.".length());
+		if (letter < 'a' || letter > 'z') {
+			return null;
+		}
+		return new Handler(letter);
+	}
+
+	/** Public so {@link BootUrlStreamHandler} can look up its own methods through it from another package. */
+	public static final class Handler extends BootUrlStreamHandler {
+		Handler(char letter) {
+			super(letter);
+		}
+	}
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+/** Lets benchmarks outside this package activate a {@link BootstrapLaunch} without going through
+ * {@link Bootstrap#start(String[])}. */
+public final class BenchmarkLaunch {
+	private BenchmarkLaunch() {}
+
+	public static BootstrapLaunch activate() {
+		BootstrapLaunch launch = new BootstrapLaunch();
+		launch.activate();
+		return launch;
+	}
+
+	public static void deactivate(BootstrapLaunch launch) {
+		launch.deactivate();
+	}
+}
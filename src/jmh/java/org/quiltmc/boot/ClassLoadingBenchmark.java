@@ -0,0 +1,106 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+/** Measures how concurrent class loading through {@link BootstrapClassLoader} scales with the number of threads. Each
+ * iteration uses a fresh loader, and every thread defines {@link #BATCH} distinct classes in it.
+ * <p>
+ * Run with -PjmhThreads=1,2,4,8,... to see the scaling, and compare against {@code parallelCapable=false}, which
+ * locks the whole loader for every class like a plain subclass of {@link ClassLoader} would. {@code mappedJars}
+ * switches between {@link java.util.jar.JarFile} and {@link MappedJar}. */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = ClassLoadingBenchmark.BATCH)
+@Measurement(iterations = 10, batchSize = ClassLoadingBenchmark.BATCH)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClassLoadingBenchmark {
+
+	static final int BATCH = 1000;
+	private static final String PACKAGE = "org.quiltmc.boot.synthetic";
+
+	@Param({ "true", "false" })
+	public boolean parallelCapable;
+
+	@Param({ "false", "true" })
+	public boolean mappedJars;
+
+	private final AtomicInteger next = new AtomicInteger();
+	private Path jar;
+	private String[] names;
+	private BootstrapClassLoader loader;
+
+	@Setup(Level.Trial)
+	public void writeJar(BenchmarkParams params) throws IOException {
+		System.setProperty(Bootstrap.SYSTEM_PROPERTY_MAPPED_JARS, Boolean.toString(mappedJars));
+
+		names = new String[BATCH * params.getThreads()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = SyntheticJar.className(PACKAGE, i);
+		}
+
+		jar = Files.createTempFile("quilt-bootstrap-classes", ".jar");
+		SyntheticJar.write(jar, PACKAGE, names.length);
+	}
+
+	@Setup(Level.Iteration)
+	public void createLoader() throws IOException {
+		loader = parallelCapable ? new BootstrapClassLoader() : new SerialClassLoader();
+		loader.add(jar.toUri().toURL());
+		next.set(0);
+	}
+
+	@TearDown(Level.Iteration)
+	public void closeLoader() throws IOException {
+		loader.close();
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteJar() throws IOException {
+		Files.deleteIfExists(jar);
+	}
+
+	@Benchmark
+	public Class<?> loadClass() throws ClassNotFoundException {
+		return loader.loadClass(names[next.getAndIncrement()]);
+	}
+
+	/** Doesn't call {@link ClassLoader#registerAsParallelCapable()}, so loadClass locks on the loader instance. */
+	static class SerialClassLoader extends BootstrapClassLoader {
+	}
+}
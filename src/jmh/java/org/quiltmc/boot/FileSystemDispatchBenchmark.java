@@ -0,0 +1,145 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.DirectoryStream.Filter;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.quiltmc.boot.urlhandler.StubUrlStreamHandler;
+
+/** Measures the cost of going through {@link BootFileSystemProvider} compared to calling the delegate directly. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileSystemDispatchBenchmark {
+
+	private static final Set<OpenOption> READ = Collections.singleton(StandardOpenOption.READ);
+	private static final Filter<Path> ACCEPT_ALL = entry -> true;
+
+	private BootstrapLaunch launch;
+	private FileSystemProvider direct;
+	private FileSystemProvider boot;
+	private Path path;
+
+	@Setup
+	public void setup() {
+		path = Paths.get("mods", "example.jar");
+		direct = new StubFileSystemProvider(
+			"quilt.afs", new byte[4096], Arrays.asList(path, Paths.get("mods", "other.jar"))
+		);
+		launch = BenchmarkLaunch.activate();
+		launch.putFileSystemProvider('a', direct, new StubUrlStreamHandler());
+		boot = new BootFileSystemProvider.BootFileSystemProviderA();
+	}
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkLaunch.deactivate(launch);
+	}
+
+	@Benchmark
+	public SeekableByteChannel newByteChannelBoot() throws IOException {
+		return boot.newByteChannel(path, READ);
+	}
+
+	@Benchmark
+	public SeekableByteChannel newByteChannelDirect() throws IOException {
+		return direct.newByteChannel(path, READ);
+	}
+
+	@Benchmark
+	public BasicFileAttributes readAttributesBoot() throws IOException {
+		return boot.readAttributes(path, BasicFileAttributes.class);
+	}
+
+	@Benchmark
+	public BasicFileAttributes readAttributesDirect() throws IOException {
+		return direct.readAttributes(path, BasicFileAttributes.class);
+	}
+
+	@Benchmark
+	public void checkAccessBoot() throws IOException {
+		boot.checkAccess(path, AccessMode.READ);
+	}
+
+	@Benchmark
+	public void checkAccessDirect() throws IOException {
+		direct.checkAccess(path, AccessMode.READ);
+	}
+
+	@Benchmark
+	public DirectoryStream<Path> newDirectoryStreamBoot() throws IOException {
+		return boot.newDirectoryStream(path, ACCEPT_ALL);
+	}
+
+	@Benchmark
+	public DirectoryStream<Path> newDirectoryStreamDirect() throws IOException {
+		return direct.newDirectoryStream(path, ACCEPT_ALL);
+	}
+
+	/** Lists a directory and reads the attributes of every entry, as a walk of a mod folder would. */
+	@Benchmark
+	public int walkBoot() throws IOException {
+		int count = 0;
+		try (DirectoryStream<Path> stream = boot.newDirectoryStream(path, ACCEPT_ALL)) {
+			for (Path entry : stream) {
+				count += (int) boot.readAttributes(entry, BasicFileAttributes.class).size();
+			}
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int walkAttributedBoot() throws IOException {
+		int count = 0;
+		AttributedDirectoryStreamProvider attributed = (AttributedDirectoryStreamProvider) boot;
+		try (DirectoryStream<AttributedPath> stream = attributed.newAttributedDirectoryStream(path, ACCEPT_ALL)) {
+			for (AttributedPath entry : stream) {
+				count += (int) entry.attributes().size();
+			}
+		}
+		return count;
+	}
+}
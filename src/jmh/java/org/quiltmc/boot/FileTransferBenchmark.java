@@ -0,0 +1,110 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Compares {@link FileTransfer} against the JDK's stream copies, which is what a copy between a quilt.*fs path and
+ * the default filesystem ends up using. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileTransferBenchmark {
+
+	@Param({ "65536", "16777216" })
+	public int size;
+
+	private Path directory;
+	private Path source;
+	private Path target;
+
+	@Setup
+	public void setup() throws IOException {
+		directory = Files.createTempDirectory("quilt-bootstrap-transfer");
+		source = directory.resolve("source.jar");
+		target = directory.resolve("target.jar");
+
+		byte[] bytes = new byte[size];
+		new Random(0).nextBytes(bytes);
+		Files.write(source, bytes);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(source);
+		Files.deleteIfExists(target);
+		Files.deleteIfExists(directory);
+	}
+
+	@Benchmark
+	public long streamToPathJdk() throws IOException {
+		try (InputStream in = new FileInputStream(source.toFile())) {
+			return Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	@Benchmark
+	public long streamToPathTransfer() throws IOException {
+		try (InputStream in = new FileInputStream(source.toFile())) {
+			return FileTransfer.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	@Benchmark
+	public long pathToStreamJdk() throws IOException {
+		try (OutputStream out = new FileOutputStream(target.toFile())) {
+			return Files.copy(source, out);
+		}
+	}
+
+	@Benchmark
+	public long pathToStreamTransfer() throws IOException {
+		try (OutputStream out = new FileOutputStream(target.toFile())) {
+			return FileTransfer.copy(source, out);
+		}
+	}
+
+	@Benchmark
+	public void pathToPathTransfer() throws IOException {
+		FileTransfer.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+	}
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.DirectoryStream.Filter;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** A {@link FileSystemProvider} that answers every supported call from memory without looking at the path, so
+ * benchmarks only measure the cost of getting to it. */
+public class StubFileSystemProvider extends FileSystemProvider {
+
+	static final BasicFileAttributes ATTRIBUTES = new StubAttributes();
+
+	private final String scheme;
+	private final byte[] contents;
+	private final List<Path> entries;
+
+	public StubFileSystemProvider(String scheme, byte[] contents, List<Path> entries) {
+		this.scheme = scheme;
+		this.contents = contents;
+		this.entries = entries;
+	}
+
+	@Override
+	public String getScheme() {
+		return scheme;
+	}
+
+	@Override
+	public FileSystem newFileSystem(URI uri, Map<String, ?> env) throws IOException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public FileSystem getFileSystem(URI uri) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Path getPath(URI uri) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs)
+		throws IOException {
+
+		return new StubByteChannel(contents);
+	}
+
+	@Override
+	public DirectoryStream<Path> newDirectoryStream(Path dir, Filter<? super Path> filter) throws IOException {
+		return new DirectoryStream<Path>() {
+			@Override
+			public Iterator<Path> iterator() {
+				return entries.iterator();
+			}
+
+			@Override
+			public void close() {
+				// Nothing to release
+			}
+		};
+	}
+
+	@Override
+	public void createDirectory(Path dir, FileAttribute<?>... attrs) throws IOException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void delete(Path path) throws IOException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void copy(Path source, Path target, CopyOption... options) throws IOException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void move(Path source, Path target, CopyOption... options) throws IOException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean isSameFile(Path path, Path path2) throws IOException {
+		return path.equals(path2);
+	}
+
+	@Override
+	public boolean isHidden(Path path) throws IOException {
+		return false;
+	}
+
+	@Override
+	public FileStore getFileStore(Path path) throws IOException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void checkAccess(Path path, AccessMode... modes) throws IOException {
+		// Everything exists, and everything is readable
+	}
+
+	@Override
+	public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
+		return null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options)
+		throws IOException {
+
+		if (type != BasicFileAttributes.class) {
+			throw new UnsupportedOperationException(type.toString());
+		}
+		return (A) ATTRIBUTES;
+	}
+
+	@Override
+	public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
+		return Collections.singletonMap("size", ATTRIBUTES.size());
+	}
+
+	@Override
+	public void setAttribute(Path path, String attribute, Object value, LinkOption... options) throws IOException {
+		throw new UnsupportedOperationException();
+	}
+
+	static final class StubByteChannel implements SeekableByteChannel {
+		private final byte[] contents;
+		private int position;
+		private boolean open = true;
+
+		StubByteChannel(byte[] contents) {
+			this.contents = contents;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public void close() {
+			open = false;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			if (!open) {
+				throw new ClosedChannelException();
+			}
+
+			if (position >= contents.length) {
+				return -1;
+			}
+			int count = Math.min(dst.remaining(), contents.length - position);
+			dst.put(contents, position, count);
+			position += count;
+			return count;
+		}
+
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			throw new NonWritableChannelException();
+		}
+
+		@Override
+		public long position() {
+			return position;
+		}
+
+		@Override
+		public SeekableByteChannel position(long newPosition) {
+			position = (int) Math.min(newPosition, contents.length);
+			return this;
+		}
+
+		@Override
+		public long size() {
+			return contents.length;
+		}
+
+		@Override
+		public SeekableByteChannel truncate(long size) throws IOException {
+			throw new NonWritableChannelException();
+		}
+	}
+
+	static final class StubAttributes implements BasicFileAttributes {
+		private static final FileTime TIME = FileTime.fromMillis(0);
+
+		@Override
+		public FileTime lastModifiedTime() {
+			return TIME;
+		}
+
+		@Override
+		public FileTime lastAccessTime() {
+			return TIME;
+		}
+
+		@Override
+		public FileTime creationTime() {
+			return TIME;
+		}
+
+		@Override
+		public boolean isRegularFile() {
+			return true;
+		}
+
+		@Override
+		public boolean isDirectory() {
+			return false;
+		}
+
+		@Override
+		public boolean isSymbolicLink() {
+			return false;
+		}
+
+		@Override
+		public boolean isOther() {
+			return false;
+		}
+
+		@Override
+		public long size() {
+			return 4096;
+		}
+
+		@Override
+		public Object fileKey() {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/** Writes jars full of generated classes, for benchmarks which need a lot of distinct classes to load. */
+public final class SyntheticJar {
+	private SyntheticJar() {}
+
+	/** @return The binary name of the i'th class written by {@link #write(Path, String, int)}. */
+	public static String className(String pkg, int index) {
+		return pkg + ".C" + index;
+	}
+
+	/** Writes a jar containing the classes {@link #className(String, int) className(pkg, 0)} up to (but not including)
+	 * {@code className(pkg, count)}. */
+	public static void write(Path jar, String pkg, int count) throws IOException {
+		try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+			for (int i = 0; i < count; i++) {
+				String internalName = className(pkg, i).replace('.', '/');
+				out.putNextEntry(new JarEntry(internalName + ".class"));
+				out.write(emptyClass(internalName));
+				out.closeEntry();
+			}
+		}
+	}
+
+	/** @return The bytes of a public class with the given internal name, which only has a public no-args
+	 *         constructor. */
+	public static byte[] emptyClass(String internalName) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0); // minor
+			out.writeShort(52); // major: java 8
+
+			out.writeShort(10); // constant pool count
+			utf8(out, internalName); // #1
+			classRef(out, 1); // #2 this class
+			utf8(out, "java/lang/Object"); // #3
+			classRef(out, 3); // #4 super class
+			utf8(out, "<init>"); // #5
+			utf8(out, "()V"); // #6
+			out.writeByte(12);
+			out.writeShort(5);
+			out.writeShort(6); // #7 name and type
+			out.writeByte(10);
+			out.writeShort(4);
+			out.writeShort(7); // #8 Object.<init>
+			utf8(out, "Code"); // #9
+
+			out.writeShort(0x0021); // public super
+			out.writeShort(2);
+			out.writeShort(4);
+			out.writeShort(0); // interfaces
+			out.writeShort(0); // fields
+
+			out.writeShort(1); // methods
+			out.writeShort(0x0001); // public
+			out.writeShort(5);
+			out.writeShort(6);
+			out.writeShort(1); // attributes
+			out.writeShort(9);
+			out.writeInt(17);
+			out.writeShort(1); // max stack
+			out.writeShort(1); // max locals
+			out.writeInt(5);
+			out.writeByte(0x2A); // aload_0
+			out.writeByte(0xB7); // invokespecial
+			out.writeShort(8);
+			out.writeByte(0xB1); // return
+			out.writeShort(0); // exception table
+			out.writeShort(0); // code attributes
+
+			out.writeShort(0); // class attributes
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static void utf8(DataOutputStream out, String value) throws IOException {
+		out.writeByte(1);
+		out.writeUTF(value);
+	}
+
+	private static void classRef(DataOutputStream out, int nameIndex) throws IOException {
+		out.writeByte(7);
+		out.writeShort(nameIndex);
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.memfs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures looking up and reading a class from a {@link MemoryFileSystem}, compared with the map of paths to byte
+ * arrays that an ad-hoc in-memory filesystem would use. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MemoryFileSystemBenchmark {
+
+	private static final int PACKAGES = 100;
+	private static final int CLASSES = 100;
+	private static final int SIZE = 2048;
+
+	private MemoryFileSystem fs;
+	private Map<String, byte[]> map;
+	private String[] names;
+
+	@Setup
+	public void setup() {
+		MemoryFileSystemBuilder builder = new MemoryFileSystemBuilder();
+		map = new HashMap<>();
+		names = new String[PACKAGES * CLASSES];
+		byte[] contents = new byte[SIZE];
+
+		for (int p = 0; p < PACKAGES; p++) {
+			for (int c = 0; c < CLASSES; c++) {
+				String name = "/org/example/pkg" + p + "/Class" + c + ".class";
+				names[p * CLASSES + c] = name;
+				builder.addFile(name, contents);
+				map.put(name, contents.clone());
+			}
+		}
+
+		fs = builder.build(new MemoryFileSystemProvider('a'), "benchmark");
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		fs.close();
+	}
+
+	private String randomName() {
+		return names[ThreadLocalRandom.current().nextInt(names.length)];
+	}
+
+	@Benchmark
+	public BasicFileAttributes readAttributesMemory() throws IOException {
+		return Files.readAttributes(fs.getPath(randomName()), BasicFileAttributes.class);
+	}
+
+	@Benchmark
+	public int readAttributesMap() {
+		return map.get(randomName()).length;
+	}
+
+	@Benchmark
+	public ByteBuffer readClassMemory() throws IOException {
+		Path path = fs.getPath(randomName());
+		try (SeekableByteChannel channel = Files.newByteChannel(path)) {
+			ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+			channel.read(buffer);
+			return buffer;
+		}
+	}
+
+	@Benchmark
+	public ByteBuffer readClassMap() {
+		byte[] bytes = map.get(randomName());
+		ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
+		buffer.put(bytes);
+		return buffer;
+	}
+}
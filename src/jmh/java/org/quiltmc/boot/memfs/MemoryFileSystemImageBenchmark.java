@@ -0,0 +1,89 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.memfs;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures opening a {@link MemoryFileSystem} of 10,000 classes from a {@link MemoryFileSystemImage}, compared with
+ * building it again from the same files. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MemoryFileSystemImageBenchmark {
+
+	private static final int PACKAGES = 100;
+	private static final int CLASSES = 100;
+	private static final int SIZE = 2048;
+	private static final byte[] FINGERPRINT = { 1, 2, 3, 4 };
+
+	private final MemoryFileSystemProvider provider = new MemoryFileSystemProvider('a');
+	private MemoryFileSystemBuilder builder;
+	private Path image;
+
+	@Setup
+	public void setup() throws IOException {
+		builder = new MemoryFileSystemBuilder();
+		for (int p = 0; p < PACKAGES; p++) {
+			for (int c = 0; c < CLASSES; c++) {
+				byte[] contents = new byte[SIZE];
+				contents[0] = (byte) p;
+				contents[1] = (byte) c;
+				builder.addFile("/org/example/pkg" + p + "/Class" + c + ".class", contents);
+			}
+		}
+
+		image = Files.createTempFile("quilt-bootstrap-benchmark", ".qmfi");
+		MemoryFileSystemImage.write(builder, FINGERPRINT, image);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(image);
+	}
+
+	@Benchmark
+	public MemoryFileSystem build() throws IOException {
+		MemoryFileSystem fs = builder.build(provider, "benchmark");
+		fs.close();
+		return fs;
+	}
+
+	@Benchmark
+	public MemoryFileSystem load() throws IOException {
+		MemoryFileSystem fs = MemoryFileSystemImage.load(image, FINGERPRINT, provider, "benchmark");
+		fs.close();
+		return fs;
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.startup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Samples the JVM a fixture loader runs in, and hands the samples back to the harness which forked it. This is
+ * copied into the fixture's loader jar, so it can only use the bootstrap and the JDK.
+ * <p>
+ * Each sample is one line of space separated {@code key=value} pairs, appended to the file named by
+ * {@link #PROPERTY_RESULT_FILE}. Values which can't be measured on this platform are -1. */
+public final class FixtureMetrics {
+
+	/** The file the fixture appends its samples to. */
+	public static final String PROPERTY_RESULT_FILE = "quiltmc.startup.result_file";
+	/** The {@link System#nanoTime()} of the harness just before it started the JVM. The clock is shared between
+	 * processes on linux, macOS and windows. */
+	public static final String PROPERTY_FORK_NANOS = "quiltmc.startup.fork_nanos";
+
+	private final Map<String, Long> values = new LinkedHashMap<>();
+
+	public FixtureMetrics put(String key, long value) {
+		values.put(key, value);
+		return this;
+	}
+
+	/** Adds the resident set size, the number of loaded classes and the size of metaspace. */
+	public FixtureMetrics putMemory() {
+		put("rss", rssBytes());
+		put("classes", ManagementFactory.getClassLoadingMXBean().getLoadedClassCount());
+		put("metaspace", metaspaceBytes());
+		return this;
+	}
+
+	/** Appends this sample to the result file. */
+	public void write() {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, Long> entry : values.entrySet()) {
+			if (sb.length() > 0) {
+				sb.append(' ');
+			}
+			sb.append(entry.getKey()).append('=').append(entry.getValue());
+		}
+		sb.append('\n');
+
+		String file = System.getProperty(PROPERTY_RESULT_FILE);
+		if (file == null) {
+			System.out.print(sb);
+			return;
+		}
+
+		try (Writer writer = Files.newBufferedWriter(
+			Paths.get(file), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND
+		)) {
+			writer.write(sb.toString());
+		} catch (IOException e) {
+			throw new Error("Unable to write the fixture's results to " + file, e);
+		}
+	}
+
+	/** @return The nanoseconds since the harness started this JVM, or -1 if it didn't say when that was. */
+	public static long nanosSinceFork(long now) {
+		String fork = System.getProperty(PROPERTY_FORK_NANOS);
+		return fork == null ? -1 : now - Long.parseLong(fork);
+	}
+
+	public static long rssBytes() {
+		try {
+			List<String> lines = Files.readAllLines(Paths.get("/proc/self/status"), StandardCharsets.UTF_8);
+			for (String line : lines) {
+				// "VmRSS:     123456 kB"
+				if (line.startsWith("VmRSS:")) {
+					String kb = line.substring(6).trim();
+					return Long.parseLong(kb.substring(0, kb.indexOf(' '))) * 1024;
+				}
+			}
+		} catch (IOException | RuntimeException ignored) {
+			// Not linux
+		}
+		return -1;
+	}
+
+	public static long metaspaceBytes() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if ("Metaspace".equals(pool.getName())) {
+				return pool.getUsage().getUsed();
+			}
+		}
+		return -1;
+	}
+
+	/** @return The used heap after a full collection, as far as {@link System#gc()} can force one. */
+	public static long heapAfterGcBytes() {
+		// Twice, so objects which were only kept alive by finalizers or reference queues are gone too
+		System.gc();
+		System.runFinalization();
+		System.gc();
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	public static long openFileDescriptors() {
+		Path fds = Paths.get("/proc/self/fd");
+		if (!Files.isDirectory(fds)) {
+			return -1;
+		}
+
+		long count = 0;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(fds)) {
+			for (Path ignored : stream) {
+				count++;
+			}
+		} catch (IOException e) {
+			return -1;
+		}
+		// Minus the one the stream itself had open
+		return count - 1;
+	}
+
+	public static long threads() {
+		return ManagementFactory.getThreadMXBean().getThreadCount();
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.startup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+import org.quiltmc.boot.BootstrapContext;
+import org.quiltmc.boot.BootstrapInvoked;
+import org.quiltmc.boot.memfs.MemoryFileSystem;
+import org.quiltmc.boot.memfs.MemoryFileSystemBuilder;
+import org.quiltmc.boot.memfs.MemoryFileSystemProvider;
+
+/** The loader in the fixture jar written by {@link StartupFixture}. It does the things every real loader does at
+ * startup: it registers quilt.*fs letters and reads a file through a url on each, adds library jars to its classpath
+ * and loads every class in them. Then it records a {@link FixtureMetrics} sample and exits.
+ * <p>
+ * This is copied into the fixture's loader jar, so it can only use the bootstrap and the JDK. */
+public class FixtureTarget implements BootstrapInvoked {
+
+	@Override
+	public Path run(BootstrapContext context, String[] args) {
+		long entered = System.nanoTime();
+		long timeToRun = FixtureMetrics.nanosSinceFork(entered);
+
+		load(context, config(getClass()));
+
+		new FixtureMetrics()
+			.put("timeToRun", timeToRun)
+			.put("run", System.nanoTime() - entered)
+			.putMemory()
+			.write();
+		return null;
+	}
+
+	/** @return The fixture's settings, as written by {@link StartupFixture}. */
+	static Properties config(Class<?> target) {
+		Properties config = new Properties();
+		try (InputStream in = target.getClassLoader().getResourceAsStream(StartupFixture.CONFIG_FILE)) {
+			if (in == null) {
+				throw new Error("The fixture jar doesn't contain " + StartupFixture.CONFIG_FILE);
+			}
+			config.load(in);
+		} catch (IOException e) {
+			throw new Error("Unable to read " + StartupFixture.CONFIG_FILE, e);
+		}
+		return config;
+	}
+
+	/** Registers the letters, and loads the libraries, listed in the config. */
+	static void load(BootstrapContext context, Properties config) {
+		int letters = Integer.parseInt(config.getProperty("letters"));
+		for (int i = 0; i < letters; i++) {
+			MemoryFileSystemProvider provider = new MemoryFileSystemProvider((char) ('a' + i));
+			provider.register(context);
+			MemoryFileSystem fs = new MemoryFileSystemBuilder()
+				.addFile("/fixture.txt", ("letter " + i).getBytes(StandardCharsets.UTF_8))
+				.build(provider, "fixture");
+
+			try (InputStream in = fs.getPath("/fixture.txt").toUri().toURL().openStream()) {
+				while (in.read() >= 0) {
+					// Just reading it through the url handler
+				}
+			} catch (IOException e) {
+				throw new Error("Unable to read through quilt." + provider.letter() + "fs", e);
+			}
+		}
+
+		int jars = Integer.parseInt(config.getProperty("jars"));
+		int classesPerJar = Integer.parseInt(config.getProperty("classesPerJar"));
+		ClassLoader loader = FixtureTarget.class.getClassLoader();
+		for (int i = 0; i < jars; i++) {
+			try {
+				context.addToClassPath(Paths.get(config.getProperty("jar." + i)).toUri().toURL());
+			} catch (MalformedURLException e) {
+				throw new Error(e);
+			}
+
+			// The same names as SyntheticJar.className, which isn't in the fixture jar
+			String pkg = config.getProperty("package." + i);
+			for (int c = 0; c < classesPerJar; c++) {
+				try {
+					Class.forName(pkg + ".C" + c, true, loader);
+				} catch (ClassNotFoundException e) {
+					throw new Error("The fixture's library jars are missing " + e.getMessage(), e);
+				}
+			}
+		}
+	}
+}
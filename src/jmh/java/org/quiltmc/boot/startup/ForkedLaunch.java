@@ -0,0 +1,136 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.startup;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.quiltmc.boot.Bootstrap;
+
+/** Runs a fixture loader jar in a fresh JVM, through one of the bootstrap's main classes, and collects the
+ * {@link FixtureMetrics} samples it wrote. */
+final class ForkedLaunch {
+
+	/** The bootstrap's main classes. */
+	static final String[] ENTRY_POINTS = {
+		"Bootstrap", "BootstrapClient", "BootstrapServer", "BootstrapServerLauncher"
+	};
+
+	/** How long the JVM took to exit, measured by the harness. */
+	final long wallNanos;
+	/** Everything the fixture wrote, in order. */
+	final List<Map<String, Long>> samples;
+
+	private ForkedLaunch(long wallNanos, List<Map<String, Long>> samples) {
+		this.wallNanos = wallNanos;
+		this.samples = samples;
+	}
+
+	/** @param java The java executable.
+	 * @param jvmArgs Extra arguments for the JVM, such as bootstrap system properties.
+	 * @param entryPoint One of {@link #ENTRY_POINTS}.
+	 * @param workDir Where the result file and the JVM's output go. */
+	static ForkedLaunch run(String java, List<String> jvmArgs, String entryPoint, Path loaderJar, Path workDir)
+		throws IOException, InterruptedException {
+
+		Path results = Files.createTempFile(workDir, entryPoint, ".samples");
+		Path log = workDir.resolve(entryPoint + ".log");
+
+		List<String> command = new ArrayList<>();
+		command.add(java);
+		command.add("-cp");
+		command.add(bootstrapClassPath());
+		command.add("-D" + Bootstrap.SYSTEM_PROPERTY_LOADER_JAR + "=" + loaderJar.toAbsolutePath());
+		command.add("-D" + FixtureMetrics.PROPERTY_RESULT_FILE + "=" + results.toAbsolutePath());
+		command.addAll(jvmArgs);
+
+		ProcessBuilder builder = new ProcessBuilder();
+		builder.redirectErrorStream(true);
+		builder.redirectOutput(log.toFile());
+
+		// Measured as late as possible, so it's close to the real start of the JVM
+		long start = System.nanoTime();
+		command.add("-D" + FixtureMetrics.PROPERTY_FORK_NANOS + "=" + start);
+		command.add(Bootstrap.class.getPackage().getName() + "." + entryPoint);
+		Process process = builder.command(command).start();
+		int exitCode = process.waitFor();
+		long wall = System.nanoTime() - start;
+
+		if (exitCode != 0) {
+			throw new IOException(
+				entryPoint + " exited with " + exitCode + ":\n" + new String(Files.readAllBytes(log), StandardCharsets.UTF_8)
+			);
+		}
+
+		List<Map<String, Long>> samples = new ArrayList<>();
+		for (String line : Files.readAllLines(results, StandardCharsets.UTF_8)) {
+			Map<String, Long> sample = new LinkedHashMap<>();
+			for (String pair : line.split(" ")) {
+				int eq = pair.indexOf('=');
+				if (eq > 0) {
+					sample.put(pair.substring(0, eq), Long.parseLong(pair.substring(eq + 1)));
+				}
+			}
+			samples.add(sample);
+		}
+		Files.delete(results);
+		return new ForkedLaunch(wall, samples);
+	}
+
+	/** @return The jar (or directory) the bootstrap classes were loaded from. */
+	static String bootstrapClassPath() {
+		try {
+			return Paths.get(Bootstrap.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+		} catch (URISyntaxException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** @return The default java executable, the one running this harness. */
+	static String currentJava() {
+		return System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+	}
+
+	/** Parses {@code --name=value} arguments. {@code --jvmArg} may be repeated, and is collected under "jvmArgs"
+	 * separated by newlines. */
+	static Map<String, String> options(String[] args) {
+		Map<String, String> options = new LinkedHashMap<>();
+		for (String arg : args) {
+			int eq = arg.indexOf('=');
+			if (!arg.startsWith("--") || eq < 0) {
+				throw new IllegalArgumentException("Expected --name=value, but got " + arg);
+			}
+			String name = arg.substring(2, eq);
+			String value = arg.substring(eq + 1);
+			if (name.equals("jvmArg")) {
+				options.merge("jvmArgs", value, (a, b) -> a + "\n" + b);
+			} else {
+				options.put(name, value);
+			}
+		}
+		return options;
+	}
+}
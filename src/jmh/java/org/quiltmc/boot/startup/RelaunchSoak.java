@@ -0,0 +1,210 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.startup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/** Relaunches a synthetic loader jar many times in one JVM, like a long running server which reloads, and fails if
+ * the JVM grows by more than a budget per relaunch. After every relaunch it samples the heap after a full collection,
+ * metaspace, loaded classes, open file descriptors and threads (see {@link SoakTarget}). The growth of each is the
+ * least squares slope over the cycles after the warmup, so a single noisy sample doesn't fail the run but a steady
+ * leak does.
+ * <p>
+ * Options, all as {@code --name=value}:
+ * <ul>
+ * <li>cycles (40) and warmup (10): relaunches in total, and how many of them to leave out of the slope while caches
+ * and the JIT settle.</li>
+ * <li>budget.heap (262144), budget.metaspace (65536), budget.classes (10), budget.fds (0.5) and budget.threads (0.5):
+ * the largest growth per relaunch allowed for each metric, in bytes or counts.</li>
+ * <li>classes (2000), jars (4) and letters (3): what each launch loads, see {@link StartupFixture}.</li>
+ * <li>entryPoint (BootstrapServer): the main class to launch through.</li>
+ * <li>java and jvmArg (repeatable): the java executable and extra arguments for it.</li>
+ * <li>results: a json file to write every sample and slope to.</li>
+ * <li>dir: where to write the fixture. Defaults to a temporary directory.</li>
+ * </ul>
+ * The process exits with 1 if any metric is over its budget. */
+public final class RelaunchSoak {
+
+	private static final String[] METRICS = { "heap", "metaspace", "classes", "fds", "threads", "rss" };
+	private static final Map<String, String> DEFAULT_BUDGETS = new LinkedHashMap<>();
+
+	static {
+		DEFAULT_BUDGETS.put("heap", Integer.toString(256 * 1024));
+		DEFAULT_BUDGETS.put("metaspace", Integer.toString(64 * 1024));
+		DEFAULT_BUDGETS.put("classes", "10");
+		DEFAULT_BUDGETS.put("fds", "0.5");
+		DEFAULT_BUDGETS.put("threads", "0.5");
+	}
+
+	private RelaunchSoak() {}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Map<String, String> options = ForkedLaunch.options(args);
+		int cycles = Integer.parseInt(options.getOrDefault("cycles", "40"));
+		int warmup = Integer.parseInt(options.getOrDefault("warmup", "10"));
+		int classes = Integer.parseInt(options.getOrDefault("classes", "2000"));
+		int jars = Integer.parseInt(options.getOrDefault("jars", "4"));
+		int letters = Integer.parseInt(options.getOrDefault("letters", "3"));
+		String entryPoint = options.getOrDefault("entryPoint", "BootstrapServer");
+		String java = options.getOrDefault("java", ForkedLaunch.currentJava());
+		List<String> jvmArgs = options.containsKey("jvmArgs")
+			? Arrays.asList(options.get("jvmArgs").split("\n"))
+			: Collections.emptyList();
+
+		if (cycles - warmup < 2) {
+			throw new IllegalArgumentException("Need at least 2 cycles after the warmup, but there are " + cycles);
+		}
+
+		Path dir = options.containsKey("dir")
+			? Paths.get(options.get("dir"))
+			: Files.createTempDirectory("quilt-bootstrap-soak");
+		Properties config = new Properties();
+		config.setProperty("cycles", Integer.toString(cycles));
+		Path loaderJar = StartupFixture.write(dir, SoakTarget.class, letters, jars, classes, config);
+
+		ForkedLaunch launch = ForkedLaunch.run(java, jvmArgs, entryPoint, loaderJar, dir);
+		List<Map<String, Long>> samples = launch.samples;
+		if (samples.size() != cycles + 1) {
+			throw new IOException("Expected " + (cycles + 1) + " samples, but the fixture wrote " + samples.size());
+		}
+
+		List<String> failures = new ArrayList<>();
+		Map<String, Double> slopes = new LinkedHashMap<>();
+		System.out.println(String.format(
+			Locale.ROOT, "%-10s %14s %14s %14s %14s  %s", "Metric", "After warmup", "Last", "Per cycle", "Budget",
+			"Result"
+		));
+
+		for (String metric : METRICS) {
+			long first = samples.get(warmup).get(metric);
+			long last = samples.get(cycles).get(metric);
+			if (first < 0 || last < 0) {
+				// Not available on this platform
+				continue;
+			}
+
+			double slope = slope(samples, warmup, metric);
+			slopes.put(metric, slope);
+
+			String budgetValue = options.getOrDefault("budget." + metric, DEFAULT_BUDGETS.get(metric));
+			String result = "";
+			String budgetText = "-";
+			if (budgetValue != null) {
+				double budget = Double.parseDouble(budgetValue);
+				budgetText = String.format(Locale.ROOT, "%.1f", budget);
+				result = slope > budget ? "FAIL" : "ok";
+				if (slope > budget) {
+					failures.add(String.format(
+						Locale.ROOT, "%s grew by %.1f per relaunch, which is more than the budget of %.1f", metric,
+						slope, budget
+					));
+				}
+			}
+
+			String line = String.format(
+				Locale.ROOT, "%-10s %14d %14d %14.1f %14s", metric, first, last, slope, budgetText
+			);
+			System.out.println(result.isEmpty() ? line : line + "  " + result);
+		}
+
+		if (options.containsKey("results")) {
+			Path file = Paths.get(options.get("results"));
+			if (file.getParent() != null) {
+				Files.createDirectories(file.getParent());
+			}
+			Files.write(file, toJson(samples, slopes, failures).getBytes(StandardCharsets.UTF_8));
+			System.out.println("Wrote " + file);
+		}
+
+		if (!failures.isEmpty()) {
+			System.out.println();
+			System.out.println("The JVM grew by more than its budget per relaunch:");
+			for (String failure : failures) {
+				System.out.println("  " + failure);
+			}
+			System.out.println(
+				"Run with --jvmArg=-Dquiltmc.boot.unload_check=true to see what keeps the old class loaders alive."
+			);
+			System.exit(1);
+		}
+	}
+
+	/** @return The least squares slope of the metric against the cycle, from the given sample onwards. */
+	static double slope(List<Map<String, Long>> samples, int from, String metric) {
+		int n = samples.size() - from;
+		double meanX = 0;
+		double meanY = 0;
+		for (int i = from; i < samples.size(); i++) {
+			meanX += i;
+			meanY += samples.get(i).get(metric);
+		}
+		meanX /= n;
+		meanY /= n;
+
+		double covariance = 0;
+		double variance = 0;
+		for (int i = from; i < samples.size(); i++) {
+			double dx = i - meanX;
+			covariance += dx * (samples.get(i).get(metric) - meanY);
+			variance += dx * dx;
+		}
+		return covariance / variance;
+	}
+
+	private static String toJson(List<Map<String, Long>> samples, Map<String, Double> slopes, List<String> failures) {
+		StringBuilder sb = new StringBuilder("{\n  \"slopes\": {");
+		String separator = "";
+		for (Map.Entry<String, Double> slope : slopes.entrySet()) {
+			sb.append(separator).append("\n    \"").append(slope.getKey()).append("\": ");
+			sb.append(String.format(Locale.ROOT, "%.3f", slope.getValue()));
+			separator = ",";
+		}
+
+		sb.append("\n  },\n  \"failures\": [");
+		separator = "";
+		for (String failure : failures) {
+			sb.append(separator).append("\n    \"").append(failure).append('"');
+			separator = ",";
+		}
+
+		sb.append("\n  ],\n  \"samples\": [");
+		separator = "";
+		for (Map<String, Long> sample : samples) {
+			sb.append(separator).append("\n    {");
+			String fieldSeparator = "";
+			for (Map.Entry<String, Long> field : sample.entrySet()) {
+				sb.append(fieldSeparator).append('"').append(field.getKey()).append("\": ").append(field.getValue());
+				fieldSeparator = ", ";
+			}
+			sb.append('}');
+			separator = ",";
+		}
+		return sb.append("\n  ]\n}\n").toString();
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.startup;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+import org.quiltmc.boot.Bootstrap;
+import org.quiltmc.boot.BootstrapContext;
+import org.quiltmc.boot.BootstrapInvoked;
+
+/** The loader in the fixture jar for {@link RelaunchSoak}. Each launch samples the JVM, does the same work as
+ * {@link FixtureTarget}, and then asks to be relaunched with the same jar, until it has been relaunched "cycles"
+ * times.
+ * <p>
+ * The sample is taken at the start of each launch, so it includes every previous launch being torn down. The first
+ * sample is taken before any relaunch. */
+public class SoakTarget implements BootstrapInvoked {
+
+	/** How many times the fixture has been launched so far. Every launch has its own class loader, so this can't be a
+	 * static field. */
+	static final String PROPERTY_CYCLE = "quiltmc.startup.soak_cycle";
+
+	@Override
+	public Path run(BootstrapContext context, String[] args) {
+		int cycle = Integer.getInteger(PROPERTY_CYCLE, 0);
+		System.setProperty(PROPERTY_CYCLE, Integer.toString(cycle + 1));
+
+		new FixtureMetrics()
+			.put("cycle", cycle)
+			.put("heap", FixtureMetrics.heapAfterGcBytes())
+			.putMemory()
+			.put("fds", FixtureMetrics.openFileDescriptors())
+			.put("threads", FixtureMetrics.threads())
+			.write();
+
+		Properties config = FixtureTarget.config(getClass());
+		FixtureTarget.load(context, config);
+
+		if (cycle >= Integer.parseInt(config.getProperty("cycles"))) {
+			return null;
+		}
+		return Paths.get(System.getProperty(Bootstrap.SYSTEM_PROPERTY_LOADER_JAR));
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.startup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/** Measures cold starts: it launches a synthetic loader jar many times, each time in a fresh JVM, through each of the
+ * bootstrap's main classes. For each main class it reports percentiles of:
+ * <ul>
+ * <li>timeToRun: from starting the JVM to entering the loader's run method</li>
+ * <li>run: the time spent in the loader's run method</li>
+ * <li>wall: from starting the JVM to its exit</li>
+ * <li>rss, classes and metaspace: the resident set size, loaded classes and metaspace once the loader is done</li>
+ * </ul>
+ * Options, all as {@code --name=value}:
+ * <ul>
+ * <li>runs (10) and warmup (2): measured and discarded launches of each main class. They're interleaved, so drift
+ * affects every main class equally.</li>
+ * <li>classes (2000), jars (4) and letters (3): the size of the fixture, see {@link StartupFixture}.</li>
+ * <li>entryPoints: a comma separated subset of the main classes to launch.</li>
+ * <li>java: the java executable to launch, and jvmArg (repeatable): extra arguments for it, such as bootstrap system
+ * properties to compare.</li>
+ * <li>results: a json file to write every sample and percentile to.</li>
+ * <li>dir: where to write the fixture. Defaults to a temporary directory.</li>
+ * </ul> */
+public final class StartupBenchmark {
+
+	private static final String[] METRICS = { "timeToRun", "run", "wall", "rss", "classes", "metaspace" };
+	private static final double[] PERCENTILES = { 0.5, 0.9, 0.99 };
+
+	private StartupBenchmark() {}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Map<String, String> options = ForkedLaunch.options(args);
+		int runs = Integer.parseInt(options.getOrDefault("runs", "10"));
+		int warmup = Integer.parseInt(options.getOrDefault("warmup", "2"));
+		int classes = Integer.parseInt(options.getOrDefault("classes", "2000"));
+		int jars = Integer.parseInt(options.getOrDefault("jars", "4"));
+		int letters = Integer.parseInt(options.getOrDefault("letters", "3"));
+		String[] entryPoints = options.containsKey("entryPoints")
+			? options.get("entryPoints").split(",")
+			: ForkedLaunch.ENTRY_POINTS;
+		String java = options.getOrDefault("java", ForkedLaunch.currentJava());
+		List<String> jvmArgs = options.containsKey("jvmArgs")
+			? Arrays.asList(options.get("jvmArgs").split("\n"))
+			: Collections.emptyList();
+
+		Path dir = options.containsKey("dir")
+			? Paths.get(options.get("dir"))
+			: Files.createTempDirectory("quilt-bootstrap-startup");
+		Path loaderJar = StartupFixture.write(dir, FixtureTarget.class, letters, jars, classes, new Properties());
+
+		Map<String, Map<String, List<Long>>> results = new LinkedHashMap<>();
+		for (String entryPoint : entryPoints) {
+			Map<String, List<Long>> metrics = new LinkedHashMap<>();
+			for (String metric : METRICS) {
+				metrics.put(metric, new ArrayList<>());
+			}
+			results.put(entryPoint, metrics);
+		}
+
+		for (int run = 0; run < warmup + runs; run++) {
+			for (String entryPoint : entryPoints) {
+				ForkedLaunch launch = ForkedLaunch.run(java, jvmArgs, entryPoint, loaderJar, dir);
+				if (run < warmup) {
+					continue;
+				}
+
+				if (launch.samples.size() != 1) {
+					throw new IOException(entryPoint + " wrote " + launch.samples.size() + " samples, rather than 1");
+				}
+				Map<String, Long> sample = new LinkedHashMap<>(launch.samples.get(0));
+				sample.put("wall", launch.wallNanos);
+				Map<String, List<Long>> metrics = results.get(entryPoint);
+				for (String metric : METRICS) {
+					Long value = sample.get(metric);
+					if (value != null && value >= 0) {
+						metrics.get(metric).add(value);
+					}
+				}
+			}
+			System.out.println("Finished " + (run < warmup ? "warmup " + (run + 1) : "run " + (run + 1 - warmup)));
+		}
+
+		System.out.println();
+		System.out.println(String.format(
+			Locale.ROOT, "%-24s %-14s %10s %10s %10s %10s %10s", "Main class", "Metric", "min", "p50", "p90", "p99",
+			"max"
+		));
+		for (Map.Entry<String, Map<String, List<Long>>> entry : results.entrySet()) {
+			for (Map.Entry<String, List<Long>> metric : entry.getValue().entrySet()) {
+				List<Long> values = metric.getValue();
+				if (values.isEmpty()) {
+					continue;
+				}
+				Collections.sort(values);
+				double scale = scale(metric.getKey());
+				System.out.println(String.format(
+					Locale.ROOT, "%-24s %-14s %10.1f %10.1f %10.1f %10.1f %10.1f", entry.getKey(),
+					metric.getKey() + unit(metric.getKey()), values.get(0) / scale, percentile(values, 0.5) / scale,
+					percentile(values, 0.9) / scale, percentile(values, 0.99) / scale,
+					values.get(values.size() - 1) / scale
+				));
+			}
+		}
+
+		if (options.containsKey("results")) {
+			Path file = Paths.get(options.get("results"));
+			if (file.getParent() != null) {
+				Files.createDirectories(file.getParent());
+			}
+			Files.write(file, toJson(options, results).getBytes(StandardCharsets.UTF_8));
+			System.out.println("Wrote " + file);
+		}
+	}
+
+	/** @return The nearest-rank percentile of the sorted values. */
+	static long percentile(List<Long> sorted, double percentile) {
+		int rank = (int) Math.ceil(percentile * sorted.size());
+		return sorted.get(Math.max(0, rank - 1));
+	}
+
+	private static double scale(String metric) {
+		switch (metric) {
+			case "timeToRun":
+			case "run":
+			case "wall":
+				return 1_000_000.0;
+			case "rss":
+			case "metaspace":
+				return 1024.0 * 1024.0;
+			default:
+				return 1;
+		}
+	}
+
+	private static String unit(String metric) {
+		switch (metric) {
+			case "timeToRun":
+			case "run":
+			case "wall":
+				return " ms";
+			case "rss":
+			case "metaspace":
+				return " MiB";
+			default:
+				return "";
+		}
+	}
+
+	private static String toJson(Map<String, String> options, Map<String, Map<String, List<Long>>> results) {
+		StringBuilder sb = new StringBuilder("{\n  \"options\": {");
+		String separator = "";
+		for (Map.Entry<String, String> option : options.entrySet()) {
+			sb.append(separator).append("\n    \"").append(escape(option.getKey())).append("\": \"");
+			sb.append(escape(option.getValue())).append('"');
+			separator = ",";
+		}
+		sb.append("\n  },\n  \"results\": {");
+
+		separator = "";
+		for (Map.Entry<String, Map<String, List<Long>>> entry : results.entrySet()) {
+			sb.append(separator).append("\n    \"").append(entry.getKey()).append("\": {");
+			String metricSeparator = "";
+			for (Map.Entry<String, List<Long>> metric : entry.getValue().entrySet()) {
+				List<Long> values = metric.getValue();
+				sb.append(metricSeparator).append("\n      \"").append(metric.getKey()).append("\": {");
+				if (!values.isEmpty()) {
+					sb.append("\"min\": ").append(values.get(0));
+					for (double percentile : PERCENTILES) {
+						sb.append(", \"p").append((int) (percentile * 100)).append("\": ");
+						sb.append(percentile(values, percentile));
+					}
+					sb.append(", \"max\": ").append(values.get(values.size() - 1)).append(", ");
+				}
+				sb.append("\"samples\": ").append(values).append('}');
+				metricSeparator = ",";
+			}
+			sb.append("\n    }");
+			separator = ",";
+		}
+		return sb.append("\n  }\n}\n").toString();
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.startup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.quiltmc.boot.BootstrapInvoked;
+import org.quiltmc.boot.SyntheticJar;
+
+/** Writes a synthetic loader jar for the forking harnesses, along with the library jars it adds to its classpath. */
+public final class StartupFixture {
+
+	static final String TARGET_FILE = "META-INF/quilt-bootstrap/target.txt";
+	static final String CONFIG_FILE = "META-INF/quilt-bootstrap/fixture.properties";
+
+	private StartupFixture() {}
+
+	/** Writes the fixture into the given directory.
+	 *
+	 * @param target The loader class, which is copied into the loader jar along with {@link FixtureMetrics}. It may
+	 *            only use the bootstrap and the JDK.
+	 * @param letters How many quilt.*fs letters the loader registers, starting from 'a'.
+	 * @param jars How many library jars the loader adds to its classpath.
+	 * @param classes How many classes the loader loads, spread evenly over the library jars.
+	 * @param config Extra settings for the target, which it can read through {@link FixtureTarget#config(Class)}.
+	 * @return The loader jar. */
+	public static Path write(
+		Path dir, Class<? extends BootstrapInvoked> target, int letters, int jars, int classes, Properties config
+	) throws IOException {
+
+		Files.createDirectories(dir);
+		int classesPerJar = jars == 0 ? 0 : (classes + jars - 1) / jars;
+
+		Properties full = new Properties();
+		full.putAll(config);
+		full.setProperty("letters", Integer.toString(letters));
+		full.setProperty("jars", Integer.toString(jars));
+		full.setProperty("classesPerJar", Integer.toString(classesPerJar));
+		for (int i = 0; i < jars; i++) {
+			Path jar = dir.resolve("library-" + i + ".jar");
+			String pkg = "org.quiltmc.boot.fixture.lib" + i;
+			SyntheticJar.write(jar, pkg, classesPerJar);
+			full.setProperty("jar." + i, jar.toAbsolutePath().toString());
+			full.setProperty("package." + i, pkg);
+		}
+
+		Path loader = dir.resolve("loader.jar");
+		try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(loader))) {
+			out.putNextEntry(new JarEntry(TARGET_FILE));
+			out.write((target.getName() + "\n").getBytes(StandardCharsets.UTF_8));
+			out.closeEntry();
+
+			out.putNextEntry(new JarEntry(CONFIG_FILE));
+			full.store(out, "Written by " + StartupFixture.class.getName());
+			out.closeEntry();
+
+			Set<Class<?>> copied = new LinkedHashSet<>(Arrays.asList(target, FixtureTarget.class, FixtureMetrics.class));
+			for (Class<?> cls : copied) {
+				copyClass(out, cls);
+			}
+		}
+		return loader;
+	}
+
+	private static void copyClass(JarOutputStream out, Class<?> cls) throws IOException {
+		String name = cls.getName().replace('.', '/') + ".class";
+		try (InputStream in = StartupFixture.class.getClassLoader().getResourceAsStream(name)) {
+			if (in == null) {
+				throw new IOException("Unable to find " + name);
+			}
+
+			out.putNextEntry(new JarEntry(name));
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) >= 0) {
+				out.write(buffer, 0, read);
+			}
+			out.closeEntry();
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.urlhandler;
+
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.quiltmc.boot.BenchmarkLaunch;
+import org.quiltmc.boot.BootstrapLaunch;
+import org.quiltmc.boot.StubFileSystemProvider;
+
+/** Measures {@link BootUrlStreamHandler#getHostAddress(URL)} from many threads at once, which the JDK calls from
+ * {@link URL#equals(Object)} and {@link URL#hashCode()}. The {@code locked} benchmarks put the same call behind a
+ * single monitor, like the handler used to, to show the contention that was removed.
+ * <p>
+ * Run with -PjmhThreads=1,4,16 to compare how each scales. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HostAddressBenchmark {
+
+	private static final String FILE = "/mods/example.jar";
+
+	private BootstrapLaunch launch;
+	private BootUrlStreamHandler boot;
+	private LockedHandler locked;
+	private URL hostless;
+	private URL withHost;
+
+	@Setup
+	public void setup() throws MalformedURLException {
+		launch = BenchmarkLaunch.activate();
+		launch.putFileSystemProvider(
+			'a', new StubFileSystemProvider("quilt.afs", new byte[0], Collections.singletonList(Paths.get(FILE))),
+			new StubUrlStreamHandler()
+		);
+		boot = new org.quiltmc.boot.urlhandler.quilt.afs.Handler();
+		locked = new LockedHandler(boot);
+
+		hostless = new URL("quilt.afs", "", -1, FILE, boot);
+		withHost = new URL("quilt.afs", "localhost", -1, FILE, boot);
+	}
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkLaunch.deactivate(launch);
+	}
+
+	@Benchmark
+	public InetAddress hostless() {
+		return boot.getHostAddress(hostless);
+	}
+
+	@Benchmark
+	public InetAddress hostlessLocked() {
+		return locked.getHostAddress(hostless);
+	}
+
+	@Benchmark
+	public InetAddress withHost() {
+		return boot.getHostAddress(withHost);
+	}
+
+	@Benchmark
+	public InetAddress withHostLocked() {
+		return locked.getHostAddress(withHost);
+	}
+
+	/** Recreates the old behaviour, where every call locked the handler. */
+	static final class LockedHandler extends URLStreamHandler {
+		private final BootUrlStreamHandler handler;
+
+		LockedHandler(BootUrlStreamHandler handler) {
+			this.handler = handler;
+		}
+
+		@Override
+		protected URLConnection openConnection(URL u) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		protected synchronized InetAddress getHostAddress(URL u) {
+			return handler.getHostAddress(u);
+		}
+	}
+}
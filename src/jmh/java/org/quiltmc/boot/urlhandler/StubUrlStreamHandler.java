@@ -0,0 +1,124 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.urlhandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.net.InetAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+
+/** A {@link URLStreamHandler} which overrides every method publicly, so it can be registered with
+ * {@link java.lang.invoke.MethodHandles#publicLookup()}, and does as little work as possible in each. */
+public class StubUrlStreamHandler extends URLStreamHandler implements RedirectedUrlStreamHandler {
+
+	private MethodHandle setUrlHandle;
+
+	@Override
+	public void quilt_passSetURL(MethodHandle handle) {
+		setUrlHandle = handle;
+	}
+
+	@Override
+	public URLConnection openConnection(URL u) throws IOException {
+		return new StubConnection(u);
+	}
+
+	@Override
+	public URLConnection openConnection(URL u, Proxy p) throws IOException {
+		return new StubConnection(u);
+	}
+
+	@Override
+	public void parseURL(URL u, String spec, int start, int limit) {
+		super.parseURL(u, spec, start, limit);
+	}
+
+	@Override
+	public int getDefaultPort() {
+		return -1;
+	}
+
+	@Override
+	public boolean equals(URL u1, URL u2) {
+		return u1 == u2 || u1.getPath().equals(u2.getPath());
+	}
+
+	@Override
+	public int hashCode(URL u) {
+		return u.getPath().hashCode();
+	}
+
+	@Override
+	public boolean sameFile(URL u1, URL u2) {
+		return equals(u1, u2);
+	}
+
+	@Override
+	public InetAddress getHostAddress(URL u) {
+		return null;
+	}
+
+	@Override
+	public boolean hostsEqual(URL u1, URL u2) {
+		return true;
+	}
+
+	@Override
+	public String toExternalForm(URL u) {
+		return u.getProtocol() + ":" + u.getPath();
+	}
+
+	@Override
+	public void setURL(
+		URL u, String protocol, String host, int port, String authority, String userInfo, String path, String query,
+		String ref
+	) {
+		if (setUrlHandle == null) {
+			super.setURL(u, protocol, host, port, authority, userInfo, path, query, ref);
+		} else {
+			RedirectedUrlStreamHandler.invokeSetURL(
+				setUrlHandle, u, protocol, host, port, authority, userInfo, path, query, ref
+			);
+		}
+	}
+
+	@Override
+	@Deprecated
+	public void setURL(URL u, String protocol, String host, int port, String file, String ref) {
+		super.setURL(u, protocol, host, port, file, ref);
+	}
+
+	static final class StubConnection extends URLConnection {
+		StubConnection(URL url) {
+			super(url);
+		}
+
+		@Override
+		public void connect() {
+			connected = true;
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			throw new IOException("Stub connections have no content");
+		}
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.urlhandler;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.quiltmc.boot.BenchmarkLaunch;
+import org.quiltmc.boot.Bootstrap;
+import org.quiltmc.boot.BootstrapLaunch;
+import org.quiltmc.boot.StubFileSystemProvider;
+
+/** Measures the cost of each {@link URL} operation when it goes through {@link BootUrlStreamHandler} and
+ * {@link DelegateUrlHandler}, through just {@link DelegateUrlHandler}, or straight to the delegate. {@code urlCache}
+ * toggles {@link Bootstrap#SYSTEM_PROPERTY_URL_CACHE}, and {@code urlAdapters} compares the generated
+ * {@link UrlHandlerAdapter} subclasses with plain method handles ({@link Bootstrap#SYSTEM_PROPERTY_URL_ADAPTERS}).
+ * Both only affect the first two. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UrlDispatchBenchmark {
+
+	private static final String FILE = "/mods/example.jar";
+
+	@Param({ "false", "true" })
+	public boolean urlCache;
+
+	@Param({ "true", "false" })
+	public boolean urlAdapters;
+
+	private BootstrapLaunch launch;
+	private StubUrlStreamHandler direct;
+	private DelegateUrlHandler delegate;
+	private BootUrlStreamHandler boot;
+
+	private URL directUrl;
+	private URL directOther;
+	private URL delegateUrl;
+	private URL delegateOther;
+	private URL bootUrl;
+	private URL bootOther;
+
+	@Setup
+	public void setup() throws MalformedURLException {
+		System.setProperty(Bootstrap.SYSTEM_PROPERTY_URL_CACHE, Boolean.toString(urlCache));
+		System.setProperty(Bootstrap.SYSTEM_PROPERTY_URL_ADAPTERS, Boolean.toString(urlAdapters));
+		direct = new StubUrlStreamHandler();
+		launch = BenchmarkLaunch.activate();
+		launch.putFileSystemProvider(
+			'a', new StubFileSystemProvider("quilt.afs", new byte[0], Collections.singletonList(Paths.get(FILE))),
+			direct
+		);
+		delegate = launch.getUrlStreamHandler('a');
+		boot = new org.quiltmc.boot.urlhandler.quilt.afs.Handler();
+
+		directUrl = new URL("quilt.afs", "", -1, FILE, direct);
+		directOther = new URL("quilt.afs", "", -1, FILE, direct);
+		delegateUrl = new URL("quilt.afs", "", -1, FILE, delegate);
+		delegateOther = new URL("quilt.afs", "", -1, FILE, delegate);
+		bootUrl = new URL("quilt.afs", "", -1, FILE, boot);
+		bootOther = new URL("quilt.afs", "", -1, FILE, boot);
+	}
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkLaunch.deactivate(launch);
+	}
+
+	@Benchmark
+	public URLConnection openConnectionBoot() throws IOException {
+		return boot.openConnection(bootUrl);
+	}
+
+	@Benchmark
+	public URLConnection openConnectionDelegate() throws IOException {
+		return delegate.openConnection(delegateUrl);
+	}
+
+	@Benchmark
+	public URLConnection openConnectionDirect() throws IOException {
+		return direct.openConnection(directUrl);
+	}
+
+	@Benchmark
+	public boolean equalsBoot() {
+		return boot.equals(bootUrl, bootOther);
+	}
+
+	@Benchmark
+	public boolean equalsDelegate() {
+		return delegate.equals(delegateUrl, delegateOther);
+	}
+
+	@Benchmark
+	public boolean equalsDirect() {
+		return direct.equals(directUrl, directOther);
+	}
+
+	// URL.hashCode() caches its result, so these go to the handler directly
+
+	@Benchmark
+	public int hashCodeBoot() {
+		return boot.hashCode(bootUrl);
+	}
+
+	@Benchmark
+	public int hashCodeDelegate() {
+		return delegate.hashCode(delegateUrl);
+	}
+
+	@Benchmark
+	public int hashCodeDirect() {
+		return direct.hashCode(directUrl);
+	}
+
+	@Benchmark
+	public String toExternalFormBoot() {
+		return boot.toExternalForm(bootUrl);
+	}
+
+	@Benchmark
+	public String toExternalFormDelegate() {
+		return delegate.toExternalForm(delegateUrl);
+	}
+
+	@Benchmark
+	public String toExternalFormDirect() {
+		return direct.toExternalForm(directUrl);
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/** The fallback for providers which don't implement {@link AttributedDirectoryStreamProvider}, which reads the
+ * attributes of each entry from the provider as the entry is returned. */
+final class AttributedDirectoryStream implements DirectoryStream<AttributedPath> {
+
+	private final FileSystemProvider provider;
+	private final DirectoryStream<Path> stream;
+	private final LinkOption[] options;
+
+	AttributedDirectoryStream(FileSystemProvider provider, DirectoryStream<Path> stream, LinkOption... options) {
+		this.provider = provider;
+		this.stream = stream;
+		this.options = options;
+	}
+
+	@Override
+	public Iterator<AttributedPath> iterator() {
+		Iterator<Path> paths = stream.iterator();
+		return new Iterator<AttributedPath>() {
+			private AttributedPath next;
+
+			@Override
+			public boolean hasNext() {
+				while (next == null && paths.hasNext()) {
+					Path path = paths.next();
+					try {
+						BasicFileAttributes attributes = provider.readAttributes(path, BasicFileAttributes.class, options);
+						next = new AttributedPath(path, attributes);
+					} catch (NoSuchFileException e) {
+						// Deleted since it was listed
+					} catch (IOException e) {
+						throw new DirectoryIteratorException(e);
+					}
+				}
+				return next != null;
+			}
+
+			@Override
+			public AttributedPath next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				AttributedPath result = next;
+				next = null;
+				return result;
+			}
+		};
+	}
+
+	@Override
+	public void close() throws IOException {
+		stream.close();
+	}
+}
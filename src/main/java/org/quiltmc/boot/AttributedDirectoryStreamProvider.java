@@ -0,0 +1,53 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.DirectoryStream.Filter;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.spi.FileSystemProvider;
+
+/** An optional capability of a {@link FileSystemProvider}, for listing a directory along with the
+ * {@link java.nio.file.attribute.BasicFileAttributes} of every entry in one pass, rather than calling readAttributes
+ * once per entry.
+ * <p>
+ * Every {@link BootFileSystemProvider} implements this. If its delegate does too then the call is passed straight
+ * through, otherwise the delegate's normal directory stream is used and the attributes are read for each entry as it
+ * is returned. */
+public interface AttributedDirectoryStreamProvider {
+
+	/** Opens a directory like {@link FileSystemProvider#newDirectoryStream(Path, Filter)}, and reads the attributes of
+	 * each accepted entry like {@link FileSystemProvider#readAttributes(Path, Class, LinkOption...)}. Entries which are
+	 * deleted before their attributes are read are skipped, and other failures are thrown from the iterator as
+	 * {@link java.nio.file.DirectoryIteratorException}s. */
+	DirectoryStream<AttributedPath> newAttributedDirectoryStream(
+		Path dir, Filter<? super Path> filter, LinkOption... options
+	) throws IOException;
+
+	/** Opens an attributed directory stream for any path, using the provider's own implementation if it has one. */
+	static DirectoryStream<AttributedPath> newDirectoryStream(
+		Path dir, Filter<? super Path> filter, LinkOption... options
+	) throws IOException {
+		FileSystemProvider provider = dir.getFileSystem().provider();
+		if (provider instanceof AttributedDirectoryStreamProvider) {
+			return ((AttributedDirectoryStreamProvider) provider).newAttributedDirectoryStream(dir, filter, options);
+		}
+		return new AttributedDirectoryStream(provider, provider.newDirectoryStream(dir, filter), options);
+	}
+}
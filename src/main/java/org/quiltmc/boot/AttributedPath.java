@@ -0,0 +1,45 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/** A directory entry returned by {@link AttributedDirectoryStreamProvider}, along with its attributes. */
+public final class AttributedPath {
+
+	private final Path path;
+	private final BasicFileAttributes attributes;
+
+	public AttributedPath(Path path, BasicFileAttributes attributes) {
+		this.path = path;
+		this.attributes = attributes;
+	}
+
+	public Path path() {
+		return path;
+	}
+
+	public BasicFileAttributes attributes() {
+		return attributes;
+	}
+
+	@Override
+	public String toString() {
+		return path.toString();
+	}
+}
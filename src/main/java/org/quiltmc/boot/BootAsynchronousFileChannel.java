@@ -0,0 +1,330 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** An {@link AsynchronousFileChannel} over the blocking channel of any provider, for quilt.*fs delegates which don't
+ * support asynchronous channels themselves. Each read or write blocks a thread of the executor while it runs, which is
+ * cheap when that's a virtual thread: unless the caller passes their own executor, java 21 and later use one virtual
+ * thread per operation, and older versions use a bounded pool of daemon threads.
+ * <p>
+ * If the provider can open a {@link FileChannel} then reads and writes at different positions run in parallel.
+ * Otherwise they take turns, as a {@link SeekableByteChannel} only has a single position. */
+final class BootAsynchronousFileChannel extends AsynchronousFileChannel {
+
+	private final SeekableByteChannel channel;
+	/** The same as {@link #channel}, or null if the provider couldn't open a {@link FileChannel}. */
+	private final FileChannel fileChannel;
+	private final ExecutorService executor;
+	private final boolean readable;
+	private final boolean writable;
+	/** Guards the position of {@link #channel} when it isn't a {@link FileChannel}. Not a monitor, so that virtual
+	 * threads blocked in a read don't pin their carrier. */
+	private final ReentrantLock positionLock = new ReentrantLock();
+
+	private BootAsynchronousFileChannel(SeekableByteChannel channel, ExecutorService executor, boolean readable,
+		boolean writable) {
+
+		this.channel = channel;
+		this.fileChannel = channel instanceof FileChannel ? (FileChannel) channel : null;
+		this.executor = executor;
+		this.readable = readable;
+		this.writable = writable;
+	}
+
+	/** Opens the path with the same options as {@link AsynchronousFileChannel#open}.
+	 *
+	 * @param executor The executor to run operations on, or null to use the shared default. */
+	static AsynchronousFileChannel open(
+		FileSystemProvider provider, Path path, Set<? extends OpenOption> options, ExecutorService executor,
+		FileAttribute<?>... attrs
+	) throws IOException {
+
+		if (options.contains(StandardOpenOption.APPEND)) {
+			throw new UnsupportedOperationException("APPEND is not supported by asynchronous channels");
+		}
+
+		boolean writable = options.contains(StandardOpenOption.WRITE);
+		boolean readable = options.contains(StandardOpenOption.READ) || !writable;
+
+		SeekableByteChannel channel;
+		try {
+			channel = provider.newFileChannel(path, options, attrs);
+		} catch (UnsupportedOperationException e) {
+			channel = provider.newByteChannel(path, options, attrs);
+		}
+
+		return new BootAsynchronousFileChannel(
+			channel, executor == null ? DefaultExecutor.INSTANCE : executor, readable, writable
+		);
+	}
+
+	@Override
+	public long size() throws IOException {
+		if (fileChannel != null) {
+			return fileChannel.size();
+		}
+
+		positionLock.lock();
+		try {
+			return channel.size();
+		} finally {
+			positionLock.unlock();
+		}
+	}
+
+	@Override
+	public AsynchronousFileChannel truncate(long size) throws IOException {
+		if (!writable) {
+			throw new NonWritableChannelException();
+		}
+
+		positionLock.lock();
+		try {
+			channel.truncate(size);
+		} finally {
+			positionLock.unlock();
+		}
+		return this;
+	}
+
+	@Override
+	public void force(boolean metaData) throws IOException {
+		if (fileChannel != null) {
+			fileChannel.force(metaData);
+		}
+	}
+
+	@Override
+	public <A> void lock(
+		long position, long size, boolean shared, A attachment, CompletionHandler<FileLock, ? super A> handler
+	) {
+		FileChannel locked = lockable(shared);
+		submit(() -> new Lock(locked.lock(position, size, shared)), attachment, handler);
+	}
+
+	@Override
+	public Future<FileLock> lock(long position, long size, boolean shared) {
+		FileChannel locked = lockable(shared);
+		return submit(() -> new Lock(locked.lock(position, size, shared)));
+	}
+
+	@Override
+	public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+		FileLock lock = lockable(shared).tryLock(position, size, shared);
+		return lock == null ? null : new Lock(lock);
+	}
+
+	private FileChannel lockable(boolean shared) {
+		if (fileChannel == null) {
+			throw new UnsupportedOperationException("Locking needs a provider which supports FileChannel");
+		}
+
+		if (shared ? !readable : !writable) {
+			throw shared ? new NonReadableChannelException() : new NonWritableChannelException();
+		}
+		return fileChannel;
+	}
+
+	@Override
+	public <A> void read(
+		ByteBuffer dst, long position, A attachment, CompletionHandler<Integer, ? super A> handler
+	) {
+		checkRead(dst, position);
+		submit(() -> readAt(dst, position), attachment, handler);
+	}
+
+	@Override
+	public Future<Integer> read(ByteBuffer dst, long position) {
+		checkRead(dst, position);
+		return submit(() -> readAt(dst, position));
+	}
+
+	private void checkRead(ByteBuffer dst, long position) {
+		if (position < 0) {
+			throw new IllegalArgumentException("Negative position");
+		}
+
+		if (dst.isReadOnly()) {
+			throw new IllegalArgumentException("Read-only buffer");
+		}
+
+		if (!readable) {
+			throw new NonReadableChannelException();
+		}
+	}
+
+	private int readAt(ByteBuffer dst, long position) throws IOException {
+		if (fileChannel != null) {
+			return fileChannel.read(dst, position);
+		}
+
+		positionLock.lock();
+		try {
+			channel.position(position);
+			return channel.read(dst);
+		} finally {
+			positionLock.unlock();
+		}
+	}
+
+	@Override
+	public <A> void write(
+		ByteBuffer src, long position, A attachment, CompletionHandler<Integer, ? super A> handler
+	) {
+		checkWrite(position);
+		submit(() -> writeAt(src, position), attachment, handler);
+	}
+
+	@Override
+	public Future<Integer> write(ByteBuffer src, long position) {
+		checkWrite(position);
+		return submit(() -> writeAt(src, position));
+	}
+
+	private void checkWrite(long position) {
+		if (position < 0) {
+			throw new IllegalArgumentException("Negative position");
+		}
+
+		if (!writable) {
+			throw new NonWritableChannelException();
+		}
+	}
+
+	private int writeAt(ByteBuffer src, long position) throws IOException {
+		if (fileChannel != null) {
+			return fileChannel.write(src, position);
+		}
+
+		positionLock.lock();
+		try {
+			channel.position(position);
+			return channel.write(src);
+		} finally {
+			positionLock.unlock();
+		}
+	}
+
+	@Override
+	public boolean isOpen() {
+		return channel.isOpen();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private <V, A> void submit(Task<V> task, A attachment, CompletionHandler<V, ? super A> handler) {
+		if (handler == null) {
+			throw new NullPointerException("handler");
+		}
+
+		executor.execute(() -> {
+			V result;
+			try {
+				result = task.run();
+			} catch (Throwable t) {
+				handler.failed(t, attachment);
+				return;
+			}
+			handler.completed(result, attachment);
+		});
+	}
+
+	private <V> Future<V> submit(Task<V> task) {
+		CompletableFuture<V> future = new CompletableFuture<>();
+		executor.execute(() -> {
+			try {
+				future.complete(task.run());
+			} catch (Throwable t) {
+				future.completeExceptionally(t);
+			}
+		});
+		return future;
+	}
+
+	private interface Task<V> {
+		V run() throws IOException;
+	}
+
+	private final class Lock extends FileLock {
+		private final FileLock lock;
+
+		Lock(FileLock lock) {
+			super(BootAsynchronousFileChannel.this, lock.position(), lock.size(), lock.isShared());
+			this.lock = lock;
+		}
+
+		@Override
+		public boolean isValid() {
+			return lock.isValid();
+		}
+
+		@Override
+		public void release() throws IOException {
+			lock.release();
+		}
+	}
+
+	private static final class DefaultExecutor {
+		static final ExecutorService INSTANCE = create();
+
+		private static ExecutorService create() {
+			ExecutorService virtual = VirtualThreads.newPerTaskExecutor();
+			if (virtual != null) {
+				return virtual;
+			}
+
+			int threads = Math.max(4, Math.min(Runtime.getRuntime().availableProcessors() * 2, 32));
+			AtomicInteger threadCount = new AtomicInteger();
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(
+				threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), task -> {
+					Thread thread = new Thread(task, "Quilt Bootstrap async I/O #" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			);
+			pool.allowCoreThreadTimeOut(true);
+			return pool;
+		}
+	}
+}
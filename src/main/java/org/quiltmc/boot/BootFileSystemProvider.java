@@ -40,18 +40,23 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 
-public abstract class BootFileSystemProvider extends FileSystemProvider {
+import org.quiltmc.boot.monitor.Operation;
+import org.quiltmc.boot.monitor.OperationRecorder;
+
+public abstract class BootFileSystemProvider extends FileSystemProvider implements AttributedDirectoryStreamProvider {
 
 	final char letter;
 	final String scheme;
+	final DelegateSlot slot;
 
 	private BootFileSystemProvider(char letter) {
 		this.letter = letter;
 		this.scheme = "quilt." + letter + "fs";
+		this.slot = DelegateSlot.get(letter);
 	}
 
 	FileSystemProvider getDelegate() {
-		return Bootstrap.instance().currentLaunch().getFileSystemProvider(letter);
+		return slot.fileSystemProvider();
 	}
 
 	@Override
@@ -61,7 +66,9 @@ public abstract class BootFileSystemProvider extends FileSystemProvider {
 
 	@Override
 	public FileSystem newFileSystem(URI uri, Map<String, ?> env) throws IOException {
-		return getDelegate().newFileSystem(uri, env);
+		return OperationRecorder.record(
+			letter, Operation.NEW_FILE_SYSTEM, uri, () -> getDelegate().newFileSystem(uri, env)
+		);
 	}
 
 	@Override
@@ -69,9 +76,9 @@ public abstract class BootFileSystemProvider extends FileSystemProvider {
 		FileSystemProvider fsp = getDelegate();
 		if (fsp == null) {
 			return null;
-		} else {
-			return fsp.getFileSystem(uri);
 		}
+
+		return OperationRecorder.record(letter, Operation.GET_FILE_SYSTEM, uri, () -> fsp.getFileSystem(uri));
 	}
 
 	@Override
@@ -89,9 +96,9 @@ public abstract class BootFileSystemProvider extends FileSystemProvider {
 		FileSystemProvider fsp = getDelegate();
 		if (fsp == null) {
 			throw new IllegalStateException("No delegate - we can't convert " + uri + " into a path!");
-		} else {
-			return fsp.getPath(uri);
 		}
+
+		return OperationRecorder.record(letter, Operation.GET_PATH, uri, () -> fsp.getPath(uri));
 	}
 
 	private FileSystemProvider delegateOrThrowIO() throws IOException {
@@ -104,130 +111,191 @@ public abstract class BootFileSystemProvider extends FileSystemProvider {
 
 	@Override
 	public FileSystem newFileSystem(Path path, Map<String, ?> env) throws IOException {
-		return delegateOrThrowIO().newFileSystem(path, env);
+		return OperationRecorder.record(
+			letter, Operation.NEW_FILE_SYSTEM, path, () -> delegateOrThrowIO().newFileSystem(path, env)
+		);
 	}
 
 	@Override
 	public InputStream newInputStream(Path path, OpenOption... options) throws IOException {
-		return delegateOrThrowIO().newInputStream(path, options);
+		return OperationRecorder.record(
+			letter, Operation.NEW_INPUT_STREAM, path, () -> delegateOrThrowIO().newInputStream(path, options)
+		);
 	}
 
 	@Override
 	public OutputStream newOutputStream(Path path, OpenOption... options) throws IOException {
-		return delegateOrThrowIO().newOutputStream(path, options);
+		return OperationRecorder.record(
+			letter, Operation.NEW_OUTPUT_STREAM, path, () -> delegateOrThrowIO().newOutputStream(path, options)
+		);
 	}
 
 	@Override
 	public FileChannel newFileChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs)
 		throws IOException {
-		return delegateOrThrowIO().newFileChannel(path, options, attrs);
+
+		return OperationRecorder.record(
+			letter, Operation.NEW_FILE_CHANNEL, path, () -> delegateOrThrowIO().newFileChannel(path, options, attrs)
+		);
 	}
 
+	/** Falls back to {@link BootAsynchronousFileChannel} if the delegate doesn't support asynchronous channels. */
 	@Override
 	public AsynchronousFileChannel newAsynchronousFileChannel(
 		Path path, Set<? extends OpenOption> options, ExecutorService executor, FileAttribute<?>... attrs
 	) throws IOException {
 
-		return delegateOrThrowIO().newAsynchronousFileChannel(path, options, executor, attrs);
+		return OperationRecorder.record(letter, Operation.NEW_ASYNCHRONOUS_FILE_CHANNEL, path, () -> {
+			FileSystemProvider fsp = delegateOrThrowIO();
+			try {
+				return fsp.newAsynchronousFileChannel(path, options, executor, attrs);
+			} catch (UnsupportedOperationException e) {
+				return BootAsynchronousFileChannel.open(fsp, path, options, executor, attrs);
+			}
+		});
 	}
 
 	@Override
 	public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs)
 		throws IOException {
 
-		return delegateOrThrowIO().newByteChannel(path, options, attrs);
+		return OperationRecorder.record(
+			letter, Operation.NEW_BYTE_CHANNEL, path, () -> delegateOrThrowIO().newByteChannel(path, options, attrs)
+		);
 	}
 
 	@Override
 	public DirectoryStream<Path> newDirectoryStream(Path dir, Filter<? super Path> filter) throws IOException {
-		return delegateOrThrowIO().newDirectoryStream(dir, filter);
+		return OperationRecorder.record(
+			letter, Operation.NEW_DIRECTORY_STREAM, dir, () -> delegateOrThrowIO().newDirectoryStream(dir, filter)
+		);
+	}
+
+	/** Passes straight through if the delegate is also an {@link AttributedDirectoryStreamProvider}. Otherwise the
+	 * attributes are read from the delegate directly, so each entry costs one call to it rather than two trips through
+	 * this provider. */
+	@Override
+	public DirectoryStream<AttributedPath> newAttributedDirectoryStream(
+		Path dir, Filter<? super Path> filter, LinkOption... options
+	) throws IOException {
+
+		return OperationRecorder.record(letter, Operation.NEW_ATTRIBUTED_DIRECTORY_STREAM, dir, () -> {
+			FileSystemProvider fsp = delegateOrThrowIO();
+			if (fsp instanceof AttributedDirectoryStreamProvider) {
+				return ((AttributedDirectoryStreamProvider) fsp).newAttributedDirectoryStream(dir, filter, options);
+			}
+			return new AttributedDirectoryStream(fsp, fsp.newDirectoryStream(dir, filter), options);
+		});
 	}
 
 	@Override
 	public void createDirectory(Path dir, FileAttribute<?>... attrs) throws IOException {
-		delegateOrThrowIO().createDirectory(dir, attrs);
+		OperationRecorder.run(
+			letter, Operation.CREATE_DIRECTORY, dir, () -> delegateOrThrowIO().createDirectory(dir, attrs)
+		);
 	}
 
 	@Override
 	public void createSymbolicLink(Path link, Path target, FileAttribute<?>... attrs) throws IOException {
-		delegateOrThrowIO().createSymbolicLink(link, target, attrs);
+		OperationRecorder.run(
+			letter, Operation.CREATE_SYMBOLIC_LINK, link, () -> delegateOrThrowIO().createSymbolicLink(link, target, attrs)
+		);
 	}
 
 	@Override
 	public void createLink(Path link, Path existing) throws IOException {
-		delegateOrThrowIO().createLink(link, existing);
+		OperationRecorder.run(
+			letter, Operation.CREATE_LINK, link, () -> delegateOrThrowIO().createLink(link, existing)
+		);
 	}
 
 	@Override
 	public void delete(Path path) throws IOException {
-		delegateOrThrowIO().delete(path);
+		OperationRecorder.run(letter, Operation.DELETE, path, () -> delegateOrThrowIO().delete(path));
 	}
 
 	@Override
 	public boolean deleteIfExists(Path path) throws IOException {
-		return delegateOrThrowIO().deleteIfExists(path);
+		return OperationRecorder.record(
+			letter, Operation.DELETE_IF_EXISTS, path, () -> delegateOrThrowIO().deleteIfExists(path)
+		);
 	}
 
 	@Override
 	public Path readSymbolicLink(Path link) throws IOException {
-		return delegateOrThrowIO().readSymbolicLink(link);
+		return OperationRecorder.record(
+			letter, Operation.READ_SYMBOLIC_LINK, link, () -> delegateOrThrowIO().readSymbolicLink(link)
+		);
 	}
 
 	@Override
 	public void copy(Path source, Path target, CopyOption... options) throws IOException {
-		delegateOrThrowIO().copy(source, target, options);
+		OperationRecorder.run(letter, Operation.COPY, source, () -> delegateOrThrowIO().copy(source, target, options));
 	}
 
 	@Override
 	public void move(Path source, Path target, CopyOption... options) throws IOException {
-		delegateOrThrowIO().move(source, target, options);
+		OperationRecorder.run(letter, Operation.MOVE, source, () -> delegateOrThrowIO().move(source, target, options));
 	}
 
 	@Override
 	public boolean isSameFile(Path path, Path path2) throws IOException {
-		return delegateOrThrowIO().isSameFile(path, path2);
+		return OperationRecorder.record(
+			letter, Operation.IS_SAME_FILE, path, () -> delegateOrThrowIO().isSameFile(path, path2)
+		);
 	}
 
 	@Override
 	public boolean isHidden(Path path) throws IOException {
-		return delegateOrThrowIO().isHidden(path);
+		return OperationRecorder.record(letter, Operation.IS_HIDDEN, path, () -> delegateOrThrowIO().isHidden(path));
 	}
 
 	@Override
 	public FileStore getFileStore(Path path) throws IOException {
-		return delegateOrThrowIO().getFileStore(path);
+		return OperationRecorder.record(
+			letter, Operation.GET_FILE_STORE, path, () -> delegateOrThrowIO().getFileStore(path)
+		);
 	}
 
 	@Override
 	public void checkAccess(Path path, AccessMode... modes) throws IOException {
-		delegateOrThrowIO().checkAccess(path, modes);
+		OperationRecorder.run(letter, Operation.CHECK_ACCESS, path, () -> delegateOrThrowIO().checkAccess(path, modes));
 	}
 
 	@Override
 	public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
 
 		FileSystemProvider fsp = getDelegate();
-		if (fsp != null) {
-			return fsp.getFileAttributeView(path, type, options);
+		if (fsp == null) {
+			throw new IllegalStateException("Cannot interact with " + getScheme() + " as the delegate file system has not been set!");
 		}
-		throw new IllegalStateException("Cannot interact with " + getScheme() + " as the delegate file system has not been set!");
+
+		return OperationRecorder.record(
+			letter, Operation.GET_FILE_ATTRIBUTE_VIEW, path, () -> fsp.getFileAttributeView(path, type, options)
+		);
 	}
 
 	@Override
 	public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options)
 		throws IOException {
 
-		return delegateOrThrowIO().readAttributes(path, type, options);
+		return OperationRecorder.record(
+			letter, Operation.READ_ATTRIBUTES, path, () -> delegateOrThrowIO().readAttributes(path, type, options)
+		);
 	}
 
 	@Override
 	public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
-		return delegateOrThrowIO().readAttributes(path, attributes, options);
+		return OperationRecorder.record(
+			letter, Operation.READ_ATTRIBUTES_MAP, path, () -> delegateOrThrowIO().readAttributes(path, attributes, options)
+		);
 	}
 
 	@Override
 	public void setAttribute(Path path, String attribute, Object value, LinkOption... options) throws IOException {
-		delegateOrThrowIO().setAttribute(path, attribute, value, options);
+		OperationRecorder.run(
+			letter, Operation.SET_ATTRIBUTE, path, () -> delegateOrThrowIO().setAttribute(path, attribute, value, options)
+		);
 	}
 
 	public static class BootFileSystemProviderA extends BootFileSystemProvider {
@@ -23,15 +23,60 @@ import java.nio.file.Paths;
 
 public class Bootstrap {
 	public static final String SYSTEM_PROPERTY_LOADER_JAR = "quiltmc.boot.loader_jar_file";
+	/** If "true", nothing is written to stderr when the bootstrap recovers from a problem by itself. */
+	public static final String SYSTEM_PROPERTY_QUIET = "quiltmc.boot.quiet";
+	/** A file to store the package index of every jar on the {@link BootstrapClassLoader} classpath in, so it doesn't
+	 * need to be rebuilt on the next launch. */
+	public static final String SYSTEM_PROPERTY_CLASS_INDEX_CACHE = "quiltmc.boot.class_index_cache";
+	/** A file to write the {@link BootstrapTimeline} to, as json, when the JVM exits. */
+	public static final String SYSTEM_PROPERTY_TIMELINE_FILE = "quiltmc.boot.timeline_file";
+	/** If set, operations on quilt.*fs filesystems and urls which take at least this many microseconds are emitted as
+	 * JFR events while a recording is running. Unset (or negative) by default, which doesn't touch JFR at all. */
+	public static final String SYSTEM_PROPERTY_JFR_THRESHOLD_MICROS = "quiltmc.boot.jfr_threshold_micros";
+	/** If "true", jars on the {@link BootstrapClassLoader} classpath are memory mapped and read directly, rather than
+	 * through {@link java.util.jar.JarFile}. Signed and zip64 jars are always read through JarFile. */
+	public static final String SYSTEM_PROPERTY_MAPPED_JARS = "quiltmc.boot.mapped_jars";
+	/** A directory to store the classes and resources each loader jar loads during its launch in, so the next launch of
+	 * the same jar can load them ahead of time on background threads. */
+	public static final String SYSTEM_PROPERTY_CLASS_TRACE = "quiltmc.boot.class_trace";
+	/** A directory to keep dynamic CDS archives of each loader jar in. When set, the launch runs in a child JVM which
+	 * uses the archive, or creates it if it doesn't exist yet, while this JVM stays resident and waits for it. Needs
+	 * java 13 or later, and is ignored if this JVM was started with an archive of its own. */
+	public static final String SYSTEM_PROPERTY_CDS_ARCHIVE = "quiltmc.boot.cds_archive";
+	/** If "true", every operation on quilt.*fs filesystems and urls is counted and timed, and published through JMX
+	 * and {@link BootstrapContext#operationStatistics()}. */
+	public static final String SYSTEM_PROPERTY_METRICS = "quiltmc.boot.metrics";
+	/** If "true", the external form of each quilt.*fs url is remembered after the first time the delegate computes it,
+	 * until the letter's delegate is replaced. The urls are held weakly. */
+	public static final String SYSTEM_PROPERTY_URL_CACHE = "quiltmc.boot.url_cache";
+	/** If "false", quilt.*fs url handlers always call their delegates through method handles, rather than through a
+	 * class generated for each delegate class which calls the methods it overrides directly. */
+	public static final String SYSTEM_PROPERTY_URL_ADAPTERS = "quiltmc.boot.url_adapters";
+	/** If "true", checks that the class loader of each launch is garbage collected after a relaunch, and reports what
+	 * might be keeping it alive if it isn't. */
+	public static final String SYSTEM_PROPERTY_UNLOAD_CHECK = "quiltmc.boot.unload_check";
+	/** A directory to write a heap dump to when {@link #SYSTEM_PROPERTY_UNLOAD_CHECK} finds a class loader which wasn't
+	 * garbage collected. */
+	public static final String SYSTEM_PROPERTY_UNLOAD_HEAP_DUMP = "quiltmc.boot.unload_heap_dump";
 
 	private static Bootstrap instance;
 
 	public final BootstrapEnvironment environment;
-	private BootstrapLaunch launch = new BootstrapLaunch();
+	final BootstrapTimeline timeline;
+	private BootstrapLaunch launch;
 
 	Bootstrap(BootstrapEnvironment environment) {
 		this.environment = environment;
 
+		String timelineFile = System.getProperty(SYSTEM_PROPERTY_TIMELINE_FILE);
+		this.timeline = new BootstrapTimeline(timelineFile != null);
+		// The child JVM writes its own timeline
+		if (timelineFile != null && !CdsArchive.willLaunchChild()) {
+			timeline.dumpOnExit(timelineFile);
+		}
+
+		this.launch = new BootstrapLaunch(timeline);
+
 		instance = this;
 	}
 
@@ -48,9 +93,64 @@ public class Bootstrap {
 	}
 
 	void start(String[] args) {
-		loadUrlHandlerProp();
+		timeline.time("loadUrlHandlerProp", () -> {
+			if (!UrlHandlerProviders.registered()) {
+				loadUrlHandlerProp();
+			}
+		});
+
+		Path loaderPath = timeline.time("validateLoaderPath", Bootstrap::findLoaderPath);
+
+		int childExitCode = CdsArchive.launchChild(getClass(), loaderPath, args);
+		if (childExitCode >= 0) {
+			if (childExitCode != 0) {
+				System.exit(childExitCode);
+			}
+			return;
+		}
+
+		launch.activate();
+		ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+
+		for (int iteration = 0;; iteration++) {
+			Path currentLoader = loaderPath;
+			Path replacementLoader = timeline.time("launch #" + iteration, () -> launch.run(currentLoader, args));
+
+			if (replacementLoader == null) {
+				return;
+			}
+
+			CdsArchive.onRelaunch(loaderPath, replacementLoader);
+
+			BootstrapLaunch next = new BootstrapLaunch(timeline);
+			timeline.time("reuse #" + iteration, () -> next.reuse(launch, currentLoader, replacementLoader));
+
+			int currentIteration = iteration;
+			timeline.time("tearDown #" + iteration, () -> tearDown(currentIteration, next, contextClassLoader));
 
-		Path loaderPath = null;
+			launch = next;
+			launch.activate();
+			loaderPath = replacementLoader;
+		}
+	}
+
+	private void tearDown(int iteration, BootstrapLaunch next, ClassLoader contextClassLoader) {
+		BootstrapClassLoader oldLoader = launch.classLoader;
+		launch.tearDown();
+
+		Thread thread = Thread.currentThread();
+		if (thread.getContextClassLoader() == oldLoader) {
+			thread.setContextClassLoader(contextClassLoader);
+		}
+
+		if (Boolean.getBoolean(SYSTEM_PROPERTY_UNLOAD_CHECK)) {
+			String heapDump = System.getProperty(SYSTEM_PROPERTY_UNLOAD_HEAP_DUMP);
+			UnloadCheck.start(iteration, oldLoader, next.classLoader, heapDump);
+		}
+	}
+
+	private static Path findLoaderPath() {
+		Path loaderPath;
 
 		String sysprop = System.getProperty(SYSTEM_PROPERTY_LOADER_JAR);
 		if (sysprop == null) {
@@ -69,16 +169,7 @@ public class Bootstrap {
 			throw new Error("Cannot launch with missing path " + loaderPath);
 		}
 
-		while (true) {
-			Path replacementLoader = launch.run(loaderPath, args);
-
-			if (replacementLoader == null) {
-				return;
-			}
-
-			launch = new BootstrapLaunch();
-			loaderPath = replacementLoader;
-		}
+		return loaderPath;
 	}
 
 	private static void loadUrlHandlerProp() {
@@ -16,16 +16,295 @@
 
 package org.quiltmc.boot;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.jar.JarEntry;
+import java.util.jar.Manifest;
 
 public class BootstrapClassLoader extends URLClassLoader {
 
+	static {
+		// Locks per class name rather than on the whole loader, so the threads loader starts don't serialise here
+		ClassLoader.registerAsParallelCapable();
+	}
+
+	/** Every jar that could be indexed. Anything else (directories, non-file urls, multi-release jars) is passed to
+	 * {@link URLClassLoader#addURL(URL)} instead, but still searched in the order it was added. */
+	private final ClassPathIndex index = new ClassPathIndex();
+	private final List<URL> urls = new CopyOnWriteArrayList<>();
+	private volatile ClassLoadTrace trace;
+	private volatile boolean closed;
+
 	public BootstrapClassLoader() {
 		super(new URL[0]);
 	}
 
 	public void add(URL url) {
+		urls.add(url);
+		if (!index.add(url)) {
+			addUnindexed(url);
+		}
+		classPathChanged();
+	}
+
+	/** Adds the jar a launch was started from, keeping the bytes of the classes loaded from it.
+	 *
+	 * @param reused The same jar, already indexed by the previous launch, or null. */
+	void addLaunchJar(URL url, IndexedJar reused) {
+		urls.add(url);
+		if (reused != null) {
+			index.add(reused);
+		} else if (!index.add(url, true)) {
+			addUnindexed(url);
+		}
+		classPathChanged();
+	}
+
+	private void addUnindexed(URL url) {
+		index.addUnindexed(url);
 		super.addURL(url);
 	}
+
+	void trace(ClassLoadTrace trace) {
+		this.trace = trace;
+	}
+
+	private void classPathChanged() {
+		ClassLoadTrace trace = this.trace;
+		if (trace != null) {
+			trace.classPathChanged();
+		}
+	}
+
+	/** @return This loader's jar at {@code previousPath}, in a form that can be passed to
+	 *         {@link #addLaunchJar(URL, IndexedJar)} of the next launch of {@code path}, or null if the jars aren't
+	 *         identical. */
+	IndexedJar reuseFor(Path previousPath, Path path) throws IOException {
+		return index.reuseFor(previousPath, path, path.toUri().toURL());
+	}
+
+	/** @return True if this loader has defined the class, without loading it if it hasn't. */
+	boolean hasLoaded(String name) {
+		return findLoadedClass(name) != null;
+	}
+
+	@Override
+	public URL[] getURLs() {
+		return urls.toArray(new URL[0]);
+	}
+
+	@Override
+	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+		Class<?> cls = super.loadClass(name, resolve);
+		ClassLoadTrace trace = this.trace;
+		if (trace != null && cls.getClassLoader() == this) {
+			trace.recordClass(name);
+		}
+		return cls;
+	}
+
+	@Override
+	protected Class<?> findClass(String name) throws ClassNotFoundException {
+		if (closed) {
+			// Some of the jars may already belong to the next launch
+			throw new ClassNotFoundException(name + " (the class loader has been closed)");
+		}
+
+		String path = name.replace('.', '/').concat(".class");
+		int unindexedPosition = -1;
+
+		for (IndexedJar jar : index.owners(path)) {
+			// Anything URLClassLoader handles that was added before this jar comes first
+			if (jar.position > index.firstUnindexedPosition()) {
+				if (unindexedPosition < 0) {
+					unindexedPosition = unindexedPosition(path);
+				}
+				if (unindexedPosition < jar.position) {
+					break;
+				}
+			}
+
+			try {
+				MappedJar mapped = jar.mapped();
+				if (mapped != null) {
+					int entry = mapped.find(path);
+					if (entry >= 0) {
+						return defineClass(name, jar, mapped, entry);
+					}
+					continue;
+				}
+
+				byte[] cached = jar.cachedClass(path);
+				if (cached != null) {
+					return defineClass(name, jar, cached, null);
+				}
+
+				JarEntry entry = jar.findEntry(path);
+				if (entry != null) {
+					return defineClass(name, jar, path, entry);
+				}
+			} catch (IOException e) {
+				throw new ClassNotFoundException(name, e);
+			}
+		}
+
+		return super.findClass(name);
+	}
+
+	private Class<?> defineClass(String name, IndexedJar jar, String path, JarEntry entry) throws IOException {
+		byte[] bytes;
+		try (InputStream stream = jar.jarFile().getInputStream(entry)) {
+			bytes = readFully(stream, entry.getSize());
+		}
+
+		// Code signers are only known once the entry has been fully read
+		CodeSigner[] signers = entry.getCodeSigners();
+		if (signers == null) {
+			jar.cacheClass(path, bytes);
+		}
+		return defineClass(name, jar, bytes, signers);
+	}
+
+	private Class<?> defineClass(String name, IndexedJar jar, MappedJar mapped, int entry) throws IOException {
+		int dot = name.lastIndexOf('.');
+		if (dot > 0) {
+			ensurePackageDefined(name.substring(0, dot), jar);
+		}
+
+		// Mapped jars are never signed
+		CodeSource source = new CodeSource(jar.url, (CodeSigner[]) null);
+		if (mapped.method(entry) == MappedJar.STORED) {
+			return mapped.stored(entry, data -> defineClass(name, data, source));
+		}
+
+		return mapped.inflate(entry, (bytes, length) -> defineClass(name, bytes, 0, length, source));
+	}
+
+	private Class<?> defineClass(String name, IndexedJar jar, byte[] bytes, CodeSigner[] signers) throws IOException {
+		int dot = name.lastIndexOf('.');
+		if (dot > 0) {
+			ensurePackageDefined(name.substring(0, dot), jar);
+		}
+
+		CodeSource source = new CodeSource(jar.url, signers);
+		return defineClass(name, bytes, 0, bytes.length, source);
+	}
+
+	private void ensurePackageDefined(String name, IndexedJar jar) throws IOException {
+		if (getPackage(name) != null) {
+			return;
+		}
+
+		Manifest manifest = jar.manifest();
+		try {
+			if (manifest == null) {
+				definePackage(name, null, null, null, null, null, null, null);
+			} else {
+				definePackage(name, manifest, jar.url);
+			}
+		} catch (IllegalArgumentException e) {
+			// Another thread defined it first
+			if (getPackage(name) == null) {
+				throw e;
+			}
+		}
+	}
+
+	@Override
+	public URL findResource(String name) {
+		URL url = findResource0(name);
+		ClassLoadTrace trace = this.trace;
+		if (trace != null && url != null) {
+			trace.recordResource(name);
+		}
+		return url;
+	}
+
+	private URL findResource0(String name) {
+		URL unindexed = null;
+		int unindexedPosition = -1;
+
+		for (IndexedJar jar : index.owners(name)) {
+			if (jar.position > index.firstUnindexedPosition()) {
+				if (unindexedPosition < 0) {
+					unindexed = super.findResource(name);
+					unindexedPosition = unindexed == null ? Integer.MAX_VALUE : index.positionOf(unindexed, name);
+				}
+				if (unindexedPosition < jar.position) {
+					return unindexed;
+				}
+			}
+
+			URL url = jar.findResource(name);
+			if (url != null) {
+				return url;
+			}
+		}
+
+		return unindexedPosition < 0 ? super.findResource(name) : unindexed;
+	}
+
+	/** @return The position of the first url left to {@link URLClassLoader} which has the entry, or
+	 *         {@link Integer#MAX_VALUE} if none of them have it. */
+	private int unindexedPosition(String name) {
+		URL url = super.findResource(name);
+		return url == null ? Integer.MAX_VALUE : index.positionOf(url, name);
+	}
+
+	@Override
+	public Enumeration<URL> findResources(String name) throws IOException {
+		List<IndexedJar> owners = index.owners(name);
+		if (owners.isEmpty()) {
+			return super.findResources(name);
+		}
+
+		List<URL> unindexed = Collections.list(super.findResources(name));
+		List<URL> found = new ArrayList<>();
+		int next = 0;
+
+		for (IndexedJar jar : owners) {
+			for (; next < unindexed.size() && index.positionOf(unindexed.get(next), name) < jar.position; next++) {
+				found.add(unindexed.get(next));
+			}
+
+			URL url = jar.findResource(name);
+			if (url != null) {
+				found.add(url);
+			}
+		}
+
+		found.addAll(unindexed.subList(next, unindexed.size()));
+		return Collections.enumeration(found);
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		try {
+			index.close();
+		} finally {
+			super.close();
+		}
+	}
+
+	static byte[] readFully(InputStream stream, long sizeHint) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(sizeHint > 0 ? (int) sizeHint : 8192);
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = stream.read(buffer)) >= 0) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
 }
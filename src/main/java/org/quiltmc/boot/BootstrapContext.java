@@ -22,7 +22,10 @@ import java.lang.invoke.MethodHandles.Lookup;
 import java.net.URL;
 import java.net.URLStreamHandler;
 import java.nio.file.spi.FileSystemProvider;
+import java.util.Collections;
+import java.util.List;
 
+import org.quiltmc.boot.monitor.OperationStatistics;
 import org.quiltmc.boot.urlhandler.RedirectedUrlStreamHandler;
 
 public interface BootstrapContext {
@@ -61,5 +64,21 @@ public interface BootstrapContext {
 	 *            when {@link Lookup#findVirtual(Class, String, java.lang.invoke.MethodType) finding methods}. */
 	void putFileSystemProvider(char letter, FileSystemProvider provider, URLStreamHandler handler, Lookup urlLookup);
 
+	/** Adds a jar or directory to the classpath of the launch's class loader. As well as normal file urls, this accepts
+	 * jars nested inside other jars, like {@code jar:file:/outer.jar!/META-INF/jars/inner.jar}, which are read in
+	 * place rather than extracted. */
 	void addToClassPath(URL url);
+
+	/** @return The timeline of the bootstrap's startup phases, which loader can also {@link BootstrapTimeline#begin
+	 *         add its own phases to}. This is shared between every launch, including relaunches. Contexts which don't
+	 *         keep a timeline return {@link BootstrapTimeline#DISABLED}, which drops every phase added to it. */
+	default BootstrapTimeline timeline() {
+		return BootstrapTimeline.DISABLED;
+	}
+
+	/** @return Counters and latency percentiles for every operation on each quilt.*fs letter, or an empty list if
+	 *         {@link Bootstrap#SYSTEM_PROPERTY_METRICS} isn't enabled. */
+	default List<OperationStatistics> operationStatistics() {
+		return Collections.emptyList();
+	}
 }
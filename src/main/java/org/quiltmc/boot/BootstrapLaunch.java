@@ -31,17 +31,47 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.spi.FileSystemProvider;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.quiltmc.boot.monitor.OperationMetrics;
+import org.quiltmc.boot.monitor.OperationStatistics;
 import org.quiltmc.boot.urlhandler.DelegateUrlHandler;
 
 public class BootstrapLaunch implements BootstrapContext {
 	private static final String BOOTSTRAP_TARGET_FILE = "META-INF/quilt-bootstrap/target.txt";
+	/** The unbound run method of each target class that doesn't implement {@link BootstrapInvoked}. */
+	private static final ClassValue<MethodHandle> RUN_HANDLES = new ClassValue<MethodHandle>() {
+		@Override
+		protected MethodHandle computeValue(Class<?> cls) {
+			try {
+				MethodType type = MethodType.methodType(Path.class, Object.class, String[].class);
+				return MethodHandles.lookup().findVirtual(cls, "run", type);
+			} catch (NoSuchMethodException | IllegalAccessException e) {
+				throw new Error("Unable to find target method ", e);
+			}
+		}
+	};
 
 	public final BootstrapClassLoader classLoader = new BootstrapClassLoader();
 	private final Map<Character, FileSystemProvider> fileSystemProviders = new ConcurrentHashMap<>();
 	private final Map<Character, DelegateUrlHandler> urlStreamHandlers = new ConcurrentHashMap<>();
+	private final BootstrapTimeline timeline;
+	/** True while this is the launch whose delegates are published in the {@link DelegateSlot}s. */
+	private boolean active;
+	private boolean tornDown;
+	/** The loader jar of the previous launch, if it's identical to the jar this launch will run. */
+	private IndexedJar reusedJar;
+
+	public BootstrapLaunch() {
+		this(new BootstrapTimeline(false));
+	}
+
+	BootstrapLaunch(BootstrapTimeline timeline) {
+		this.timeline = timeline;
+	}
 
 	public FileSystemProvider getFileSystemProvider(char letter) {
 		return fileSystemProviders.get(letter);
@@ -63,29 +93,121 @@ public class BootstrapLaunch implements BootstrapContext {
 		if (letter < 'a' || letter > 'z') {
 			throw new IllegalArgumentException("Only 'a-z' filesystems are supported!");
 		}
-		fileSystemProviders.put(letter, provider);
-		urlStreamHandlers.put(letter, new DelegateUrlHandler(handler, urlLookup));
+		DelegateUrlHandler urlHandler = new DelegateUrlHandler(handler, urlLookup);
+
+		synchronized (this) {
+			if (tornDown) {
+				urlHandler.release();
+				throw new IllegalStateException("This launch has already been replaced by a relaunch");
+			}
+
+			fileSystemProviders.put(letter, provider);
+			DelegateUrlHandler previous = urlStreamHandlers.put(letter, urlHandler);
+			if (previous != null) {
+				previous.invalidateCache();
+			}
+
+			if (active) {
+				DelegateSlot.get(letter).set(provider, urlHandler);
+			}
+		}
+	}
+
+	/** Publishes this launch's delegates into the {@link DelegateSlot}s, replacing whatever was there before. */
+	synchronized void activate() {
+		DelegateSlot.clearAll();
+		for (char letter = 'a'; letter <= 'z'; letter++) {
+			FileSystemProvider provider = fileSystemProviders.get(letter);
+			DelegateUrlHandler urlHandler = urlStreamHandlers.get(letter);
+			if (provider != null || urlHandler != null) {
+				DelegateSlot.get(letter).set(provider, urlHandler);
+			}
+		}
+		active = true;
+	}
+
+	/** Removes this launch's delegates from the {@link DelegateSlot}s, if it is currently active. */
+	synchronized void deactivate() {
+		if (active) {
+			active = false;
+			DelegateSlot.clearAll();
+		}
+	}
+
+	/** Checks if this launch is about to run exactly the same jar as the previous launch, and if so takes over its
+	 * index and the bytes of the classes it loaded. Must be called before the previous launch is torn down. */
+	void reuse(BootstrapLaunch previous, Path previousPath, Path path) {
+		try {
+			reusedJar = previous.classLoader.reuseFor(previousPath, path);
+		} catch (IOException e) {
+			reusedJar = null;
+		}
+	}
+
+	/** Releases everything this launch holds, so its class loader can be unloaded once nothing loaded by it is still
+	 * reachable. Called by {@link Bootstrap} before starting the next launch. */
+	synchronized void tearDown() {
+		if (tornDown) {
+			return;
+		}
+
+		tornDown = true;
+		deactivate();
+
+		for (DelegateUrlHandler handler : urlStreamHandlers.values()) {
+			handler.release();
+		}
+
+		fileSystemProviders.clear();
+		urlStreamHandlers.clear();
+
+		try {
+			classLoader.close();
+		} catch (IOException e) {
+			BootstrapLog.warn("Failed to close the class loader of the previous launch", e);
+		}
 	}
 
 	Path run(Path currentPath, String[] args) {
 		final String bootstrapTarget;
 		final BootstrapInvoked invoked;
+		ClassLoadTrace trace;
 		try {
-			classLoader.add(currentPath.toUri().toURL());
-			try (InputStream stream = classLoader.getResourceAsStream(BOOTSTRAP_TARGET_FILE)) {
-				if (stream == null) {
-					throw new Error(currentPath + " did not contain '" + BOOTSTRAP_TARGET_FILE + "'");
-				}
-				bootstrapTarget = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8)).readLine();
+			timeline.time("classLoader.add", () -> {
+				classLoader.addLaunchJar(currentPath.toUri().toURL(), reusedJar);
+				reusedJar = null;
+			});
+
+			trace = timeline.time("classTrace", () -> ClassLoadTrace.start(classLoader, currentPath));
+
+			try {
+				bootstrapTarget = timeline.time("readTarget", () -> {
+					try (InputStream stream = classLoader.getResourceAsStream(BOOTSTRAP_TARGET_FILE)) {
+						if (stream == null) {
+							throw new Error(currentPath + " did not contain '" + BOOTSTRAP_TARGET_FILE + "'");
+						}
+						return new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8)).readLine();
+					}
+				});
 			} catch (IOException io) {
 				throw new Error(currentPath + " couldn't read '" + BOOTSTRAP_TARGET_FILE + "'", io);
 			}
-			invoked = wrap(classLoader.loadClass(bootstrapTarget).getConstructor().newInstance());
+
+			invoked = timeline.time(
+				"loadTarget", () -> wrap(classLoader.loadClass(bootstrapTarget).getConstructor().newInstance())
+			);
 		} catch (MalformedURLException | ReflectiveOperationException e) {
 			throw new Error(e);
 		}
 
-		Path relaunchJar = invoked.run(this, args);
+		Path relaunchJar;
+		try {
+			relaunchJar = timeline.time("invoke", () -> invoked.run(this, args));
+		} finally {
+			if (trace != null) {
+				trace.finish();
+			}
+		}
 
 		if (relaunchJar == null) {
 			return null;
@@ -107,30 +229,23 @@ public class BootstrapLaunch implements BootstrapContext {
 			return (BootstrapInvoked) targetObject;
 		}
 
-		Class<?> cls = targetObject.getClass();
-		try {
-			Lookup lookup = MethodHandles.lookup();
-			MethodType type = MethodType.methodType(Path.class, Object.class, String[].class);
-			MethodHandle handle = lookup.findVirtual(cls, "run", type).bindTo(targetObject);
-			return new BootstrapInvoked() {
-				@Override
-				public Path run(BootstrapContext launcher, String[] args) {
-					try {
-						return (Path) handle.invokeExact((Object) launcher, args);
-					} catch (Throwable e) {
-						if (e instanceof RuntimeException) {
-							throw (RuntimeException) e;
-						}
-						if (e instanceof Error) {
-							throw (Error) e;
-						}
-						throw new RuntimeException(e);
+		MethodHandle handle = RUN_HANDLES.get(targetObject.getClass()).bindTo(targetObject);
+		return new BootstrapInvoked() {
+			@Override
+			public Path run(BootstrapContext launcher, String[] args) {
+				try {
+					return (Path) handle.invokeExact((Object) launcher, args);
+				} catch (Throwable e) {
+					if (e instanceof RuntimeException) {
+						throw (RuntimeException) e;
+					}
+					if (e instanceof Error) {
+						throw (Error) e;
 					}
+					throw new RuntimeException(e);
 				}
-			};
-		} catch (NoSuchMethodException | IllegalAccessException e) {
-			throw new Error("Unable to find target method ", e);
-		}
+			}
+		};
 	}
 
 	@Override
@@ -138,6 +253,17 @@ public class BootstrapLaunch implements BootstrapContext {
 		return Bootstrap.instance().environment.name();
 	}
 
+	@Override
+	public BootstrapTimeline timeline() {
+		return timeline;
+	}
+
+	@Override
+	public List<OperationStatistics> operationStatistics() {
+		OperationMetrics metrics = OperationMetrics.get();
+		return metrics == null ? Collections.emptyList() : metrics.snapshot();
+	}
+
 	@Override
 	public void addToClassPath(URL url) {
 		classLoader.add(url);
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+/** Reports problems which the bootstrap recovers from by itself, such as a cache it couldn't read, to stderr. Nothing
+ * is written if {@link Bootstrap#SYSTEM_PROPERTY_QUIET} is "true". */
+public final class BootstrapLog {
+
+	private static final String PREFIX = "[QuiltBootstrap] ";
+
+	private BootstrapLog() {}
+
+	public static void warn(String message) {
+		if (!Boolean.getBoolean(Bootstrap.SYSTEM_PROPERTY_QUIET)) {
+			System.err.println(PREFIX + message);
+		}
+	}
+
+	public static void warn(String message, Throwable error) {
+		warn(message + ": " + error);
+	}
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Records how long each phase of the bootstrap (and any phases that loader adds) took. Phases may be nested, and
+ * may be recorded from any thread.
+ * <p>
+ * Allocation and loaded class deltas are only measured when {@link Bootstrap#SYSTEM_PROPERTY_TIMELINE_FILE} is set,
+ * since loading the management beans they need isn't free. Otherwise they are reported as -1. */
+public final class BootstrapTimeline {
+
+	/** A timeline which drops every phase as soon as it starts, so {@link #phases()} is always empty. */
+	public static final BootstrapTimeline DISABLED = new BootstrapTimeline(false, false);
+
+	private final long origin = System.nanoTime();
+	private final boolean detailed;
+	private final boolean recording;
+	private final List<Phase> phases = new ArrayList<>();
+	private final ThreadLocal<int[]> threadDepth = ThreadLocal.withInitial(() -> new int[1]);
+	private ThreadMXBean threads;
+	private ClassLoadingMXBean classes;
+
+	BootstrapTimeline(boolean detailed) {
+		this(detailed, true);
+	}
+
+	private BootstrapTimeline(boolean detailed, boolean recording) {
+		this.detailed = detailed;
+		this.recording = recording;
+
+		if (detailed) {
+			threads = ManagementFactory.getThreadMXBean();
+			classes = ManagementFactory.getClassLoadingMXBean();
+			if (threads instanceof com.sun.management.ThreadMXBean) {
+				com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+				if (!sunThreads.isThreadAllocatedMemorySupported() || !sunThreads.isThreadAllocatedMemoryEnabled()) {
+					threads = null;
+				}
+			} else {
+				threads = null;
+			}
+		}
+	}
+
+	/** Starts a new phase on the current thread. The phase ends when {@link Phase#close()} is called, which should be
+	 * done from the same thread. {@link #time(String, Call)} does both:
+	 *
+	 * <pre>
+	 * context.timeline().time("my-phase", () -&gt; {
+	 * 	// Work to measure
+	 * });
+	 * </pre>
+	 */
+	public Phase begin(String name) {
+		int[] d = threadDepth.get();
+		Phase phase = new Phase(name, d[0]++);
+		if (recording) {
+			synchronized (phases) {
+				phases.add(phase);
+			}
+		}
+		return phase;
+	}
+
+	/** Runs the call as a phase of its own.
+	 *
+	 * @return The result of the call. */
+	public <T, E extends Throwable> T time(String name, Call<T, E> call) throws E {
+		Phase phase = begin(name);
+		try {
+			return call.call();
+		} finally {
+			phase.close();
+		}
+	}
+
+	/** Runs the action as a phase of its own. */
+	public <E extends Throwable> void time(String name, Action<E> action) throws E {
+		Phase phase = begin(name);
+		try {
+			action.run();
+		} finally {
+			phase.close();
+		}
+	}
+
+	/** @return A copy of every phase recorded so far, in the order they were started. */
+	public List<Phase> phases() {
+		synchronized (phases) {
+			return new ArrayList<>(phases);
+		}
+	}
+
+	public String toJson() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\n\t\"phases\": [");
+		List<Phase> list = phases();
+		for (int i = 0; i < list.size(); i++) {
+			Phase phase = list.get(i);
+			sb.append(i == 0 ? "\n" : ",\n");
+			sb.append("\t\t{\"name\": ");
+			appendString(sb, phase.name);
+			sb.append(", \"thread\": ");
+			appendString(sb, phase.thread);
+			sb.append(", \"depth\": ").append(phase.depth);
+			sb.append(", \"startNanos\": ").append(phase.startNanos);
+			sb.append(", \"wallNanos\": ").append(phase.wallNanos);
+			sb.append(", \"allocatedBytes\": ").append(phase.allocatedBytes);
+			sb.append(", \"loadedClasses\": ").append(phase.loadedClasses);
+			sb.append('}');
+		}
+		sb.append("\n\t]\n}\n");
+		return sb.toString();
+	}
+
+	void writeJson(Path file) throws IOException {
+		Path parent = file.toAbsolutePath().getParent();
+		if (parent != null) {
+			Files.createDirectories(parent);
+		}
+
+		try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			writer.write(toJson());
+		}
+	}
+
+	/** Writes the timeline to {@link Bootstrap#SYSTEM_PROPERTY_TIMELINE_FILE} when the JVM exits. */
+	void dumpOnExit(String file) {
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				writeJson(Paths.get(file));
+			} catch (IOException e) {
+				BootstrapLog.warn("Failed to write the startup timeline to " + file, e);
+			}
+		}, "QuiltBootstrap timeline"));
+	}
+
+	private static void appendString(StringBuilder sb, String value) {
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		sb.append('"');
+	}
+
+	private long threadAllocatedBytes(Thread thread) {
+		if (threads == null) {
+			return -1;
+		}
+		return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(thread.getId());
+	}
+
+	private long totalLoadedClasses() {
+		return classes == null ? -1 : classes.getTotalLoadedClassCount();
+	}
+
+	public final class Phase implements AutoCloseable {
+		final String name;
+		final String thread;
+		final int depth;
+		final long startNanos;
+		private final Thread owner;
+		private final long startAllocated;
+		private final long startClasses;
+		private volatile long wallNanos = -1;
+		private volatile long allocatedBytes = -1;
+		private volatile long loadedClasses = -1;
+
+		Phase(String name, int depth) {
+			this.name = name;
+			this.owner = Thread.currentThread();
+			this.thread = owner.getName();
+			this.depth = depth;
+			this.startAllocated = threadAllocatedBytes(owner);
+			this.startClasses = totalLoadedClasses();
+			this.startNanos = System.nanoTime() - origin;
+		}
+
+		public String name() {
+			return name;
+		}
+
+		public String thread() {
+			return thread;
+		}
+
+		/** @return How many phases enclosed this one on the thread that started it. */
+		public int depth() {
+			return depth;
+		}
+
+		/** @return Nanoseconds between the timeline being created and this phase starting. */
+		public long startNanos() {
+			return startNanos;
+		}
+
+		/** @return The wall time this phase took in nanoseconds, or -1 if it hasn't finished. */
+		public long wallNanos() {
+			return wallNanos;
+		}
+
+		/** @return The number of bytes allocated by the thread that started this phase, or -1 if that wasn't
+		 *         measured. */
+		public long allocatedBytes() {
+			return allocatedBytes;
+		}
+
+		/** @return The number of classes loaded by the whole JVM during this phase, or -1 if that wasn't measured. */
+		public long loadedClasses() {
+			return loadedClasses;
+		}
+
+		@Override
+		public void close() {
+			if (wallNanos >= 0) {
+				return;
+			}
+
+			long end = System.nanoTime() - origin;
+			if (detailed) {
+				if (startAllocated >= 0 && Thread.currentThread() == owner) {
+					allocatedBytes = threadAllocatedBytes(owner) - startAllocated;
+				}
+
+				if (startClasses >= 0) {
+					loadedClasses = totalLoadedClasses() - startClasses;
+				}
+			}
+			wallNanos = end - startNanos;
+
+			if (Thread.currentThread() == owner) {
+				threadDepth.get()[0]--;
+			}
+		}
+	}
+
+	@FunctionalInterface
+	public interface Call<T, E extends Throwable> {
+		T call() throws E;
+	}
+
+	@FunctionalInterface
+	public interface Action<E extends Throwable> {
+		void run() throws E;
+	}
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/** Runs the launch in a child JVM which uses (or creates) a dynamic CDS archive of the classes the launch loaded,
+ * enabled by {@link Bootstrap#SYSTEM_PROPERTY_CDS_ARCHIVE}. JVM flags can't be changed after startup, so this is the
+ * only way the bootstrap can opt the launch into an archive.
+ * <p>
+ * Archives are named after the digest of the loader jar, so a changed jar always gets a new archive. The first start
+ * of a jar is a training run, which writes the archive when the child exits. If a later start relaunches into a
+ * different jar than the training run did, the archive no longer covers what the launch loads, so it's deleted and
+ * the next start trains again.
+ * <p>
+ * This is best effort: dynamic archives need java 13 or later, and on older versions the launch just runs in this JVM.
+ * On java 19 or later the JVM validates and recreates the archive itself when needed.
+ * <p>
+ * The child gets the same JVM arguments as this one, apart from agents and debuggers, which would otherwise be loaded
+ * twice and fight over the same port. This JVM stays running while it waits for the child, so the launch costs the
+ * resident memory of an extra, mostly idle JVM (its committed heap, metaspace and thread stacks - usually a few tens
+ * of megabytes, which a small -Xms keeps low). If this JVM was already started with an archive, like
+ * {@code -XX:SharedArchiveFile=... -XX:+AutoCreateSharedArchive} on java 19 or later, no child is started and the
+ * launch uses that archive in place. */
+final class CdsArchive {
+
+	/** Set on the child JVM, so it doesn't fork again. */
+	private static final String PROPERTY_MODE = "quiltmc.boot.cds_mode";
+	private static final String MODE_TRAIN = "train";
+	private static final String MODE_USE = "use";
+	private static final String MODE_AUTO = "auto";
+
+	/** Arguments which aren't passed to the child, since they load agents or debuggers, or pick a different archive. */
+	private static final String[] EXCLUDED_ARGUMENTS = {
+		"-agentlib:", "-agentpath:", "-javaagent:", "-Xdebug", "-Xrun", "-XX:SharedArchiveFile=",
+		"-XX:ArchiveClassesAtExit=", "-XX:+AutoCreateSharedArchive", "-Xshare:"
+	};
+
+	private CdsArchive() {}
+
+	/** @return True if this JVM is the child started by {@link #launchChild}. */
+	static boolean isChild() {
+		return System.getProperty(PROPERTY_MODE) != null;
+	}
+
+	/** @return True if {@link #launchChild} will try to start a child JVM, in which case this JVM only waits for it. */
+	static boolean willLaunchChild() {
+		return System.getProperty(Bootstrap.SYSTEM_PROPERTY_CDS_ARCHIVE) != null && !isChild() && javaVersion() >= 13
+			&& !hasArchiveArgument(ManagementFactory.getRuntimeMXBean().getInputArguments());
+	}
+
+	/** Starts the launch in a child JVM with the archive for the given jar, and waits for it to exit.
+	 *
+	 * @return The exit code of the child, or -1 if the launch should run in this JVM instead. */
+	static int launchChild(Class<? extends Bootstrap> mainClass, Path loaderJar, String[] args) {
+		String directory = System.getProperty(Bootstrap.SYSTEM_PROPERTY_CDS_ARCHIVE);
+		if (directory == null || isChild()) {
+			return -1;
+		}
+
+		List<String> inputArguments = ManagementFactory.getRuntimeMXBean().getInputArguments();
+		if (hasArchiveArgument(inputArguments)) {
+			// Already using an archive the user chose, in place
+			return -1;
+		}
+
+		int version = javaVersion();
+		if (version < 13) {
+			BootstrapLog.warn("Dynamic CDS archives need java 13 or later, not " + version);
+			return -1;
+		}
+
+		Path temp = null;
+		try {
+			String digest = JarDigest.toHex(JarDigest.of(loaderJar));
+			Path archive = Paths.get(directory, digest + ".jsa").toAbsolutePath();
+			Files.createDirectories(archive.getParent());
+
+			List<String> command = new ArrayList<>();
+			command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+			for (String argument : inputArguments) {
+				if (!isExcluded(argument)) {
+					command.add(argument);
+				}
+			}
+
+			String mode;
+			if (version >= 19) {
+				mode = MODE_AUTO;
+				command.add("-XX:+AutoCreateSharedArchive");
+				command.add("-XX:SharedArchiveFile=" + archive);
+			} else if (Files.isRegularFile(archive)) {
+				mode = MODE_USE;
+				command.add("-XX:SharedArchiveFile=" + archive);
+			} else {
+				mode = MODE_TRAIN;
+				// Other JVMs launching the same jar may be creating the same archive at the same time
+				temp = Files.createTempFile(archive.getParent(), digest, ".jsa.tmp");
+				command.add("-XX:ArchiveClassesAtExit=" + temp);
+			}
+
+			command.add("-D" + PROPERTY_MODE + "=" + mode);
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add(mainClass.getName());
+			command.addAll(Arrays.asList(args));
+
+			Process process = new ProcessBuilder(command).inheritIO().start();
+			Thread killChild = new Thread(process::destroy, "Quilt Bootstrap CDS child");
+			Runtime.getRuntime().addShutdownHook(killChild);
+
+			int exitCode = waitFor(process);
+			try {
+				Runtime.getRuntime().removeShutdownHook(killChild);
+			} catch (IllegalStateException ignored) {
+				// Shutting down anyway
+			}
+
+			if (MODE_TRAIN.equals(mode) && Files.isRegularFile(temp) && Files.size(temp) > 0) {
+				move(temp, archive);
+			}
+			return exitCode;
+		} catch (IOException e) {
+			BootstrapLog.warn("Unable to launch with a CDS archive, launching without one", e);
+			return -1;
+		} finally {
+			if (temp != null) {
+				deleteQuietly(temp);
+			}
+		}
+	}
+
+	private static void deleteQuietly(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			BootstrapLog.warn("Unable to delete " + file, e);
+		}
+	}
+
+	private static boolean hasArchiveArgument(List<String> arguments) {
+		for (String argument : arguments) {
+			if (argument.startsWith("-XX:SharedArchiveFile=") || argument.startsWith("-XX:ArchiveClassesAtExit=")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isExcluded(String argument) {
+		for (String prefix : EXCLUDED_ARGUMENTS) {
+			if (argument.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int waitFor(Process process) {
+		while (true) {
+			try {
+				return process.waitFor();
+			} catch (InterruptedException e) {
+				// The child is the real launch, so keep waiting for it
+			}
+		}
+	}
+
+	/** Called in the child when a launch returns a replacement jar. Records the replacement on a training run, and
+	 * deletes the archive if a run that used it relaunched into something different. */
+	static void onRelaunch(Path loaderJar, Path replacement) {
+		String mode = System.getProperty(PROPERTY_MODE);
+		String directory = System.getProperty(Bootstrap.SYSTEM_PROPERTY_CDS_ARCHIVE);
+		if (mode == null || directory == null) {
+			return;
+		}
+
+		try {
+			String digest = JarDigest.toHex(JarDigest.of(loaderJar));
+			String replacementDigest = JarDigest.toHex(JarDigest.of(replacement));
+			if (digest.equals(replacementDigest)) {
+				return;
+			}
+
+			Path record = Paths.get(directory, digest + ".relaunch");
+			String recorded = null;
+			try {
+				recorded = new String(Files.readAllBytes(record), StandardCharsets.UTF_8).trim();
+			} catch (NoSuchFileException ignored) {
+				// Nothing recorded yet
+			}
+
+			if (recorded != null && !recorded.equals(replacementDigest) && !MODE_TRAIN.equals(mode)) {
+				// The JVM only validates the classpath of the archive, so it can't tell that it's stale
+				Files.deleteIfExists(Paths.get(directory, digest + ".jsa"));
+			}
+
+			if (!replacementDigest.equals(recorded)) {
+				Files.write(record, Collections.singletonList(replacementDigest), StandardCharsets.UTF_8);
+			}
+		} catch (IOException e) {
+			BootstrapLog.warn("Unable to update the CDS archive for " + loaderJar, e);
+		}
+	}
+
+	/** @return The major java version, like 8 or 17. */
+	static int javaVersion() {
+		String version = System.getProperty("java.specification.version");
+		if (version.startsWith("1.")) {
+			version = version.substring(2);
+		}
+
+		try {
+			return Integer.parseInt(version);
+		} catch (NumberFormatException e) {
+			return 8;
+		}
+	}
+
+	private static void move(Path from, Path to) throws IOException {
+		try {
+			Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/** Records the classes and resources a launch loads from its {@link BootstrapClassLoader}, in the order they were
+ * first needed, and replays them on the next start of the same loader jar. Enabled by
+ * {@link Bootstrap#SYSTEM_PROPERTY_CLASS_TRACE}.
+ * <p>
+ * Replaying loads the traced classes (without initialising them) on a pool of background threads, so that reading,
+ * inflating and defining them overlaps with the launch itself. Classes from jars the launch hasn't added to the
+ * classpath yet are retried whenever the classpath changes. The trace is rewritten when the launch finishes, dropping
+ * entries which could never be loaded and adding anything new the launch needed. */
+final class ClassLoadTrace {
+
+	private static final String HEADER = "# quilt-bootstrap class trace v1";
+	private static final char CLASS = 'C';
+	private static final char RESOURCE = 'R';
+	/** The longest we wait for the classpath to change before giving up on the remaining entries. */
+	private static final long RETRY_NANOS = TimeUnit.SECONDS.toNanos(60);
+	private static final int TASK_SIZE = 64;
+
+	private static final int PENDING = 0;
+	private static final int LOADED = 1;
+	private static final int GAVE_UP = 2;
+
+	private final Path file;
+	private final BootstrapClassLoader loader;
+	/** The trace from the previous start, each prefixed with its kind. */
+	private final List<String> previous;
+	private final AtomicIntegerArray status;
+	private final Set<String> seenClasses = ConcurrentHashMap.newKeySet();
+	private final Set<String> seenResources = ConcurrentHashMap.newKeySet();
+	private final Queue<String> recorded = new ConcurrentLinkedQueue<>();
+	private final Object classPathLock = new Object();
+	private int classPathVersion;
+	private volatile boolean finished;
+	private Thread shutdownHook;
+
+	private ClassLoadTrace(Path file, BootstrapClassLoader loader, List<String> previous) {
+		this.file = file;
+		this.loader = loader;
+		this.previous = previous;
+		this.status = new AtomicIntegerArray(previous.size());
+
+		for (String entry : previous) {
+			(entry.charAt(0) == CLASS ? seenClasses : seenResources).add(entry.substring(2));
+		}
+	}
+
+	/** Starts recording the classes loaded by the given loader, and replaying the trace of the last start of the same
+	 * jar if there is one.
+	 *
+	 * @return The trace, or null if tracing is disabled or the jar can't be read. */
+	static ClassLoadTrace start(BootstrapClassLoader loader, Path loaderJar) {
+		String directory = System.getProperty(Bootstrap.SYSTEM_PROPERTY_CLASS_TRACE);
+		if (directory == null) {
+			return null;
+		}
+
+		Path file;
+		List<String> previous;
+		try {
+			file = Paths.get(directory, "trace-" + JarDigest.toHex(JarDigest.of(loaderJar)) + ".txt");
+			previous = read(file);
+		} catch (IOException e) {
+			BootstrapLog.warn("Unable to read the class trace for " + loaderJar, e);
+			return null;
+		}
+
+		ClassLoadTrace trace = new ClassLoadTrace(file, loader, previous);
+		loader.trace(trace);
+
+		trace.shutdownHook = new Thread(trace::save, "Quilt Bootstrap class trace");
+		Runtime.getRuntime().addShutdownHook(trace.shutdownHook);
+
+		if (!previous.isEmpty()) {
+			Thread thread = new Thread(trace::replay, "Quilt Bootstrap class prefetch");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		return trace;
+	}
+
+	private static List<String> read(Path file) throws IOException {
+		List<String> entries = new ArrayList<>();
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			if (!HEADER.equals(reader.readLine())) {
+				return entries;
+			}
+
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.length() > 2 && (line.charAt(0) == CLASS || line.charAt(0) == RESOURCE)) {
+					entries.add(line);
+				}
+			}
+		} catch (NoSuchFileException ignored) {
+			// First start of this jar
+		}
+		return entries;
+	}
+
+	void recordClass(String name) {
+		if (!(Thread.currentThread() instanceof PrefetchThread) && seenClasses.add(name)) {
+			recorded.add(CLASS + " " + name);
+		}
+	}
+
+	void recordResource(String name) {
+		if (!(Thread.currentThread() instanceof PrefetchThread) && seenResources.add(name)) {
+			recorded.add(RESOURCE + " " + name);
+		}
+	}
+
+	void classPathChanged() {
+		synchronized (classPathLock) {
+			classPathVersion++;
+			classPathLock.notifyAll();
+		}
+	}
+
+	/** Stops replaying, and saves the trace for the next start. */
+	void finish() {
+		finished = true;
+		loader.trace(null);
+		synchronized (classPathLock) {
+			classPathLock.notifyAll();
+		}
+
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException ignored) {
+			// Already shutting down, so the hook will save it
+			return;
+		}
+		save();
+	}
+
+	private void replay() {
+		int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, 8));
+		AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(threads, task -> {
+			Thread thread = new PrefetchThread(task, "Quilt Bootstrap class prefetch #" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		try {
+			long deadline = System.nanoTime() + RETRY_NANOS;
+			int version = currentClassPathVersion();
+
+			while (!finished) {
+				List<Callable<Void>> tasks = new ArrayList<>();
+				List<Integer> batch = new ArrayList<>(TASK_SIZE);
+				for (int i = 0; i < previous.size(); i++) {
+					if (status.get(i) == PENDING) {
+						batch.add(i);
+						if (batch.size() == TASK_SIZE) {
+							tasks.add(task(batch));
+							batch = new ArrayList<>(TASK_SIZE);
+						}
+					}
+				}
+
+				if (!batch.isEmpty()) {
+					tasks.add(task(batch));
+				}
+
+				if (tasks.isEmpty()) {
+					return;
+				}
+
+				pool.invokeAll(tasks);
+
+				// Anything left over isn't on the classpath yet
+				version = awaitClassPathChange(version, deadline);
+				if (version < 0) {
+					for (int i = 0; i < previous.size(); i++) {
+						status.compareAndSet(i, PENDING, GAVE_UP);
+					}
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private Callable<Void> task(List<Integer> batch) {
+		return () -> {
+			for (int index : batch) {
+				if (finished) {
+					return null;
+				}
+
+				if (load(previous.get(index))) {
+					status.set(index, LOADED);
+				}
+			}
+			return null;
+		};
+	}
+
+	private boolean load(String entry) {
+		String name = entry.substring(2);
+		if (entry.charAt(0) == RESOURCE) {
+			return loader.getResource(name) != null;
+		}
+
+		try {
+			Class.forName(name, false, loader);
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			// Either not on the classpath yet, or it'll fail in the same way when the launch loads it
+			return false;
+		}
+	}
+
+	private int currentClassPathVersion() {
+		synchronized (classPathLock) {
+			return classPathVersion;
+		}
+	}
+
+	/** @return The new classpath version, or -1 if it didn't change before the deadline. */
+	private int awaitClassPathChange(int version, long deadline) throws InterruptedException {
+		synchronized (classPathLock) {
+			while (classPathVersion == version) {
+				long remaining = deadline - System.nanoTime();
+				if (finished || remaining <= 0) {
+					return -1;
+				}
+				TimeUnit.NANOSECONDS.timedWait(classPathLock, remaining);
+			}
+			return classPathVersion;
+		}
+	}
+
+	private synchronized void save() {
+		List<String> entries = new ArrayList<>(previous.size() + recorded.size());
+		boolean changed = previous.isEmpty();
+		for (int i = 0; i < previous.size(); i++) {
+			if (status.get(i) == GAVE_UP) {
+				changed = true;
+			} else {
+				entries.add(previous.get(i));
+			}
+		}
+
+		for (String entry : recorded) {
+			entries.add(entry);
+			changed = true;
+		}
+
+		if (!changed) {
+			return;
+		}
+
+		try {
+			Path parent = file.toAbsolutePath().getParent();
+			Files.createDirectories(parent);
+			// Other JVMs launching the same jar may be saving the same trace at the same time
+			Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+			try {
+				try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+					writer.write(HEADER);
+					writer.newLine();
+					for (String entry : entries) {
+						writer.write(entry);
+						writer.newLine();
+					}
+				}
+
+				try {
+					Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		} catch (IOException e) {
+			BootstrapLog.warn("Failed to save the class trace to " + file, e);
+		}
+	}
+
+	/** Marks threads whose loads shouldn't be recorded. */
+	private static final class PrefetchThread extends Thread {
+		PrefetchThread(Runnable task, String name) {
+			super(task, name);
+		}
+	}
+}
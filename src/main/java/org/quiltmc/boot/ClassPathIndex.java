@@ -0,0 +1,304 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarFile;
+
+/** Maps each package to the jars that contain it, so {@link BootstrapClassLoader} can go straight to the right jar
+ * rather than probing every jar on the classpath in order. */
+final class ClassPathIndex {
+
+	private final List<IndexedJar> jars = new CopyOnWriteArrayList<>();
+	private final Map<String, List<IndexedJar>> owners = new ConcurrentHashMap<>();
+	/** Everything that couldn't be indexed, in the order it was added. */
+	private final List<Unindexed> unindexed = new CopyOnWriteArrayList<>();
+	/** The position on the classpath of the next jar or unindexed url. */
+	private final AtomicInteger nextPosition = new AtomicInteger();
+	/** The outer files of nested jars, so each is only mapped once. */
+	private final Map<Path, MappedJar> outerJars = new ConcurrentHashMap<>();
+
+	/** @return True if the url was indexed, false if it's something (like a directory) that the caller needs to
+	 *         handle itself. */
+	boolean add(URL url) {
+		return add(url, false);
+	}
+
+	/** @param keepClassBytes True to keep the bytes of the classes loaded from the jar, so they can be reused by a
+	 *        relaunch of the same jar. */
+	boolean add(URL url, boolean keepClassBytes) {
+		if ("jar".equals(url.getProtocol())) {
+			return addNested(url);
+		}
+
+		if (!"file".equals(url.getProtocol())) {
+			return false;
+		}
+
+		try {
+			Path path = Paths.get(url.toURI());
+			BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+			if (!attributes.isRegularFile()) {
+				return false;
+			}
+
+			long size = attributes.size();
+			long lastModified = attributes.lastModifiedTime().toMillis();
+			ClassPathIndexCache cache = ClassPathIndexCache.get();
+			ClassPathIndexCache.Entry cached = cache == null ? null : cache.get(path, size, lastModified);
+			Set<String> packages;
+			JarFile opened = null;
+
+			if (cached != null) {
+				packages = cached.packages;
+			} else {
+				opened = new JarFile(path.toFile());
+				try {
+					if (IndexedJar.isMultiRelease(opened)) {
+						opened.close();
+						opened = null;
+						packages = null;
+					} else {
+						packages = Collections.unmodifiableSet(IndexedJar.readPackages(opened));
+					}
+				} catch (IOException | RuntimeException e) {
+					// Never handed to an IndexedJar, so nothing else will close it
+					opened.close();
+					throw e;
+				}
+
+				if (cache != null) {
+					cache.put(path, size, lastModified, packages);
+				}
+			}
+
+			if (packages == null) {
+				return false;
+			}
+
+			add(new IndexedJar(path, url, packages, size, lastModified, opened, keepClassBytes));
+			return true;
+		} catch (URISyntaxException | IllegalArgumentException | FileSystemNotFoundException | IOException e) {
+			// Not something we can index, so leave it to URLClassLoader
+			return false;
+		}
+	}
+
+	/** Indexes a jar nested in another jar (possibly several levels deep), like
+	 * {@code jar:file:/outer.jar!/META-INF/jars/inner.jar}, without extracting it. */
+	private boolean addNested(URL url) {
+		String spec = url.toExternalForm();
+		String[] parts = spec.substring("jar:".length()).split("!/", -1);
+		if (parts.length < 2 || parts[parts.length - 1].isEmpty()) {
+			// Either malformed, or a directory inside a jar
+			return false;
+		}
+
+		try {
+			URL outerUrl = new URL(parts[0]);
+			if (!"file".equals(outerUrl.getProtocol())) {
+				return false;
+			}
+
+			Path outer = Paths.get(outerUrl.toURI());
+			BasicFileAttributes attributes = Files.readAttributes(outer, BasicFileAttributes.class);
+			MappedJar jar = outerJars.get(outer);
+			if (jar == null) {
+				jar = MappedJar.open(outer);
+				if (jar == null) {
+					return false;
+				}
+
+				MappedJar existing = outerJars.putIfAbsent(outer, jar);
+				if (existing != null) {
+					// Another thread mapped it first
+					jar.close();
+					jar = existing;
+				}
+			}
+
+			for (int i = 1; i < parts.length && jar != null; i++) {
+				String name = IndexedJar.decodePath(parts[i]);
+				int entry = jar.find(name);
+				if (entry < 0) {
+					return false;
+				}
+				jar = jar.nested(entry, name);
+			}
+
+			if (jar == null || IndexedJar.isMultiRelease(jar.manifest())) {
+				return false;
+			}
+
+			long lastModified = attributes.lastModifiedTime().toMillis();
+			add(IndexedJar.nested(outer, url, attributes.size(), lastModified, jar));
+			return true;
+		} catch (URISyntaxException | IllegalArgumentException | FileSystemNotFoundException | IOException e) {
+			return false;
+		}
+	}
+
+	/** Adds a jar that was indexed by a previous launch. */
+	void add(IndexedJar jar) {
+		jar.position = nextPosition.getAndIncrement();
+		jars.add(jar);
+		for (String pkg : jar.packages) {
+			owners.computeIfAbsent(pkg, k -> new CopyOnWriteArrayList<>()).add(jar);
+		}
+	}
+
+	/** Records a url that {@link #add(URL)} couldn't index, so lookups can still search it in classpath order. */
+	void addUnindexed(URL url) {
+		unindexed.add(new Unindexed(nextPosition.getAndIncrement(), url));
+	}
+
+	/** Finds the indexed jar at {@code previousPath}, and checks that the jar at {@code path} is identical to it, and
+	 * that neither has changed since it was indexed.
+	 *
+	 * @return A jar that a new launch of {@code path} can use instead of indexing it again, or null if the jars are
+	 *         different. If the paths are the same then the jar is removed from this index, so it isn't closed along
+	 *         with it, and this index can't find classes in it any more. */
+	IndexedJar reuseFor(Path previousPath, Path path, URL url) throws IOException {
+		IndexedJar previous = null;
+		for (IndexedJar jar : jars) {
+			if (jar.path.equals(previousPath) && "file".equals(jar.url.getProtocol())) {
+				previous = jar;
+				break;
+			}
+		}
+
+		if (previous == null) {
+			return null;
+		}
+
+		BasicFileAttributes before = Files.readAttributes(previousPath, BasicFileAttributes.class);
+		if (before.size() != previous.size || before.lastModifiedTime().toMillis() != previous.lastModified) {
+			// Changed in place since it was launched, so we don't know what we actually loaded
+			return null;
+		}
+
+		BasicFileAttributes after = Files.readAttributes(path, BasicFileAttributes.class);
+		long lastModified = after.lastModifiedTime().toMillis();
+		if (after.size() != previous.size) {
+			return null;
+		}
+
+		byte[] previousDigest = JarDigest.of(previousPath, previous.size, previous.lastModified);
+		if (!Arrays.equals(previousDigest, JarDigest.of(path, after.size(), lastModified))) {
+			return null;
+		}
+
+		if (Files.isSameFile(previousPath, path)) {
+			remove(previous);
+			return previous;
+		}
+		return previous.copyFor(path, url, after.size(), lastModified);
+	}
+
+	/** Removes a jar that is moving to another index, so lookups through this one can't define classes from it. */
+	private void remove(IndexedJar jar) {
+		jars.remove(jar);
+		for (String pkg : jar.packages) {
+			List<IndexedJar> list = owners.get(pkg);
+			if (list != null) {
+				list.remove(jar);
+			}
+		}
+	}
+
+	/** @return Every indexed jar that contains the directory of the given entry name, in the order they were added. */
+	List<IndexedJar> owners(String name) {
+		List<IndexedJar> list = owners.get(IndexedJar.packageOf(name));
+		return list == null ? Collections.emptyList() : list;
+	}
+
+	/** @return The position of the first url that couldn't be indexed, or {@link Integer#MAX_VALUE} if there are
+	 *         none. */
+	int firstUnindexedPosition() {
+		return unindexed.isEmpty() ? Integer.MAX_VALUE : unindexed.get(0).position;
+	}
+
+	/** @param found A url that {@link URLClassLoader} returned for the entry.
+	 * @return The position of the unindexed url that {@code found} came from. Urls from jars named in the manifest
+	 *         Class-Path of an unindexed jar don't start with any of them, and are treated as coming after all of
+	 *         them. */
+	int positionOf(URL found, String name) {
+		String spec = found.toExternalForm();
+		for (Unindexed entry : unindexed) {
+			if (spec.startsWith(entry.prefix)
+				&& name.equals(IndexedJar.decodePath(spec.substring(entry.prefix.length())))) {
+
+				return entry.position;
+			}
+		}
+		return unindexed.isEmpty() ? Integer.MAX_VALUE : unindexed.get(unindexed.size() - 1).position;
+	}
+
+	void close() throws IOException {
+		IOException error = null;
+		for (IndexedJar jar : jars) {
+			try {
+				jar.close();
+			} catch (IOException e) {
+				if (error == null) {
+					error = e;
+				} else {
+					error.addSuppressed(e);
+				}
+			}
+		}
+
+		for (MappedJar jar : outerJars.values()) {
+			jar.close();
+		}
+		outerJars.clear();
+
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/** A url on the classpath that is left to {@link URLClassLoader}, which is the only thing that opens it. */
+	private static final class Unindexed {
+		final int position;
+		/** What {@link URLClassLoader} puts before the entry name in the urls it finds in this one. */
+		final String prefix;
+
+		Unindexed(int position, URL url) {
+			this.position = position;
+			String base = url.toExternalForm();
+			// Directories (and "jar:...!/" urls) are resolved against directly, anything else is opened as a jar
+			this.prefix = base.endsWith("/") ? base : "jar:" + base + "!/";
+		}
+	}
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Persists the package sets of {@link IndexedJar}s and the {@link JarDigest}s of jars between launches, keyed by the
+ * jar's path, size, and last modified time. Enabled by {@link Bootstrap#SYSTEM_PROPERTY_CLASS_INDEX_CACHE}. */
+final class ClassPathIndexCache {
+
+	private static final int MAGIC = 0x51424349; // "QBCI"
+	private static final int VERSION = 2;
+
+	private static ClassPathIndexCache instance;
+
+	private final Path file;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	private final Map<String, DigestEntry> digests = new ConcurrentHashMap<>();
+	private volatile boolean dirty;
+
+	private ClassPathIndexCache(Path file) {
+		this.file = file;
+	}
+
+	/** @return The cache, or null if caching is disabled. */
+	static synchronized ClassPathIndexCache get() {
+		if (instance == null) {
+			String prop = System.getProperty(Bootstrap.SYSTEM_PROPERTY_CLASS_INDEX_CACHE);
+			if (prop == null) {
+				return null;
+			}
+
+			instance = new ClassPathIndexCache(Paths.get(prop));
+			instance.load();
+			Runtime.getRuntime().addShutdownHook(new Thread(instance::save, "QuiltBootstrap class index cache"));
+		}
+		return instance;
+	}
+
+	/** @return The cached entry, or null if the jar isn't cached or has changed since it was cached. */
+	Entry get(Path jar, long size, long lastModified) {
+		Entry entry = entries.get(key(jar));
+		if (entry == null || entry.size != size || entry.lastModified != lastModified) {
+			return null;
+		}
+		return entry;
+	}
+
+	/** @param packages The packages in the jar, or null if the jar can't be indexed. */
+	void put(Path jar, long size, long lastModified, Set<String> packages) {
+		entries.put(key(jar), new Entry(size, lastModified, packages));
+		dirty = true;
+	}
+
+	/** @return The cached digest, or null if the jar isn't cached or has changed since it was cached. */
+	byte[] getDigest(Path jar, long size, long lastModified) {
+		DigestEntry entry = digests.get(key(jar));
+		if (entry == null || entry.size != size || entry.lastModified != lastModified) {
+			return null;
+		}
+		return entry.digest;
+	}
+
+	void putDigest(Path jar, long size, long lastModified, byte[] digest) {
+		digests.put(key(jar), new DigestEntry(size, lastModified, digest));
+		dirty = true;
+	}
+
+	/** @return The key of a jar, which is the same however the path to it was written. */
+	static String key(Path jar) {
+		return jar.toAbsolutePath().normalize().toString();
+	}
+
+	private void load() {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return;
+			}
+
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String path = in.readUTF();
+				long size = in.readLong();
+				long lastModified = in.readLong();
+				Set<String> packages = null;
+				int packageCount = in.readInt();
+
+				if (packageCount >= 0) {
+					String[] array = new String[packageCount];
+					for (int p = 0; p < packageCount; p++) {
+						array[p] = in.readUTF();
+					}
+					packages = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(array)));
+				}
+				entries.put(path, new Entry(size, lastModified, packages));
+			}
+
+			int digestCount = in.readInt();
+			for (int i = 0; i < digestCount; i++) {
+				String path = in.readUTF();
+				long size = in.readLong();
+				long lastModified = in.readLong();
+				byte[] digest = new byte[in.readUnsignedByte()];
+				in.readFully(digest);
+				digests.put(path, new DigestEntry(size, lastModified, digest));
+			}
+		} catch (NoSuchFileException ignored) {
+			// First launch with this cache
+		} catch (IOException e) {
+			// Corrupt or truncated - it'll be rebuilt from scratch
+			entries.clear();
+			digests.clear();
+		}
+	}
+
+	private void save() {
+		if (!dirty) {
+			return;
+		}
+
+		try {
+			Path parent = file.toAbsolutePath().getParent();
+			if (parent != null) {
+				Files.createDirectories(parent);
+			}
+			// Other JVMs may be saving the same cache at the same time
+			Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+			try {
+				try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(temp))
+				)) {
+					out.writeInt(MAGIC);
+					out.writeInt(VERSION);
+
+					// Forget about jars which have been deleted since they were cached
+					Map<String, Entry> existing = new ConcurrentHashMap<>(entries);
+					existing.keySet().removeIf(path -> !Files.exists(Paths.get(path)));
+
+					out.writeInt(existing.size());
+					for (Map.Entry<String, Entry> entry : existing.entrySet()) {
+						Entry value = entry.getValue();
+						out.writeUTF(entry.getKey());
+						out.writeLong(value.size);
+						out.writeLong(value.lastModified);
+
+						if (value.packages == null) {
+							out.writeInt(-1);
+						} else {
+							out.writeInt(value.packages.size());
+							for (String pkg : value.packages) {
+								out.writeUTF(pkg);
+							}
+						}
+					}
+
+					Map<String, DigestEntry> existingDigests = new ConcurrentHashMap<>(digests);
+					existingDigests.keySet().removeIf(path -> !Files.exists(Paths.get(path)));
+
+					out.writeInt(existingDigests.size());
+					for (Map.Entry<String, DigestEntry> entry : existingDigests.entrySet()) {
+						DigestEntry value = entry.getValue();
+						out.writeUTF(entry.getKey());
+						out.writeLong(value.size);
+						out.writeLong(value.lastModified);
+						out.writeByte(value.digest.length);
+						out.write(value.digest);
+					}
+				}
+
+				try {
+					Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+			dirty = false;
+		} catch (IOException e) {
+			BootstrapLog.warn("Failed to save the class index cache to " + file, e);
+		}
+	}
+
+	static final class Entry {
+		final long size;
+		final long lastModified;
+		/** Null if the jar can't be indexed. */
+		final Set<String> packages;
+
+		Entry(long size, long lastModified, Set<String> packages) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.packages = packages;
+		}
+	}
+
+	static final class DigestEntry {
+		final long size;
+		final long lastModified;
+		final byte[] digest;
+
+		DigestEntry(long size, long lastModified, byte[] digest) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.digest = digest;
+		}
+	}
+}
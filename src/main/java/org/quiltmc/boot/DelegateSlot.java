@@ -0,0 +1,73 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+import java.nio.file.spi.FileSystemProvider;
+
+import org.quiltmc.boot.urlhandler.BootUrlStreamHandler;
+import org.quiltmc.boot.urlhandler.DelegateUrlHandler;
+
+/** Holds the delegates of the active {@link BootstrapLaunch} for a single letter.
+ * <p>
+ * {@link BootFileSystemProvider} and {@link BootUrlStreamHandler} keep a direct reference to their slot, so looking
+ * up the delegate is a single field read rather than going through {@link Bootstrap#currentLaunch()} and a map. Slots
+ * are only written when {@link BootstrapLaunch#putFileSystemProvider} changes a letter, or when a launch is activated
+ * or deactivated by {@link Bootstrap}. */
+public final class DelegateSlot {
+
+	private static final DelegateSlot[] SLOTS = new DelegateSlot[26];
+
+	static {
+		for (int i = 0; i < SLOTS.length; i++) {
+			SLOTS[i] = new DelegateSlot((char) ('a' + i));
+		}
+	}
+
+	final char letter;
+	private volatile FileSystemProvider fileSystemProvider;
+	private volatile DelegateUrlHandler urlStreamHandler;
+
+	private DelegateSlot(char letter) {
+		this.letter = letter;
+	}
+
+	public static DelegateSlot get(char letter) {
+		if (letter < 'a' || letter > 'z') {
+			throw new IllegalArgumentException("Only 'a-z' filesystems are supported!");
+		}
+		return SLOTS[letter - 'a'];
+	}
+
+	public FileSystemProvider fileSystemProvider() {
+		return fileSystemProvider;
+	}
+
+	public DelegateUrlHandler urlStreamHandler() {
+		return urlStreamHandler;
+	}
+
+	void set(FileSystemProvider provider, DelegateUrlHandler handler) {
+		fileSystemProvider = provider;
+		urlStreamHandler = handler;
+	}
+
+	static void clearAll() {
+		for (DelegateSlot slot : SLOTS) {
+			slot.set(null, null);
+		}
+	}
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.CopyOption;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/** Copies files between different providers, such as a quilt.*fs path and a path on disk.
+ * <p>
+ * When either side can be opened as a {@link FileChannel} this uses {@link FileChannel#transferTo} or
+ * {@link FileChannel#transferFrom}, which the OS can usually serve without copying the data into java at all. Otherwise
+ * it copies through a pooled direct buffer.
+ * <p>
+ * {@link java.nio.file.Files#copy(Path, Path, CopyOption...)} between two different providers never reaches either
+ * provider (the JDK copies through streams itself), so callers which copy between filesystems should use this
+ * directly. */
+public final class FileTransfer {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final Queue<ByteBuffer> POOL = new ArrayBlockingQueue<>(8);
+
+	private static final Set<StandardOpenOption> READ = Collections.singleton(StandardOpenOption.READ);
+	private static final Set<StandardOpenOption> CREATE_NEW = EnumSet.of(
+		StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE
+	);
+
+	private FileTransfer() {}
+
+	/** Copies a file or an (empty) directory, with the same options and behaviour as
+	 * {@link java.nio.file.Files#copy(Path, Path, CopyOption...)}, except that symbolic links can only be followed. */
+	public static void copy(Path source, Path target, CopyOption... options) throws IOException {
+		boolean replaceExisting = false;
+		boolean copyAttributes = false;
+		LinkOption[] linkOptions = {};
+
+		for (CopyOption option : options) {
+			if (option == StandardCopyOption.REPLACE_EXISTING) {
+				replaceExisting = true;
+			} else if (option == StandardCopyOption.COPY_ATTRIBUTES) {
+				copyAttributes = true;
+			} else if (option == LinkOption.NOFOLLOW_LINKS) {
+				linkOptions = new LinkOption[] { LinkOption.NOFOLLOW_LINKS };
+			} else {
+				throw new UnsupportedOperationException("Unsupported copy option " + option);
+			}
+		}
+
+		FileSystemProvider sourceProvider = source.getFileSystem().provider();
+		BasicFileAttributes attributes = sourceProvider.readAttributes(source, BasicFileAttributes.class, linkOptions);
+		if (attributes.isSymbolicLink()) {
+			throw new IOException("Copying of symbolic links between filesystems is not supported: " + source);
+		}
+
+		FileSystemProvider targetProvider = target.getFileSystem().provider();
+		if (replaceExisting) {
+			targetProvider.deleteIfExists(target);
+		}
+
+		if (attributes.isDirectory()) {
+			targetProvider.createDirectory(target);
+		} else {
+			try (ReadableByteChannel in = openRead(source); WritableByteChannel out = openWrite(target)) {
+				transfer(in, out);
+			}
+		}
+
+		if (copyAttributes) {
+			try {
+				BasicFileAttributeView view = targetProvider.getFileAttributeView(
+					target, BasicFileAttributeView.class
+				);
+				if (view != null) {
+					view.setTimes(attributes.lastModifiedTime(), attributes.lastAccessTime(), attributes.creationTime());
+				}
+			} catch (IOException e) {
+				try {
+					targetProvider.delete(target);
+				} catch (IOException suppressed) {
+					e.addSuppressed(suppressed);
+				}
+				throw e;
+			}
+		}
+	}
+
+	/** Moves a file or an empty directory by copying it and then deleting the source, with the same options and
+	 * behaviour as {@link java.nio.file.Files#move(Path, Path, CopyOption...)}. Atomic moves are never possible between
+	 * different providers. */
+	public static void move(Path source, Path target, CopyOption... options) throws IOException {
+		boolean replaceExisting = false;
+		for (CopyOption option : options) {
+			if (option == StandardCopyOption.ATOMIC_MOVE) {
+				throw new AtomicMoveNotSupportedException(
+					source.toString(), target.toString(), "The paths belong to different providers"
+				);
+			} else if (option == StandardCopyOption.REPLACE_EXISTING) {
+				replaceExisting = true;
+			} else if (option != LinkOption.NOFOLLOW_LINKS) {
+				throw new UnsupportedOperationException("Unsupported copy option " + option);
+			}
+		}
+
+		CopyOption[] copyOptions = replaceExisting
+			? new CopyOption[] { StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES }
+			: new CopyOption[] { StandardCopyOption.COPY_ATTRIBUTES };
+		copy(source, target, copyOptions);
+		source.getFileSystem().provider().delete(source);
+	}
+
+	/** Copies a stream into a new file, like {@link java.nio.file.Files#copy(InputStream, Path, CopyOption...)}. The
+	 * stream is read to the end, but not closed. */
+	public static long copy(InputStream in, Path target, CopyOption... options) throws IOException {
+		for (CopyOption option : options) {
+			if (option != StandardCopyOption.REPLACE_EXISTING) {
+				throw new UnsupportedOperationException("Unsupported copy option " + option);
+			}
+		}
+
+		FileSystemProvider targetProvider = target.getFileSystem().provider();
+		if (options.length > 0) {
+			targetProvider.deleteIfExists(target);
+		}
+
+		ReadableByteChannel source = in instanceof FileInputStream
+			? ((FileInputStream) in).getChannel()
+			: Channels.newChannel(in);
+		try (WritableByteChannel out = openWrite(target)) {
+			return transfer(source, out);
+		}
+	}
+
+	/** Copies a file into a stream, like {@link java.nio.file.Files#copy(Path, OutputStream)}. The stream is not
+	 * closed. */
+	public static long copy(Path source, OutputStream out) throws IOException {
+		WritableByteChannel target = out instanceof FileOutputStream
+			? ((FileOutputStream) out).getChannel()
+			: Channels.newChannel(out);
+		try (ReadableByteChannel in = openRead(source)) {
+			return transfer(in, target);
+		}
+	}
+
+	/** Copies everything remaining in one channel to another, starting at their current positions.
+	 *
+	 * @return The number of bytes copied. */
+	static long transfer(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+		if (in instanceof FileChannel) {
+			FileChannel source = (FileChannel) in;
+			long start = source.position();
+			long position = start;
+			long size = source.size();
+			while (position < size) {
+				long count = source.transferTo(position, size - position, out);
+				if (count <= 0) {
+					break;
+				}
+				position += count;
+			}
+			source.position(position);
+			return position - start;
+		}
+
+		long total = 0;
+		if (out instanceof FileChannel) {
+			FileChannel target = (FileChannel) out;
+			long start = target.position();
+			long count;
+			// transferFrom returns 0 at the end of the source, or if it has nothing to give yet
+			while ((count = target.transferFrom(in, start + total, BUFFER_SIZE * 16L)) > 0) {
+				total += count;
+			}
+			target.position(start + total);
+		}
+
+		return total + copyBuffered(in, out);
+	}
+
+	private static long copyBuffered(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+		ByteBuffer buffer = POOL.poll();
+		if (buffer == null) {
+			buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		}
+
+		try {
+			long total = 0;
+			while (in.read(buffer) >= 0) {
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					total += out.write(buffer);
+				}
+				buffer.clear();
+			}
+			return total;
+		} finally {
+			buffer.clear();
+			POOL.offer(buffer);
+		}
+	}
+
+	private static ReadableByteChannel openRead(Path path) throws IOException {
+		FileSystemProvider provider = path.getFileSystem().provider();
+		try {
+			return provider.newFileChannel(path, READ);
+		} catch (UnsupportedOperationException e) {
+			return provider.newByteChannel(path, READ);
+		}
+	}
+
+	private static WritableByteChannel openWrite(Path path) throws IOException {
+		FileSystemProvider provider = path.getFileSystem().provider();
+		try {
+			return provider.newFileChannel(path, CREATE_NEW);
+		} catch (UnsupportedOperationException e) {
+			return provider.newByteChannel(path, CREATE_NEW);
+		}
+	}
+}
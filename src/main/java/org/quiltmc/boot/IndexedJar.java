@@ -0,0 +1,283 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLStreamHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/** A jar on the {@link BootstrapClassLoader} classpath, along with the set of packages (or rather, directories) that
+ * contain at least one entry. The jar itself is only opened when something is actually loaded from it.
+ * <p>
+ * The loader jar of each launch also keeps the bytes of the (unsigned) classes loaded from it, so a relaunch into an
+ * identical jar can define them again without reading the jar.
+ * <p>
+ * Jars nested inside other jars are only ever read through a {@link MappedJar}, and their resource urls are served by
+ * a {@link NestedJarUrlHandler}, since the JDK can't open them. */
+final class IndexedJar implements Closeable {
+
+	final Path path;
+	final URL url;
+	final Set<String> packages;
+	/** The size and last modified time of the file when it was indexed. */
+	final long size, lastModified;
+	/** Where this jar is on the classpath of the index it was last added to. */
+	volatile int position;
+	private final URL baseUrl;
+	/** Only set for nested jars. */
+	private final URLStreamHandler resourceHandler;
+	/** Null unless class bytes are being kept. Shared with every {@link #copyFor copy} of this jar. */
+	private final Map<String, SoftReference<byte[]>> classBytes;
+	private JarFile jarFile;
+	private MappedJar mapped;
+	private boolean mappedTried;
+	private Manifest manifest;
+	private boolean manifestRead;
+	private boolean closed;
+
+	IndexedJar(Path path, URL url, Set<String> packages, long size, long lastModified, JarFile opened,
+		boolean keepClassBytes) throws MalformedURLException {
+
+		this(path, url, packages, size, lastModified, opened, keepClassBytes ? new ConcurrentHashMap<>() : null, null);
+	}
+
+	private IndexedJar(Path path, URL url, Set<String> packages, long size, long lastModified, JarFile opened,
+		Map<String, SoftReference<byte[]>> classBytes, URLStreamHandler resourceHandler) throws MalformedURLException {
+
+		this.path = path;
+		this.url = url;
+		this.packages = packages;
+		this.size = size;
+		this.lastModified = lastModified;
+		this.baseUrl = new URL(null, "jar:" + url.toExternalForm() + "!/", resourceHandler);
+		this.jarFile = opened;
+		this.classBytes = classBytes;
+		this.resourceHandler = resourceHandler;
+	}
+
+	/** @param path The outermost file the jar is nested in.
+	 * @param url The jar: url of the nested jar entry. */
+	static IndexedJar nested(Path path, URL url, long size, long lastModified, MappedJar mapped)
+		throws IOException {
+
+		Set<String> packages = new HashSet<>();
+		mapped.forEachName(name -> packages.add(packageOf(name)));
+		IndexedJar jar = new IndexedJar(
+			path, url, Collections.unmodifiableSet(packages), size, lastModified, null, null,
+			new NestedJarUrlHandler(mapped)
+		);
+		jar.mapped = mapped;
+		jar.mappedTried = true;
+		return jar;
+	}
+
+	/** @return A new jar at a different path, which must have exactly the same contents as this one. It shares the
+	 *         package index and class bytes of this jar, but opens its own file. */
+	synchronized IndexedJar copyFor(Path newPath, URL newUrl, long newSize, long newLastModified)
+		throws MalformedURLException {
+
+		IndexedJar copy = new IndexedJar(newPath, newUrl, packages, newSize, newLastModified, null, classBytes, null);
+		if (manifestRead) {
+			copy.manifest = manifest;
+			copy.manifestRead = true;
+		}
+		return copy;
+	}
+
+	synchronized JarFile jarFile() throws IOException {
+		if (closed) {
+			throw new IOException(path + " has already been closed");
+		}
+
+		if (resourceHandler != null) {
+			throw new IOException(url + " is a nested jar, so can only be read through a MappedJar");
+		}
+
+		if (jarFile == null) {
+			jarFile = new JarFile(path.toFile());
+		}
+		return jarFile;
+	}
+
+	/** @return The memory mapped jar, or null if {@link Bootstrap#SYSTEM_PROPERTY_MAPPED_JARS} is disabled or this jar
+	 *         can't be mapped. */
+	synchronized MappedJar mapped() throws IOException {
+		if (closed) {
+			throw new IOException(path + " has already been closed");
+		}
+
+		if (!mappedTried) {
+			mappedTried = true;
+			if (Boolean.getBoolean(Bootstrap.SYSTEM_PROPERTY_MAPPED_JARS)) {
+				mapped = MappedJar.open(path);
+			}
+		}
+		return mapped;
+	}
+
+	synchronized Manifest manifest() throws IOException {
+		if (!manifestRead) {
+			MappedJar mapped = mapped();
+			manifest = mapped != null ? mapped.manifest() : jarFile().getManifest();
+			manifestRead = true;
+		}
+		return manifest;
+	}
+
+	/** @return The bytes of a class previously read from this jar (or an identical one), or null. */
+	byte[] cachedClass(String name) {
+		if (classBytes == null) {
+			return null;
+		}
+
+		SoftReference<byte[]> ref = classBytes.get(name);
+		return ref == null ? null : ref.get();
+	}
+
+	void cacheClass(String name, byte[] bytes) {
+		if (classBytes != null) {
+			classBytes.put(name, new SoftReference<>(bytes));
+		}
+	}
+
+	/** @return The URL of the given entry, or null if this jar doesn't contain it. */
+	URL findResource(String name) {
+		try {
+			MappedJar mapped = mapped();
+			if (mapped != null ? mapped.find(name) < 0 : jarFile().getEntry(name) == null) {
+				return null;
+			}
+			if (resourceHandler != null) {
+				return new URL(null, baseUrl.toExternalForm() + encodePath(name), resourceHandler);
+			}
+			return new URL(baseUrl, encodePath(name));
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	JarEntry findEntry(String name) throws IOException {
+		return jarFile().getJarEntry(name);
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		closed = true;
+		if (mapped != null && resourceHandler == null) {
+			// Nested jars are part of their outer jar's mapping, which the index closes
+			mapped.close();
+		}
+		mapped = null;
+		if (jarFile != null) {
+			jarFile.close();
+			jarFile = null;
+		}
+	}
+
+	/** @return The directory that contains the given entry name, without a trailing slash. */
+	static String packageOf(String name) {
+		int end = name.endsWith("/") ? name.length() - 1 : name.length();
+		int slash = name.lastIndexOf('/', end - 1);
+		return slash < 0 ? "" : name.substring(0, slash);
+	}
+
+	static Set<String> readPackages(JarFile jar) {
+		Set<String> packages = new HashSet<>();
+		Enumeration<JarEntry> entries = jar.entries();
+		while (entries.hasMoreElements()) {
+			packages.add(packageOf(entries.nextElement().getName()));
+		}
+		return packages;
+	}
+
+	/** Multi-release jars pick entries based on the running java version, which we don't replicate. */
+	static boolean isMultiRelease(JarFile jar) throws IOException {
+		return isMultiRelease(jar.getManifest());
+	}
+
+	static boolean isMultiRelease(Manifest manifest) {
+		return manifest != null && "true".equalsIgnoreCase(manifest.getMainAttributes().getValue(
+			new Attributes.Name("Multi-Release")
+		));
+	}
+
+	private static String encodePath(String name) {
+		for (int i = 0; i < name.length(); i++) {
+			if (isUnreserved(name.charAt(i))) {
+				continue;
+			}
+
+			// Encode the rest of the name byte-by-byte, since multi-byte characters need every byte escaped
+			StringBuilder sb = new StringBuilder(name.length() + 16).append(name, 0, i);
+			for (byte b : name.substring(i).getBytes(StandardCharsets.UTF_8)) {
+				int c = b & 0xFF;
+				if (isUnreserved(c)) {
+					sb.append((char) c);
+				} else {
+					sb.append('%').append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+				}
+			}
+			return sb.toString();
+		}
+		return name;
+	}
+
+	/** Reverses {@link #encodePath(String)}. */
+	static String decodePath(String path) {
+		if (path.indexOf('%') < 0) {
+			return path;
+		}
+
+		StringBuilder sb = new StringBuilder(path.length());
+		ByteArrayOutputStream escaped = new ByteArrayOutputStream();
+		for (int i = 0; i < path.length(); i++) {
+			char c = path.charAt(i);
+			if (c == '%' && i + 2 < path.length()) {
+				escaped.write(Integer.parseInt(path.substring(i + 1, i + 3), 16));
+				i += 2;
+				continue;
+			}
+
+			// Escaped bytes are utf-8, but can only be decoded once the whole sequence is known
+			sb.append(new String(escaped.toByteArray(), StandardCharsets.UTF_8));
+			escaped.reset();
+			sb.append(c);
+		}
+		return sb.append(new String(escaped.toByteArray(), StandardCharsets.UTF_8)).toString();
+	}
+
+	private static boolean isUnreserved(int c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+			|| "/.-_$~!*'()+,;=@&".indexOf(c) >= 0;
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** SHA-256 digests of whole jar files, so a relaunch can tell whether it's been handed the same jar again. Digests
+ * are remembered by path, size, and last modified time for the life of the JVM, and between launches if
+ * {@link Bootstrap#SYSTEM_PROPERTY_CLASS_INDEX_CACHE} is set. */
+final class JarDigest {
+
+	private static final Map<String, ClassPathIndexCache.DigestEntry> DIGESTS = new ConcurrentHashMap<>();
+
+	private JarDigest() {}
+
+	static byte[] of(Path path) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		return of(path, attributes.size(), attributes.lastModifiedTime().toMillis());
+	}
+
+	static byte[] of(Path path, long size, long lastModified) throws IOException {
+		String key = ClassPathIndexCache.key(path);
+		ClassPathIndexCache.DigestEntry entry = DIGESTS.get(key);
+		if (entry != null && entry.size == size && entry.lastModified == lastModified) {
+			return entry.digest;
+		}
+
+		ClassPathIndexCache cache = ClassPathIndexCache.get();
+		byte[] digest = cache == null ? null : cache.getDigest(path, size, lastModified);
+
+		if (digest == null) {
+			digest = compute(path);
+			if (cache != null) {
+				cache.putDigest(path, size, lastModified, digest);
+			}
+		}
+
+		DIGESTS.put(key, new ClassPathIndexCache.DigestEntry(size, lastModified, digest));
+		return digest;
+	}
+
+	static String toHex(byte[] digest) {
+		StringBuilder sb = new StringBuilder(digest.length * 2);
+		for (byte b : digest) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+
+	private static byte[] compute(Path path) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every java platform is required to support SHA-256
+			throw new Error(e);
+		}
+
+		byte[] buffer = new byte[65536];
+		try (InputStream stream = Files.newInputStream(path)) {
+			int read;
+			while ((read = stream.read(buffer)) >= 0) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		return digest.digest();
+	}
+}
@@ -0,0 +1,660 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.jar.Manifest;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/** A jar file mapped into memory, enabled by {@link Bootstrap#SYSTEM_PROPERTY_MAPPED_JARS}.
+ * <p>
+ * The central directory is read straight out of the mapping, and entries are found through an open addressing hash
+ * table of central directory offsets which is also kept off the heap. Stored entries can be handed to
+ * {@link ClassLoader#defineClass(String, ByteBuffer, java.security.ProtectionDomain)} without copying, and deflated
+ * entries are inflated with a small pool of {@link Inflater}s and buffers.
+ * <p>
+ * Only plain jars are supported: {@link #open(Path)} returns null for signed jars, zip64 jars, and encrypted entries,
+ * which are left to {@link java.util.jar.JarFile}. {@link #close()} frees the mapping (and those of the jars nested
+ * in it) once no other thread is reading from it, rather than waiting for the garbage collector, since on Windows the
+ * file can't be replaced or deleted while it's mapped. */
+final class MappedJar {
+
+	private static final int END_SIGNATURE = 0x06054b50;
+	private static final int CEN_SIGNATURE = 0x02014b50;
+	private static final int LOC_SIGNATURE = 0x04034b50;
+	private static final int END_SIZE = 22;
+	private static final int CEN_SIZE = 46;
+	private static final int LOC_SIZE = 30;
+
+	static final int STORED = 0;
+	static final int DEFLATED = 8;
+
+	private static final int INPUT_CHUNK = 8192;
+	private static final int OUTPUT_CHUNK = 16384;
+	/** Larger output buffers aren't pooled, so one huge entry doesn't keep that much memory forever. */
+	private static final int MAX_POOLED_OUTPUT = 1 << 20;
+	private static final int MAX_POOLED = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+	private static final Queue<InflateBuffers> POOL = new ConcurrentLinkedQueue<>();
+	private static final AtomicInteger POOLED = new AtomicInteger();
+	private static final Consumer<ByteBuffer> FREE = findFree();
+
+	/** The path of the file, followed by the entry names of any jars it's nested in. */
+	final String name;
+	/** Shared with every jar nested in this one. */
+	private final Mapping mapping;
+	private final ByteBuffer buffer;
+	/** Slots hold the central directory offset of an entry, plus one, so zero can mean empty. */
+	private final IntBuffer table;
+	private final int mask;
+
+	private MappedJar(String name, Mapping mapping, ByteBuffer buffer, IntBuffer table) {
+		this.name = name;
+		this.mapping = mapping;
+		this.buffer = buffer;
+		this.table = table;
+		this.mask = table.capacity() - 1;
+	}
+
+	/** @return The mapped jar, or null if it uses a zip feature which isn't supported here. */
+	static MappedJar open(Path path) throws IOException {
+		MappedByteBuffer mapped;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				return null;
+			}
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+
+		Mapping mapping = new Mapping(mapped);
+		MappedJar jar = null;
+		try {
+			jar = parse(path.toString(), mapping, mapped);
+		} finally {
+			if (jar == null) {
+				mapping.close();
+			}
+		}
+		return jar;
+	}
+
+	/** @return The jar stored in the given entry of this jar, or null if it uses a zip feature which isn't supported
+	 *         here. Stored jars are read directly from this jar's buffer, and deflated jars are inflated straight into
+	 *         a direct buffer, which is freed along with this jar. */
+	MappedJar nested(int cen, String entryName) throws IOException {
+		mapping.acquire(name);
+		try {
+			String nestedName = name + "!/" + entryName;
+			if (methodAt(cen) == STORED) {
+				return parse(nestedName, mapping, slice(cen));
+			}
+
+			int size = sizeAt(cen);
+			if (size < 0) {
+				return null;
+			}
+
+			ByteBuffer inflated = ByteBuffer.allocateDirect(size);
+			MappedJar jar = null;
+			try {
+				InflateBuffers buffers = takeBuffers();
+				try {
+					inflate(cen, size, buffers, buffers.output(0), (bytes, length) -> inflated.put(bytes, 0, length));
+				} finally {
+					returnBuffers(buffers);
+				}
+
+				inflated.flip();
+				jar = parse(nestedName, mapping, inflated);
+			} finally {
+				if (jar == null) {
+					FREE.accept(inflated);
+				} else {
+					mapping.add(inflated);
+				}
+			}
+			return jar;
+		} finally {
+			mapping.release();
+		}
+	}
+
+	private static MappedJar parse(String name, Mapping mapping, ByteBuffer source) throws IOException {
+		ByteBuffer buffer = source.order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.limit() < END_SIZE) {
+			return null;
+		}
+
+		int end = findEnd(buffer);
+		if (end < 0) {
+			throw new IOException(name + " isn't a zip file");
+		}
+
+		int count = buffer.getShort(end + 10) & 0xFFFF;
+		long cenSize = buffer.getInt(end + 12) & 0xFFFFFFFFL;
+		long cenStart = buffer.getInt(end + 16) & 0xFFFFFFFFL;
+		if (count == 0xFFFF || cenSize == 0xFFFFFFFFL || cenStart == 0xFFFFFFFFL) {
+			// Zip64
+			return null;
+		}
+
+		if (cenStart + cenSize > end) {
+			throw new IOException(name + " has an invalid central directory");
+		}
+
+		int slots = Integer.highestOneBit(Math.max(count, 1) * 2 - 1) << 1;
+		IntBuffer table = ByteBuffer.allocateDirect(slots * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+		MappedJar jar = new MappedJar(name, mapping, buffer, table);
+
+		int cen = (int) cenStart;
+		for (int i = 0; i < count; i++) {
+			if (cen + CEN_SIZE > end || buffer.getInt(cen) != CEN_SIGNATURE) {
+				throw new IOException(name + " has an invalid central directory");
+			}
+
+			int flags = buffer.getShort(cen + 8) & 0xFFFF;
+			int method = buffer.getShort(cen + 10) & 0xFFFF;
+			if ((flags & 1) != 0 || (method != STORED && method != DEFLATED)) {
+				return null;
+			}
+
+			int nameLength = buffer.getShort(cen + 28) & 0xFFFF;
+			if (isSignatureFile(buffer, cen + CEN_SIZE, nameLength)) {
+				return null;
+			}
+
+			jar.insert(cen, nameLength);
+			cen += CEN_SIZE + nameLength + (buffer.getShort(cen + 30) & 0xFFFF) + (buffer.getShort(cen + 32) & 0xFFFF);
+		}
+
+		return jar;
+	}
+
+	private static int findEnd(ByteBuffer buffer) {
+		// The end record is followed by a comment of up to 65535 bytes
+		int min = Math.max(0, buffer.limit() - END_SIZE - 0xFFFF);
+		for (int pos = buffer.limit() - END_SIZE; pos >= min; pos--) {
+			if (buffer.getInt(pos) == END_SIGNATURE) {
+				return pos;
+			}
+		}
+		return -1;
+	}
+
+	/** Signed jars need to be verified by {@link java.util.jar.JarFile}. */
+	private static boolean isSignatureFile(ByteBuffer buffer, int start, int length) {
+		if (length < 13 || !regionMatches(buffer, start, "META-INF/")) {
+			return false;
+		}
+
+		String name = new String(bytes(buffer, start, length), StandardCharsets.UTF_8).toUpperCase();
+		return name.indexOf('/', 9) < 0 && (name.endsWith(".SF") || name.endsWith(".RSA") || name.endsWith(".DSA")
+			|| name.endsWith(".EC"));
+	}
+
+	private void insert(int cen, int nameLength) {
+		int hash = 0;
+		for (int i = 0; i < nameLength; i++) {
+			hash = 31 * hash + (buffer.get(cen + CEN_SIZE + i) & 0xFF);
+		}
+
+		for (int slot = spread(hash) & mask;; slot = (slot + 1) & mask) {
+			int existing = table.get(slot);
+			if (existing == 0) {
+				table.put(slot, cen + 1);
+				return;
+			}
+
+			int other = existing - 1;
+			if ((buffer.getShort(other + 28) & 0xFFFF) == nameLength && equals(other, cen + CEN_SIZE, nameLength)) {
+				// Duplicate entries - like ZipFile, only the first can be found
+				return;
+			}
+		}
+	}
+
+	/** @return The central directory offset of the entry, or -1 if it doesn't exist. Like
+	 *         {@link java.util.zip.ZipFile#getEntry(String)}, this also finds directories without a trailing
+	 *         slash. */
+	int find(String name) throws IOException {
+		mapping.acquire(this.name);
+		try {
+			int entry = findExact(name);
+			if (entry < 0 && !name.isEmpty() && !name.endsWith("/")) {
+				entry = findExact(name + "/");
+			}
+			return entry;
+		} finally {
+			mapping.release();
+		}
+	}
+
+	private int findExact(String name) {
+		int hash = 0;
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c >= 0x80) {
+				return findExact(name.getBytes(StandardCharsets.UTF_8));
+			}
+			hash = 31 * hash + c;
+		}
+
+		for (int slot = spread(hash) & mask;; slot = (slot + 1) & mask) {
+			int value = table.get(slot);
+			if (value == 0) {
+				return -1;
+			}
+
+			int cen = value - 1;
+			if ((buffer.getShort(cen + 28) & 0xFFFF) == name.length() && regionMatches(buffer, cen + CEN_SIZE, name)) {
+				return cen;
+			}
+		}
+	}
+
+	private int findExact(byte[] name) {
+		int hash = 0;
+		for (byte b : name) {
+			hash = 31 * hash + (b & 0xFF);
+		}
+
+		for (int slot = spread(hash) & mask;; slot = (slot + 1) & mask) {
+			int value = table.get(slot);
+			if (value == 0) {
+				return -1;
+			}
+
+			int cen = value - 1;
+			if ((buffer.getShort(cen + 28) & 0xFFFF) == name.length && regionMatches(buffer, cen + CEN_SIZE, name)) {
+				return cen;
+			}
+		}
+	}
+
+	/** Passes the name of every entry to the consumer, in no particular order. */
+	void forEachName(Consumer<String> consumer) throws IOException {
+		mapping.acquire(name);
+		try {
+			for (int slot = 0; slot <= mask; slot++) {
+				int value = table.get(slot);
+				if (value != 0) {
+					int cen = value - 1;
+					int length = buffer.getShort(cen + 28) & 0xFFFF;
+					consumer.accept(new String(bytes(buffer, cen + CEN_SIZE, length), StandardCharsets.UTF_8));
+				}
+			}
+		} finally {
+			mapping.release();
+		}
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	private boolean equals(int cen, int nameStart, int nameLength) {
+		for (int i = 0; i < nameLength; i++) {
+			if (buffer.get(cen + CEN_SIZE + i) != buffer.get(nameStart + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Only used for ascii strings. */
+	private static boolean regionMatches(ByteBuffer buffer, int start, String name) {
+		for (int i = 0; i < name.length(); i++) {
+			if (buffer.get(start + i) != (byte) name.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean regionMatches(ByteBuffer buffer, int start, byte[] name) {
+		for (int i = 0; i < name.length; i++) {
+			if (buffer.get(start + i) != name[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static byte[] bytes(ByteBuffer buffer, int start, int length) {
+		byte[] bytes = new byte[length];
+		ByteBuffer view = buffer.duplicate();
+		view.position(start);
+		view.get(bytes);
+		return bytes;
+	}
+
+	int method(int cen) throws IOException {
+		mapping.acquire(name);
+		try {
+			return methodAt(cen);
+		} finally {
+			mapping.release();
+		}
+	}
+
+	int size(int cen) throws IOException {
+		mapping.acquire(name);
+		try {
+			return sizeAt(cen);
+		} finally {
+			mapping.release();
+		}
+	}
+
+	private int methodAt(int cen) {
+		return buffer.getShort(cen + 10) & 0xFFFF;
+	}
+
+	private int compressedSize(int cen) {
+		return buffer.getInt(cen + 20);
+	}
+
+	private int sizeAt(int cen) {
+		return buffer.getInt(cen + 24);
+	}
+
+	private int dataStart(int cen) throws IOException {
+		int loc = buffer.getInt(cen + 42);
+		if (loc < 0 || loc + LOC_SIZE > buffer.limit() || buffer.getInt(loc) != LOC_SIGNATURE) {
+			throw new IOException(name + " has an invalid local header");
+		}
+
+		int start = loc + LOC_SIZE + (buffer.getShort(loc + 26) & 0xFFFF) + (buffer.getShort(loc + 28) & 0xFFFF);
+		int length = compressedSize(cen);
+		if (length < 0 || start + length > buffer.limit()) {
+			throw new IOException(name + " has an entry which is larger than the file");
+		}
+		return start;
+	}
+
+	/** @return A read-only view of the raw (possibly compressed) data of the entry. */
+	private ByteBuffer slice(int cen) throws IOException {
+		ByteBuffer view = buffer.duplicate();
+		int start = dataStart(cen);
+		view.limit(start + compressedSize(cen)).position(start);
+		return view.slice();
+	}
+
+	/** Passes a read-only view of a stored entry to the consumer, which must not use it after returning. */
+	<T> T stored(int cen, StoredConsumer<T> consumer) throws IOException {
+		mapping.acquire(name);
+		try {
+			return consumer.accept(slice(cen));
+		} finally {
+			mapping.release();
+		}
+	}
+
+	/** Reads a deflated entry into a pooled buffer, and passes it to the given consumer. The buffer must not be used
+	 * after the consumer returns. */
+	<T> T inflate(int cen, InflatedConsumer<T> consumer) throws IOException {
+		mapping.acquire(name);
+		try {
+			int size = sizeAt(cen);
+			if (size < 0) {
+				throw new IOException(name + " has an entry which is too large");
+			}
+
+			InflateBuffers buffers = takeBuffers();
+			try {
+				byte[] output = buffers.output(size);
+				inflate(cen, size, buffers, output, (bytes, length) -> null);
+				return consumer.accept(output, size);
+			} finally {
+				returnBuffers(buffers);
+			}
+		} finally {
+			mapping.release();
+		}
+	}
+
+	/** Inflates an entry into {@code output}, passing it to {@code sink} whenever it fills up and once the whole entry
+	 * has been read. The compressed data is read in chunks, so this never needs a buffer as large as the entry. */
+	private void inflate(int cen, int size, InflateBuffers buffers, byte[] output, InflatedConsumer<?> sink)
+		throws IOException {
+
+		ByteBuffer data = slice(cen);
+		byte[] input = buffers.input;
+		Inflater inflater = buffers.inflater;
+		inflater.reset();
+
+		boolean padded = false;
+		int read = 0;
+		int filled = 0;
+		try {
+			while (read < size) {
+				if (inflater.needsInput()) {
+					if (data.hasRemaining()) {
+						int length = Math.min(input.length, data.remaining());
+						data.get(input, 0, length);
+						inflater.setInput(input, 0, length);
+					} else if (!padded) {
+						// The inflater may need one more (dummy) byte after the end of the deflated data
+						input[0] = 0;
+						inflater.setInput(input, 0, 1);
+						padded = true;
+					} else {
+						break;
+					}
+				}
+
+				int count = inflater.inflate(output, filled, Math.min(output.length - filled, size - read));
+				if (count == 0 && (inflater.finished() || inflater.needsDictionary())) {
+					break;
+				}
+
+				read += count;
+				filled += count;
+				if (filled == output.length || read == size) {
+					sink.accept(output, filled);
+					filled = 0;
+				}
+			}
+		} catch (DataFormatException e) {
+			throw new IOException(name + " has a corrupt entry", e);
+		}
+
+		if (read != size) {
+			throw new IOException(name + " has a corrupt entry");
+		}
+	}
+
+	private static InflateBuffers takeBuffers() {
+		InflateBuffers buffers = POOL.poll();
+		if (buffers == null) {
+			return new InflateBuffers();
+		}
+
+		POOLED.decrementAndGet();
+		return buffers;
+	}
+
+	private static void returnBuffers(InflateBuffers buffers) {
+		if (buffers.output.length > MAX_POOLED_OUTPUT) {
+			buffers.output = new byte[OUTPUT_CHUNK];
+		}
+
+		if (POOLED.incrementAndGet() > MAX_POOLED) {
+			POOLED.decrementAndGet();
+			buffers.inflater.end();
+			return;
+		}
+		POOL.offer(buffers);
+	}
+
+	InputStream openStream(int cen) throws IOException {
+		if (method(cen) == STORED) {
+			return stored(cen, data -> {
+				byte[] bytes = new byte[data.remaining()];
+				data.get(bytes);
+				return new ByteArrayInputStream(bytes);
+			});
+		}
+
+		return inflate(cen, (bytes, length) -> new ByteArrayInputStream(Arrays.copyOf(bytes, length)));
+	}
+
+	Manifest manifest() throws IOException {
+		int cen = find("META-INF/MANIFEST.MF");
+		if (cen < 0) {
+			return null;
+		}
+
+		try (InputStream stream = openStream(cen)) {
+			return new Manifest(stream);
+		}
+	}
+
+	/** Frees the mapping of this jar, and of every jar nested in it, once nothing is reading from them. Any use of
+	 * them after this throws an {@link IOException}. */
+	void close() {
+		mapping.close();
+	}
+
+	/** @return Something which frees a direct buffer straight away, or does nothing if that isn't possible. */
+	private static Consumer<ByteBuffer> findFree() {
+		try {
+			// Java 9+
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			Object unsafe = field.get(null);
+			return buffer -> invoke(invokeCleaner, unsafe, buffer);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// Try the java 8 way instead
+		}
+
+		try {
+			Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+			Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+			return buffer -> {
+				Object bufferCleaner = invoke(cleaner, buffer);
+				if (bufferCleaner != null) {
+					invoke(clean, bufferCleaner);
+				}
+			};
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// Left to the garbage collector
+			return buffer -> {};
+		}
+	}
+
+	private static Object invoke(Method method, Object target, Object... args) {
+		try {
+			return method.invoke(target, args);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	@FunctionalInterface
+	interface InflatedConsumer<T> {
+		T accept(byte[] bytes, int length) throws IOException;
+	}
+
+	@FunctionalInterface
+	interface StoredConsumer<T> {
+		T accept(ByteBuffer data) throws IOException;
+	}
+
+	/** The buffers behind a jar and every jar nested in it. They're counted out to each reader, so they're only freed
+	 * once they've been closed and the last reader has finished. */
+	private static final class Mapping {
+		private final List<ByteBuffer> buffers = new CopyOnWriteArrayList<>();
+		private final AtomicInteger readers = new AtomicInteger();
+		private final AtomicBoolean freed = new AtomicBoolean();
+		private volatile boolean closed;
+
+		Mapping(ByteBuffer buffer) {
+			buffers.add(buffer);
+		}
+
+		void add(ByteBuffer buffer) {
+			buffers.add(buffer);
+		}
+
+		void acquire(String name) throws IOException {
+			readers.incrementAndGet();
+			if (closed) {
+				release();
+				throw new IOException(name + " has already been closed");
+			}
+		}
+
+		void release() {
+			if (readers.decrementAndGet() == 0 && closed) {
+				free();
+			}
+		}
+
+		void close() {
+			closed = true;
+			if (readers.get() == 0) {
+				free();
+			}
+		}
+
+		private void free() {
+			if (freed.compareAndSet(false, true)) {
+				for (ByteBuffer buffer : buffers) {
+					FREE.accept(buffer);
+				}
+			}
+		}
+	}
+
+	private static final class InflateBuffers {
+		final Inflater inflater = new Inflater(true);
+		final byte[] input = new byte[INPUT_CHUNK];
+		private byte[] output = new byte[OUTPUT_CHUNK];
+
+		byte[] output(int size) {
+			if (output.length < size) {
+				output = new byte[Math.max(size, output.length * 2)];
+			}
+			return output;
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+
+/** Opens the resource urls of a jar nested inside another jar, which look like
+ * {@code jar:jar:file:/outer.jar!/inner.jar!/entry}. These can't be parsed by the JDK's jar handler, so only the url
+ * objects created by {@link IndexedJar#findResource(String)} (which carry this handler) can be opened. */
+final class NestedJarUrlHandler extends URLStreamHandler {
+
+	private final MappedJar jar;
+
+	NestedJarUrlHandler(MappedJar jar) {
+		this.jar = jar;
+	}
+
+	@Override
+	protected URLConnection openConnection(URL u) throws IOException {
+		String spec = u.toExternalForm();
+		int separator = spec.lastIndexOf("!/");
+		if (separator < 0) {
+			throw new IOException("Not a nested jar url: " + u);
+		}
+
+		String name = IndexedJar.decodePath(spec.substring(separator + 2));
+		return new Connection(u, name);
+	}
+
+	final class Connection extends URLConnection {
+		private final String name;
+		private int entry = -1;
+
+		Connection(URL url, String name) {
+			super(url);
+			this.name = name;
+		}
+
+		@Override
+		public void connect() throws IOException {
+			if (!connected) {
+				entry = jar.find(name);
+				if (entry < 0) {
+					throw new FileNotFoundException("Entry " + name + " not found in " + jar.name);
+				}
+				connected = true;
+			}
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			connect();
+			return jar.openStream(entry);
+		}
+
+		@Override
+		public long getContentLengthLong() {
+			try {
+				connect();
+				return jar.size(entry) & 0xFFFFFFFFL;
+			} catch (IOException e) {
+				return -1;
+			}
+		}
+
+		@Override
+		public int getContentLength() {
+			long length = getContentLengthLong();
+			return length > Integer.MAX_VALUE ? -1 : (int) length;
+		}
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.PlatformManagedObject;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.net.URLStreamHandler;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.quiltmc.boot.urlhandler.DelegateUrlHandler;
+
+/** Checks that the class loader of a replaced launch is garbage collected, enabled by
+ * {@link Bootstrap#SYSTEM_PROPERTY_UNLOAD_CHECK}. This runs on a daemon thread, so it never delays the next launch.
+ * <p>
+ * If the class loader survives, this reports the likely roots which can be found without walking the heap (live
+ * threads and global handlers from the old loader), and optionally writes a heap dump to find the rest. */
+final class UnloadCheck implements Runnable {
+
+	private static final int ATTEMPTS = 10;
+	private static final long ATTEMPT_TIMEOUT_MILLIS = 500;
+
+	private final int iteration;
+	/** The thread running the launches, which will be running classes with the same names as the old loader's if the
+	 * same jar is launched again. */
+	private final Thread launchThread;
+	/** Weak, so a check never keeps the next launch's loader alive after that launch is replaced too. */
+	private final WeakReference<BootstrapClassLoader> currentLoader;
+	private final ReferenceQueue<BootstrapClassLoader> queue = new ReferenceQueue<>();
+	private final WeakReference<BootstrapClassLoader> reference;
+	private final String heapDumpDirectory;
+
+	private UnloadCheck(
+		int iteration, BootstrapClassLoader loader, BootstrapClassLoader currentLoader, String heapDumpDirectory
+	) {
+		this.iteration = iteration;
+		this.launchThread = Thread.currentThread();
+		this.currentLoader = new WeakReference<>(currentLoader);
+		this.reference = new WeakReference<>(loader, queue);
+		this.heapDumpDirectory = heapDumpDirectory;
+	}
+
+	static void start(
+		int iteration, BootstrapClassLoader loader, BootstrapClassLoader currentLoader, String heapDumpDirectory
+	) {
+		UnloadCheck check = new UnloadCheck(iteration, loader, currentLoader, heapDumpDirectory);
+		Thread thread = new Thread(check, "Quilt Bootstrap unload check #" + iteration);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public void run() {
+		try {
+			for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+				System.gc();
+				Reference<?> collected = queue.remove(ATTEMPT_TIMEOUT_MILLIS);
+				if (collected != null) {
+					BootstrapLog.warn("The class loader of launch #" + iteration + " was unloaded");
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		BootstrapClassLoader loader = reference.get();
+		if (loader == null) {
+			return;
+		}
+
+		StringBuilder sb = new StringBuilder();
+		sb.append("The class loader of launch #").append(iteration);
+		sb.append(" is still reachable after ").append(ATTEMPTS).append(" garbage collections.");
+
+		List<String> roots = findRoots(loader);
+		if (roots.isEmpty()) {
+			sb.append(" No obvious roots were found");
+		} else {
+			sb.append(" Suspected roots:");
+			for (String root : roots) {
+				sb.append("\n - ").append(root);
+			}
+		}
+
+		if (heapDumpDirectory != null) {
+			String name = "launch-" + iteration + "-" + System.currentTimeMillis() + ".hprof";
+			Path file = Paths.get(heapDumpDirectory, name);
+			loader = null;
+			String error = dumpHeap(file);
+			if (error == null) {
+				sb.append("\nWrote a heap dump to ").append(file);
+				sb.append(", look for the paths to GC roots of ").append(BootstrapClassLoader.class.getName());
+			} else {
+				sb.append("\nFailed to write a heap dump to ").append(file).append(": ").append(error);
+			}
+		}
+
+		BootstrapLog.warn(sb.toString());
+	}
+
+	private List<String> findRoots(BootstrapClassLoader loader) {
+		List<String> roots = new ArrayList<>();
+		BootstrapClassLoader currentLoader = this.currentLoader.get();
+
+		for (Map.Entry<Thread, StackTraceElement[]> entry : Thread.getAllStackTraces().entrySet()) {
+			Thread thread = entry.getKey();
+			if (isFrom(thread.getClass(), loader)) {
+				roots.add("Thread '" + thread.getName() + "' is a " + thread.getClass().getName());
+			}
+
+			for (StackTraceElement frame : entry.getValue()) {
+				String className = frame.getClassName();
+				if (thread == launchThread && isLoadedBy(className, currentLoader)) {
+					continue;
+				}
+
+				if (isLoadedBy(className, loader)) {
+					roots.add("Thread '" + thread.getName() + "' is running " + frame);
+					break;
+				}
+			}
+
+			if (thread.getContextClassLoader() == loader) {
+				roots.add("Thread '" + thread.getName() + "' has it as the context class loader");
+			}
+
+			Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+			if (handler != null && isFrom(handler.getClass(), loader)) {
+				roots.add("Thread '" + thread.getName() + "' has the uncaught exception handler " + handler);
+			}
+		}
+
+		Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+		if (handler != null && isFrom(handler.getClass(), loader)) {
+			roots.add("The default uncaught exception handler " + handler);
+		}
+
+		for (char letter = 'a'; letter <= 'z'; letter++) {
+			DelegateSlot slot = DelegateSlot.get(letter);
+			FileSystemProvider provider = slot.fileSystemProvider();
+			if (provider != null && isFrom(provider.getClass(), loader)) {
+				roots.add("The current launch uses " + provider.getClass().getName() + " for quilt." + letter + "fs");
+			}
+
+			DelegateUrlHandler urlHandler = slot.urlStreamHandler();
+			URLStreamHandler delegate = urlHandler == null ? null : urlHandler.delegate();
+			if (delegate != null && isFrom(delegate.getClass(), loader)) {
+				String name = delegate.getClass().getName();
+				roots.add("The current launch uses " + name + " for quilt." + letter + "fs urls");
+			}
+		}
+
+		return roots;
+	}
+
+	/** Checks if a class is one the loader has already loaded, without loading anything. */
+	private static boolean isLoadedBy(String className, BootstrapClassLoader loader) {
+		return loader != null && loader.hasLoaded(className);
+	}
+
+	private static boolean isFrom(Class<?> cls, ClassLoader loader) {
+		for (ClassLoader cl = cls.getClassLoader(); cl != null; cl = cl.getParent()) {
+			if (cl == loader) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** @return null if the heap was dumped, otherwise the error. */
+	private static String dumpHeap(Path file) {
+		try {
+			Files.createDirectories(file.getParent());
+			Class<?> beanClass = Class.forName("com.sun.management.HotSpotDiagnosticMXBean");
+			Object bean = ManagementFactory.getPlatformMXBean(beanClass.asSubclass(PlatformManagedObject.class));
+			Method dump = beanClass.getMethod("dumpHeap", String.class, boolean.class);
+			dump.invoke(bean, file.toString(), true);
+			return null;
+		} catch (ReflectiveOperationException | RuntimeException | IOException e) {
+			return e.toString();
+		}
+	}
+}
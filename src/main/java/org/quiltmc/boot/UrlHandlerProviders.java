@@ -0,0 +1,29 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+/** Whether the quilt.*fs url schemes are registered through a {@code java.net.spi.URLStreamHandlerProvider}, which
+ * only exists on java 9 and later. The jar has a java 9 version of this class; on java 8 the schemes are always found
+ * through the {@code java.protocol.handler.pkgs} property instead. */
+final class UrlHandlerProviders {
+
+	private UrlHandlerProviders() {}
+
+	static boolean registered() {
+		return false;
+	}
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** Virtual threads, where the running java has them. The jar has a java 21 version of this class which calls the api
+ * directly; this one is used on older versions, and when running from a plain classes directory. */
+final class VirtualThreads {
+
+	private VirtualThreads() {}
+
+	/** @return An executor which starts a new virtual thread for each task, or null if virtual threads aren't
+	 *         available. */
+	static ExecutorService newPerTaskExecutor() {
+		if (CdsArchive.javaVersion() < 21) {
+			return null;
+		}
+
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			BootstrapLog.warn("Unable to use virtual threads", e);
+			return null;
+		}
+	}
+}
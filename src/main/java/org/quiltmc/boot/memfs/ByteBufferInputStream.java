@@ -0,0 +1,81 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.memfs;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/** Reads the contents of one file in a {@link MemoryFileSystem}. */
+final class ByteBufferInputStream extends InputStream {
+
+	private final ByteBuffer buffer;
+	private int mark;
+
+	ByteBufferInputStream(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	@Override
+	public int read() {
+		return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if (off < 0 || len < 0 || len > b.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+
+		if (len == 0) {
+			return 0;
+		}
+
+		int count = Math.min(len, buffer.remaining());
+		if (count == 0) {
+			return -1;
+		}
+		buffer.get(b, off, count);
+		return count;
+	}
+
+	@Override
+	public long skip(long n) {
+		int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+		buffer.position(buffer.position() + count);
+		return count;
+	}
+
+	@Override
+	public int available() {
+		return buffer.remaining();
+	}
+
+	@Override
+	public boolean markSupported() {
+		return true;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+		mark = buffer.position();
+	}
+
+	@Override
+	public synchronized void reset() {
+		buffer.position(mark);
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.memfs;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+final class MemoryAttributes implements BasicFileAttributes {
+
+	private final MemoryFileSystem fs;
+	private final int entry;
+
+	MemoryAttributes(MemoryFileSystem fs, int entry) {
+		this.fs = fs;
+		this.entry = entry;
+	}
+
+	@Override
+	public FileTime lastModifiedTime() {
+		return fs.time;
+	}
+
+	@Override
+	public FileTime lastAccessTime() {
+		return fs.time;
+	}
+
+	@Override
+	public FileTime creationTime() {
+		return fs.time;
+	}
+
+	@Override
+	public boolean isRegularFile() {
+		return !fs.isDirectory(entry);
+	}
+
+	@Override
+	public boolean isDirectory() {
+		return fs.isDirectory(entry);
+	}
+
+	@Override
+	public boolean isSymbolicLink() {
+		return false;
+	}
+
+	@Override
+	public boolean isOther() {
+		return false;
+	}
+
+	@Override
+	public long size() {
+		return fs.size(entry);
+	}
+
+	@Override
+	public Object fileKey() {
+		return null;
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.memfs;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/** Lists the children of a directory straight from the index, in name order.
+ *
+ * @param <T> Either {@link Path} or {@link org.quiltmc.boot.AttributedPath}. */
+final class MemoryDirectoryStream<T> implements DirectoryStream<T> {
+
+	interface EntryMapper<T> {
+		T map(MemoryPath path, int entry);
+	}
+
+	private final MemoryPath dir;
+	private final int first;
+	private final int end;
+	private final Filter<? super Path> filter;
+	private final EntryMapper<T> mapper;
+	private boolean iterated;
+	private volatile boolean open = true;
+
+	MemoryDirectoryStream(MemoryPath dir, int entry, Filter<? super Path> filter, EntryMapper<T> mapper) {
+		this.dir = dir;
+		this.first = dir.fs.firstChild(entry);
+		this.end = first + dir.fs.childCount(entry);
+		this.filter = filter;
+		this.mapper = mapper;
+	}
+
+	@Override
+	public synchronized Iterator<T> iterator() {
+		if (!open) {
+			throw new IllegalStateException("Directory stream is closed");
+		}
+
+		if (iterated) {
+			throw new IllegalStateException("Directory stream has already been iterated");
+		}
+		iterated = true;
+
+		return new Iterator<T>() {
+			private int index = first;
+			private T next;
+
+			@Override
+			public boolean hasNext() {
+				while (next == null && open && index < end) {
+					int entry = index++;
+					MemoryPath path = dir.resolveName(dir.fs.name(entry));
+					try {
+						if (filter == null || filter.accept(path)) {
+							next = mapper.map(path, entry);
+						}
+					} catch (IOException e) {
+						throw new DirectoryIteratorException(e);
+					}
+				}
+				return next != null;
+			}
+
+			@Override
+			public T next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				T result = next;
+				next = null;
+				return result;
+			}
+		};
+	}
+
+	@Override
+	public void close() {
+		open = false;
+	}
+}
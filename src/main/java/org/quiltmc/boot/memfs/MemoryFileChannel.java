@@ -0,0 +1,232 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.memfs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/** A read-only channel over the contents of one file in a {@link MemoryFileSystem}.
+ * <p>
+ * Reads copy straight out of the shared buffer, and never lock. Positional reads are safe from any number of threads;
+ * relative reads from several threads at once may return the same bytes twice, since the position isn't updated
+ * atomically. */
+final class MemoryFileChannel extends FileChannel {
+
+	private final ByteBuffer contents;
+	private volatile long position;
+
+	MemoryFileChannel(ByteBuffer contents) {
+		this.contents = contents;
+	}
+
+	private void ensureOpen() throws ClosedChannelException {
+		if (!isOpen()) {
+			throw new ClosedChannelException();
+		}
+	}
+
+	/** Copies as much as fits from the given position into the buffer, without changing this channel's position.
+	 *
+	 * @return The number of bytes copied, or -1 if the position is at or past the end. */
+	private int readAt(ByteBuffer dst, long position) {
+		int size = contents.limit();
+		if (position >= size) {
+			return -1;
+		}
+
+		int start = (int) position;
+		int count = Math.min(dst.remaining(), size - start);
+		ByteBuffer src = contents.duplicate();
+		src.limit(start + count).position(start);
+		dst.put(src);
+		return count;
+	}
+
+	@Override
+	public int read(ByteBuffer dst) throws IOException {
+		ensureOpen();
+		long position = this.position;
+		int count = readAt(dst, position);
+		if (count > 0) {
+			this.position = position + count;
+		}
+		return count;
+	}
+
+	@Override
+	public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+		if (offset < 0 || length < 0 || offset > dsts.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+
+		ensureOpen();
+		long position = this.position;
+		long total = 0;
+		for (int i = offset; i < offset + length; i++) {
+			int count = readAt(dsts[i], position + total);
+			if (count < 0) {
+				break;
+			}
+			total += count;
+		}
+
+		if (total == 0 && position >= contents.limit()) {
+			return -1;
+		}
+		this.position = position + total;
+		return total;
+	}
+
+	@Override
+	public int read(ByteBuffer dst, long position) throws IOException {
+		if (position < 0) {
+			throw new IllegalArgumentException("Negative position");
+		}
+		ensureOpen();
+		return readAt(dst, position);
+	}
+
+	@Override
+	public int write(ByteBuffer src) {
+		throw new NonWritableChannelException();
+	}
+
+	@Override
+	public long write(ByteBuffer[] srcs, int offset, int length) {
+		throw new NonWritableChannelException();
+	}
+
+	@Override
+	public int write(ByteBuffer src, long position) {
+		throw new NonWritableChannelException();
+	}
+
+	@Override
+	public long position() throws IOException {
+		ensureOpen();
+		return position;
+	}
+
+	@Override
+	public FileChannel position(long newPosition) throws IOException {
+		if (newPosition < 0) {
+			throw new IllegalArgumentException("Negative position");
+		}
+		ensureOpen();
+		position = newPosition;
+		return this;
+	}
+
+	@Override
+	public long size() throws IOException {
+		ensureOpen();
+		return contents.limit();
+	}
+
+	@Override
+	public FileChannel truncate(long size) {
+		throw new NonWritableChannelException();
+	}
+
+	@Override
+	public void force(boolean metaData) throws IOException {
+		ensureOpen();
+	}
+
+	/** Writes the contents straight from the shared buffer, so nothing is copied on the way. */
+	@Override
+	public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+		if (position < 0 || count < 0) {
+			throw new IllegalArgumentException("Negative position or count");
+		}
+		ensureOpen();
+
+		int size = contents.limit();
+		if (position >= size) {
+			return 0;
+		}
+
+		int start = (int) position;
+		// position + count overflows for the usual count of Long.MAX_VALUE
+		int end = (int) (position + Math.min(count, size - position));
+		ByteBuffer src = contents.duplicate();
+		src.limit(end).position(start);
+
+		long written = 0;
+		while (src.hasRemaining()) {
+			int n = target.write(src);
+			if (n == 0) {
+				// A non-blocking target which is full
+				break;
+			}
+			written += n;
+		}
+		return written;
+	}
+
+	@Override
+	public long transferFrom(ReadableByteChannel src, long position, long count) {
+		throw new NonWritableChannelException();
+	}
+
+	/** Direct mappings can't be created from an existing buffer, so use {@link #read(ByteBuffer, long)} instead,
+	 * which is just as cheap. */
+	@Override
+	public MappedByteBuffer map(MapMode mode, long position, long size) {
+		throw new UnsupportedOperationException("Memory filesystem files can't be mapped");
+	}
+
+	@Override
+	public FileLock lock(long position, long size, boolean shared) throws IOException {
+		return tryLock(position, size, shared);
+	}
+
+	/** Nothing can write to the file, so shared locks are always granted, and exclusive ones never are. */
+	@Override
+	public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+		if (!shared) {
+			throw new NonWritableChannelException();
+		}
+		ensureOpen();
+
+		return new FileLock(this, position, size, true) {
+			private volatile boolean valid = true;
+
+			@Override
+			public boolean isValid() {
+				return valid && channel().isOpen();
+			}
+
+			@Override
+			public void release() {
+				valid = false;
+			}
+		};
+	}
+
+	@Override
+	protected void implCloseChannel() {
+		// Nothing to release, the contents belong to the filesystem
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.memfs;
+
+import java.nio.file.FileStore;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileStoreAttributeView;
+
+final class MemoryFileStore extends FileStore {
+
+	private final MemoryFileSystem fs;
+	private final long totalSize;
+
+	MemoryFileStore(MemoryFileSystem fs, long totalSize) {
+		this.fs = fs;
+		this.totalSize = totalSize;
+	}
+
+	@Override
+	public String name() {
+		return fs.name;
+	}
+
+	@Override
+	public String type() {
+		return "quilt-memory";
+	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
+	@Override
+	public long getTotalSpace() {
+		return totalSize;
+	}
+
+	@Override
+	public long getUsableSpace() {
+		return 0;
+	}
+
+	@Override
+	public long getUnallocatedSpace() {
+		return 0;
+	}
+
+	@Override
+	public boolean supportsFileAttributeView(Class<? extends FileAttributeView> type) {
+		return type == BasicFileAttributeView.class;
+	}
+
+	@Override
+	public boolean supportsFileAttributeView(String name) {
+		return "basic".equals(name);
+	}
+
+	@Override
+	public <V extends FileStoreAttributeView> V getFileStoreAttributeView(Class<V> type) {
+		return null;
+	}
+
+	@Override
+	public Object getAttribute(String attribute) {
+		switch (attribute) {
+			case "totalSpace":
+				return getTotalSpace();
+			case "usableSpace":
+				return getUsableSpace();
+			case "unallocatedSpace":
+				return getUnallocatedSpace();
+			default:
+				throw new UnsupportedOperationException("Unsupported file store attribute " + attribute);
+		}
+	}
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.memfs;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.Collections;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/** A read-only filesystem held entirely in memory, created by {@link MemoryFileSystemBuilder}.
+ * <p>
+ * The index is a flattened tree: every entry has an index, and the children of each directory have consecutive
+ * indices sorted by name, so finding a path is a binary search per name rather than a hash of the whole path. File
+ * contents live in a few large (usually direct) buffers which every channel and stream reads from directly, without
+ * locking or copying into the heap first. */
+public final class MemoryFileSystem extends FileSystem {
+
+	static final int ROOT = 0;
+	static final int MISSING = -1;
+
+	final MemoryFileSystemProvider provider;
+	final String name;
+	final FileTime time;
+	final MemoryPath root;
+	private final MemoryFileStore store;
+
+	// Index, with one slot per entry. The root directory is always entry 0
+	private final String[] names;
+	private final int[] parents;
+	/** For directories the index of the first child, for files the buffer that holds their contents. */
+	private final int[] firstChild;
+	/** For directories the number of children, for files -1. */
+	private final int[] childCount;
+	private final int[] offsets;
+	private final int[] sizes;
+	private final ByteBuffer[] buffers;
+
+	private volatile boolean open = true;
+
+	MemoryFileSystem(
+		MemoryFileSystemProvider provider, String name, FileTime time, String[] names, int[] parents,
+		int[] firstChild, int[] childCount, int[] offsets, int[] sizes, ByteBuffer[] buffers
+	) {
+		this.provider = provider;
+		this.name = name;
+		this.time = time;
+		this.names = names;
+		this.parents = parents;
+		this.firstChild = firstChild;
+		this.childCount = childCount;
+		this.offsets = offsets;
+		this.sizes = sizes;
+		this.buffers = buffers;
+		this.root = new MemoryPath(this, "/");
+
+		long total = 0;
+		for (int i = 0; i < names.length; i++) {
+			if (childCount[i] < 0) {
+				total += sizes[i];
+			}
+		}
+		this.store = new MemoryFileStore(this, total);
+	}
+
+	/** @return The name this filesystem was registered with, which is the authority of its uris. */
+	public String name() {
+		return name;
+	}
+
+	/** @return The number of files and directories in this filesystem, including the root. */
+	public int entryCount() {
+		return names.length;
+	}
+
+	@Override
+	public MemoryFileSystemProvider provider() {
+		return provider;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (open) {
+			open = false;
+			provider.remove(this);
+		}
+	}
+
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+
+	void ensureOpen() {
+		if (!open) {
+			throw new ClosedFileSystemException();
+		}
+	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
+	@Override
+	public String getSeparator() {
+		return "/";
+	}
+
+	@Override
+	public Iterable<Path> getRootDirectories() {
+		return Collections.singletonList(root);
+	}
+
+	@Override
+	public Iterable<FileStore> getFileStores() {
+		return Collections.singletonList(store);
+	}
+
+	MemoryFileStore store() {
+		return store;
+	}
+
+	@Override
+	public Set<String> supportedFileAttributeViews() {
+		return Collections.singleton("basic");
+	}
+
+	@Override
+	public Path getPath(String first, String... more) {
+		if (more.length == 0) {
+			return new MemoryPath(this, MemoryPath.clean(first));
+		}
+
+		StringBuilder sb = new StringBuilder(first);
+		for (String segment : more) {
+			if (!segment.isEmpty()) {
+				if (sb.length() > 0) {
+					sb.append('/');
+				}
+				sb.append(segment);
+			}
+		}
+		return new MemoryPath(this, MemoryPath.clean(sb.toString()));
+	}
+
+	@Override
+	public PathMatcher getPathMatcher(String syntaxAndPattern) {
+		int colon = syntaxAndPattern.indexOf(':');
+		if (colon <= 0) {
+			throw new IllegalArgumentException("Expected syntax:pattern, got " + syntaxAndPattern);
+		}
+
+		String syntax = syntaxAndPattern.substring(0, colon);
+		String pattern = syntaxAndPattern.substring(colon + 1);
+		Pattern regex;
+		if ("glob".equalsIgnoreCase(syntax)) {
+			regex = Pattern.compile(globToRegex(pattern));
+		} else if ("regex".equalsIgnoreCase(syntax)) {
+			regex = Pattern.compile(pattern);
+		} else {
+			throw new UnsupportedOperationException("Unsupported path matcher syntax " + syntax);
+		}
+		return path -> regex.matcher(path.toString()).matches();
+	}
+
+	@Override
+	public UserPrincipalLookupService getUserPrincipalLookupService() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public WatchService newWatchService() throws IOException {
+		throw new UnsupportedOperationException("Memory filesystems are read-only, so they never change");
+	}
+
+	@Override
+	public String toString() {
+		return provider.getScheme() + "://" + name;
+	}
+
+	URI toUri(String absolutePath) {
+		try {
+			return new URI(provider.getScheme(), name, absolutePath, null);
+		} catch (URISyntaxException e) {
+			throw new IllegalStateException("Failed to create a uri for " + absolutePath + " in " + this, e);
+		}
+	}
+
+	// Index
+
+	/** @param absolutePath A normalized absolute path.
+	 * @return The index of the entry, or {@link #MISSING}. */
+	int find(String absolutePath) {
+		int entry = ROOT;
+		int start = 1;
+		int length = absolutePath.length();
+		while (start < length) {
+			int end = absolutePath.indexOf('/', start);
+			if (end < 0) {
+				end = length;
+			}
+
+			entry = findChild(entry, absolutePath, start, end);
+			if (entry == MISSING) {
+				return MISSING;
+			}
+			start = end + 1;
+		}
+		return entry;
+	}
+
+	private int findChild(int directory, String path, int start, int end) {
+		int count = childCount[directory];
+		if (count <= 0) {
+			return MISSING;
+		}
+
+		int low = firstChild[directory];
+		int high = low + count - 1;
+		int length = end - start;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compare(names[mid], path, start, length);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return MISSING;
+	}
+
+	/** Compares like {@link String#compareTo(String)}, without creating a substring of the path. */
+	private static int compare(String name, String path, int start, int length) {
+		int limit = Math.min(name.length(), length);
+		for (int i = 0; i < limit; i++) {
+			char a = name.charAt(i);
+			char b = path.charAt(start + i);
+			if (a != b) {
+				return a - b;
+			}
+		}
+		return name.length() - length;
+	}
+
+	boolean isDirectory(int entry) {
+		return childCount[entry] >= 0;
+	}
+
+	int firstChild(int entry) {
+		return firstChild[entry];
+	}
+
+	int childCount(int entry) {
+		return Math.max(childCount[entry], 0);
+	}
+
+	String name(int entry) {
+		return names[entry];
+	}
+
+	int parent(int entry) {
+		return parents[entry];
+	}
+
+	int size(int entry) {
+		return childCount[entry] < 0 ? sizes[entry] : 0;
+	}
+
+	/** @return A new read-only buffer holding exactly the contents of the file, positioned at 0. */
+	ByteBuffer contents(int entry) {
+		ByteBuffer view = buffers[firstChild[entry]].duplicate();
+		int offset = offsets[entry];
+		view.limit(offset + sizes[entry]).position(offset);
+		return view.slice();
+	}
+
+	// Globs
+
+	/** Converts a glob, as described by {@link FileSystem#getPathMatcher(String)}, to a regex. */
+	static String globToRegex(String glob) {
+		StringBuilder sb = new StringBuilder("^");
+		boolean inGroup = false;
+		int length = glob.length();
+
+		for (int i = 0; i < length; i++) {
+			char c = glob.charAt(i);
+			switch (c) {
+				case '\\': {
+					if (++i == length) {
+						throw new PatternSyntaxException("Trailing escape", glob, i - 1);
+					}
+					appendLiteral(sb, glob.charAt(i));
+					break;
+				}
+				case '*': {
+					if (i + 1 < length && glob.charAt(i + 1) == '*') {
+						sb.append(".*");
+						i++;
+					} else {
+						sb.append("[^/]*");
+					}
+					break;
+				}
+				case '?': {
+					sb.append("[^/]");
+					break;
+				}
+				case '{': {
+					if (inGroup) {
+						throw new PatternSyntaxException("Nested groups aren't supported", glob, i);
+					}
+					sb.append("(?:");
+					inGroup = true;
+					break;
+				}
+				case '}': {
+					if (inGroup) {
+						sb.append(')');
+						inGroup = false;
+					} else {
+						appendLiteral(sb, c);
+					}
+					break;
+				}
+				case ',': {
+					if (inGroup) {
+						sb.append('|');
+					} else {
+						appendLiteral(sb, c);
+					}
+					break;
+				}
+				case '[': {
+					int close = glob.indexOf(']', i + 2);
+					if (close < 0) {
+						throw new PatternSyntaxException("Missing ']'", glob, i);
+					}
+					sb.append("[[^/]&&[");
+					int j = i + 1;
+					if (glob.charAt(j) == '!') {
+						sb.append('^');
+						j++;
+					} else if (glob.charAt(j) == '^') {
+						sb.append("\\^");
+						j++;
+					}
+					for (; j < close; j++) {
+						char ch = glob.charAt(j);
+						if (ch == '[' || ch == '&' || ch == '\\') {
+							sb.append('\\');
+						}
+						sb.append(ch);
+					}
+					sb.append("]]");
+					i = close;
+					break;
+				}
+				default: {
+					appendLiteral(sb, c);
+				}
+			}
+		}
+
+		if (inGroup) {
+			throw new PatternSyntaxException("Missing '}'", glob, length);
+		}
+		return sb.append('$').toString();
+	}
+
+	private static void appendLiteral(StringBuilder sb, char c) {
+		if ("\\^$.|?*+()[]{}".indexOf(c) >= 0) {
+			sb.append('\\');
+		}
+		sb.append(c);
+	}
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.memfs;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Collects the files of a {@link MemoryFileSystem}, and then packs them into its index and buffers. */
+public final class MemoryFileSystemBuilder {
+
+	/** Contents are packed into buffers of up to this size. Larger files get a buffer of their own. */
+	static final int MAX_BUFFER_SIZE = 1 << 30;
+
+	private final Node root = new Node("", true);
+	private boolean direct = true;
+	private FileTime time = FileTime.fromMillis(System.currentTimeMillis());
+
+	/** Adds a file, replacing any file already at the same path. The array is copied when the filesystem is built,
+	 * so it must not be modified before then. */
+	public MemoryFileSystemBuilder addFile(String path, byte[] contents) {
+		return addFile(path, ByteBuffer.wrap(contents));
+	}
+
+	/** Adds a file holding the remaining bytes of the buffer, replacing any file already at the same path. The bytes
+	 * are copied when the filesystem is built, so they must not be modified before then. */
+	public MemoryFileSystemBuilder addFile(String path, ByteBuffer contents) {
+		Node parent = root;
+		List<String> names = split(path);
+		if (names.isEmpty()) {
+			throw new IllegalArgumentException("The root can't be a file");
+		}
+
+		for (int i = 0; i < names.size() - 1; i++) {
+			parent = parent.directory(names.get(i), path);
+		}
+
+		String name = names.get(names.size() - 1);
+		Node existing = parent.children.get(name);
+		if (existing != null && existing.children != null) {
+			throw new IllegalArgumentException("Can't add the file " + path + " over a directory");
+		}
+
+		Node file = new Node(name, false);
+		file.contents = contents.slice();
+		parent.children.put(name, file);
+		return this;
+	}
+
+	/** Adds an empty directory, along with any missing parent directories. */
+	public MemoryFileSystemBuilder addDirectory(String path) {
+		Node directory = root;
+		for (String name : split(path)) {
+			directory = directory.directory(name, path);
+		}
+		return this;
+	}
+
+	/** Copies every file and directory under {@code source}, which can be on any filesystem, into {@code target}. */
+	public MemoryFileSystemBuilder addTree(Path source, String target) throws IOException {
+		String prefix = target.endsWith("/") ? target : target + "/";
+		Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+				addDirectory(prefix + relative(source, dir));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				addFile(prefix + relative(source, file), Files.readAllBytes(file));
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return this;
+	}
+
+	private static String relative(Path base, Path path) {
+		StringBuilder sb = new StringBuilder();
+		for (Path name : base.relativize(path)) {
+			if (sb.length() > 0) {
+				sb.append('/');
+			}
+			sb.append(name);
+		}
+		return sb.toString();
+	}
+
+	/** Sets the time reported for every file and directory. Defaults to when this builder was created. */
+	public MemoryFileSystemBuilder lastModified(FileTime time) {
+		this.time = time;
+		return this;
+	}
+
+	/** Whether the contents are held in direct buffers (the default), which keeps them out of the java heap. */
+	public MemoryFileSystemBuilder direct(boolean direct) {
+		this.direct = direct;
+		return this;
+	}
+
+	private static List<String> split(String path) {
+		List<String> names = new ArrayList<>();
+		for (String name : MemoryPath.clean(path).split("/")) {
+			if (name.isEmpty()) {
+				continue;
+			}
+
+			if (name.equals(".") || name.equals("..")) {
+				throw new IllegalArgumentException("Paths must be normalized, but got " + path);
+			}
+			names.add(name);
+		}
+		return names;
+	}
+
+	/** Builds the filesystem, and opens it in the provider. This builder can be reused afterwards.
+	 *
+	 * @param name The name of the filesystem, which is used as the authority of its uris.
+	 * @throws java.nio.file.FileSystemAlreadyExistsException if the provider already has an open filesystem with the
+	 *             same name. */
+	public MemoryFileSystem build(MemoryFileSystemProvider provider, String name) {
+		checkName(provider, name);
+		List<Node> nodes = index();
+		int count = nodes.size();
+		String[] names = new String[count];
+		int[] parents = new int[count];
+		int[] firstChild = new int[count];
+		int[] childCount = new int[count];
+		int[] offsets = new int[count];
+		int[] sizes = new int[count];
+		List<ByteBuffer> buffers = pack(nodes, offsets, sizes, firstChild);
+
+		for (int i = 0; i < count; i++) {
+			Node node = nodes.get(i);
+			names[i] = node.name;
+			parents[i] = node.parent;
+			if (node.children != null) {
+				firstChild[i] = node.firstChild;
+				childCount[i] = node.children.size();
+			} else {
+				childCount[i] = -1;
+			}
+		}
+
+		MemoryFileSystem fs = new MemoryFileSystem(
+			provider, name, time, names, parents, firstChild, childCount, offsets, sizes,
+			buffers.toArray(new ByteBuffer[0])
+		);
+		provider.add(fs);
+		return fs;
+	}
+
+	/** Checks that the name can be used as the authority of the provider's uris. */
+	static void checkName(MemoryFileSystemProvider provider, String name) {
+		try {
+			URI uri = new URI(provider.getScheme(), name, "/", null);
+			if (!name.equals(uri.getAuthority())) {
+				throw new IllegalArgumentException("Invalid filesystem name " + name);
+			}
+		} catch (URISyntaxException e) {
+			throw new IllegalArgumentException("Invalid filesystem name " + name, e);
+		}
+	}
+
+	/** Numbers every file and directory breadth first, so the children of each directory get consecutive indices in
+	 * name order.
+	 *
+	 * @return Every node, in index order. */
+	List<Node> index() {
+		List<Node> nodes = new ArrayList<>();
+		nodes.add(root);
+		Deque<Node> queue = new ArrayDeque<>();
+		queue.add(root);
+
+		while (!queue.isEmpty()) {
+			Node directory = queue.poll();
+			directory.firstChild = nodes.size();
+			for (Node child : directory.children.values()) {
+				child.parent = directory.index;
+				child.index = nodes.size();
+				nodes.add(child);
+				if (child.children != null) {
+					queue.add(child);
+				}
+			}
+		}
+		return nodes;
+	}
+
+	FileTime time() {
+		return time;
+	}
+
+	/** Copies the contents of every file into as few buffers as possible. */
+	private List<ByteBuffer> pack(List<Node> nodes, int[] offsets, int[] sizes, int[] bufferIndices) {
+		List<ByteBuffer> buffers = new ArrayList<>();
+		List<Node> pending = new ArrayList<>();
+		long pendingSize = 0;
+
+		for (Node node : nodes) {
+			if (node.contents == null) {
+				continue;
+			}
+
+			int size = node.contents.remaining();
+			if (!pending.isEmpty() && pendingSize + size > MAX_BUFFER_SIZE) {
+				buffers.add(fill(pending, (int) pendingSize, buffers.size(), offsets, sizes, bufferIndices));
+				pending.clear();
+				pendingSize = 0;
+			}
+
+			pending.add(node);
+			pendingSize += size;
+		}
+
+		if (!pending.isEmpty() || buffers.isEmpty()) {
+			buffers.add(fill(pending, (int) pendingSize, buffers.size(), offsets, sizes, bufferIndices));
+		}
+		return buffers;
+	}
+
+	private ByteBuffer fill(
+		List<Node> files, int size, int bufferIndex, int[] offsets, int[] sizes, int[] bufferIndices
+	) {
+		ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+		for (Node file : files) {
+			offsets[file.index] = buffer.position();
+			sizes[file.index] = file.contents.remaining();
+			bufferIndices[file.index] = bufferIndex;
+			buffer.put(file.contents.duplicate());
+		}
+		buffer.flip();
+		return buffer.asReadOnlyBuffer();
+	}
+
+	static final class Node {
+		final String name;
+		/** Null for files. */
+		Map<String, Node> children;
+		/** Null for directories. */
+		ByteBuffer contents;
+		int index;
+		int parent = -1;
+		int firstChild;
+
+		Node(String name, boolean directory) {
+			this.name = name;
+			this.children = directory ? new TreeMap<>() : null;
+		}
+
+		Node directory(String name, String path) {
+			if (children == null) {
+				throw new IllegalArgumentException("Can't add " + path + " inside a file");
+			}
+
+			Node child = children.get(name);
+			if (child == null) {
+				child = new Node(name, true);
+				children.put(name, child);
+			} else if (child.children == null) {
+				throw new IllegalArgumentException("Can't add " + path + " inside the file " + name);
+			}
+			return child;
+		}
+	}
+}
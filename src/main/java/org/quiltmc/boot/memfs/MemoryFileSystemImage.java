@@ -0,0 +1,345 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.memfs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.quiltmc.boot.BootstrapLog;
+import org.quiltmc.boot.memfs.MemoryFileSystemBuilder.Node;
+
+/** A file holding everything in a {@link MemoryFileSystem}, which a later launch can memory map and open without
+ * reading or copying any file contents. Files with identical contents are only stored once.
+ * <p>
+ * Every image is written with a fingerprint chosen by the caller (for example a hash of the inputs the filesystem was
+ * built from), and is only loaded if the same fingerprint is given back. The mapping is read only, so every JVM that
+ * loads the same image shares its pages. */
+public final class MemoryFileSystemImage {
+
+	private static final int MAGIC = 0x514d4649; // "QMFI"
+	private static final int VERSION = 1;
+	/** magic, version, length, time, entry count, blob count, index length, data start, fingerprint length */
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4 + 4 + 8 + 4;
+	/** File contents start on a page boundary, so the index doesn't share a page with them. */
+	private static final int DATA_ALIGNMENT = 4096;
+
+	private MemoryFileSystemImage() {}
+
+	/** Writes an image of everything added to the builder so far. The file is replaced atomically where possible. On
+	 * most platforms other JVMs that already mapped an older image at the same path keep reading the old file, but
+	 * windows doesn't allow replacing a file while anything has it mapped, so this throws a
+	 * {@link java.nio.file.FileSystemException} there instead. Callers which might write while another launch is
+	 * running should use a path that includes the fingerprint, so an image is never replaced by a different one. */
+	public static void write(MemoryFileSystemBuilder builder, byte[] fingerprint, Path file) throws IOException {
+		List<Node> nodes = builder.index();
+		int[] blobOf = new int[nodes.size()];
+		List<ByteBuffer> blobs = new ArrayList<>();
+		Map<ByteBuffer, Integer> blobIndices = new HashMap<>();
+		MessageDigest digest = sha256();
+
+		for (Node node : nodes) {
+			if (node.contents == null) {
+				continue;
+			}
+
+			digest.update(node.contents.duplicate());
+			ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+			Integer blob = blobIndices.get(hash);
+			if (blob == null) {
+				blob = blobs.size();
+				blobs.add(node.contents);
+				blobIndices.put(hash, blob);
+			}
+			blobOf[node.index] = blob;
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		for (Node node : nodes) {
+			out.writeInt(node.parent);
+			if (node.children != null) {
+				out.writeInt(node.firstChild);
+				out.writeInt(node.children.size());
+			} else {
+				out.writeInt(blobOf[node.index]);
+				out.writeInt(-1);
+			}
+			byte[] name = node.name.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(name.length);
+			out.write(name);
+		}
+
+		long indexEnd = HEADER_SIZE + fingerprint.length + bytes.size() + blobs.size() * 12L;
+		long dataStart = (indexEnd + DATA_ALIGNMENT - 1) / DATA_ALIGNMENT * DATA_ALIGNMENT;
+		long offset = dataStart;
+		for (ByteBuffer blob : blobs) {
+			out.writeLong(offset);
+			out.writeInt(blob.remaining());
+			offset += blob.remaining();
+		}
+		out.flush();
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + fingerprint.length);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putLong(offset);
+		header.putLong(builder.time().toMillis());
+		header.putInt(nodes.size());
+		header.putInt(blobs.size());
+		header.putInt(bytes.size());
+		header.putLong(dataStart);
+		header.putInt(fingerprint.length);
+		header.put(fingerprint);
+		header.flip();
+
+		Path parent = file.toAbsolutePath().getParent();
+		Files.createDirectories(parent);
+		Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				writeFully(channel, header);
+				writeFully(channel, ByteBuffer.wrap(bytes.toByteArray()));
+				channel.position(dataStart);
+				for (ByteBuffer blob : blobs) {
+					writeFully(channel, blob.duplicate());
+				}
+				// Empty trailing blobs (or none at all) leave the file short of the length in the header
+				if (channel.size() < offset) {
+					writeFully(channel, ByteBuffer.allocate(1), offset - 1);
+				}
+			}
+
+			try {
+				Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/** Maps an image written by {@link #write}, and opens it in the provider under the given name.
+	 *
+	 * @return The filesystem, or null if the file doesn't exist, was written with a different fingerprint, or isn't a
+	 *         valid image. The caller should build the filesystem again (and probably write a new image) in that
+	 *         case.
+	 * @throws java.nio.file.FileSystemAlreadyExistsException if the provider already has an open filesystem with the
+	 *             same name. */
+	public static MemoryFileSystem load(
+		Path file, byte[] fingerprint, MemoryFileSystemProvider provider, String name
+	) {
+		MemoryFileSystemBuilder.checkName(provider, name);
+		MemoryFileSystem fs;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			fs = read(channel, fingerprint, provider, name);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			BootstrapLog.warn("Ignoring the unreadable filesystem image " + file, e);
+			return null;
+		}
+
+		if (fs != null) {
+			provider.add(fs);
+		}
+		return fs;
+	}
+
+	private static MemoryFileSystem read(
+		FileChannel channel, byte[] fingerprint, MemoryFileSystemProvider provider, String name
+	) throws IOException {
+		long length = channel.size();
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + fingerprint.length);
+		if (length < header.capacity()) {
+			return null;
+		}
+		readFully(channel, header, 0);
+		header.flip();
+
+		if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getLong() != length) {
+			return null;
+		}
+
+		FileTime time = FileTime.fromMillis(header.getLong());
+		int entryCount = header.getInt();
+		int blobCount = header.getInt();
+		int indexLength = header.getInt();
+		long dataStart = header.getLong();
+		int fingerprintLength = header.getInt();
+		if (fingerprintLength != fingerprint.length) {
+			return null;
+		}
+
+		byte[] actual = new byte[fingerprintLength];
+		header.get(actual);
+		if (!Arrays.equals(actual, fingerprint)) {
+			return null;
+		}
+
+		long indexStart = header.capacity();
+		if (entryCount < 1 || blobCount < 0 || indexLength < 0 || indexStart + indexLength > dataStart
+			|| dataStart > length) {
+
+			throw new IOException("Corrupt header");
+		}
+
+		ByteBuffer index = channel.map(MapMode.READ_ONLY, indexStart, indexLength);
+		String[] names = new String[entryCount];
+		int[] parents = new int[entryCount];
+		int[] firstChild = new int[entryCount];
+		int[] childCount = new int[entryCount];
+		int[] offsets = new int[entryCount];
+		int[] sizes = new int[entryCount];
+		long[] blobOffsets = new long[blobCount];
+		int[] blobSizes = new int[blobCount];
+		CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+
+		try {
+			for (int i = 0; i < entryCount; i++) {
+				parents[i] = index.getInt();
+				firstChild[i] = index.getInt();
+				childCount[i] = index.getInt();
+				int nameLength = index.getInt();
+				ByteBuffer nameBytes = index.slice();
+				nameBytes.limit(nameLength);
+				index.position(index.position() + nameLength);
+				names[i] = decoder.decode(nameBytes).toString();
+				checkEntry(i, names[i], parents[i], firstChild[i], childCount[i], entryCount, blobCount);
+			}
+
+			long previousEnd = dataStart;
+			for (int i = 0; i < blobCount; i++) {
+				blobOffsets[i] = index.getLong();
+				blobSizes[i] = index.getInt();
+				if (blobOffsets[i] != previousEnd || blobSizes[i] < 0) {
+					throw new IOException("Corrupt blob " + i);
+				}
+				previousEnd += blobSizes[i];
+			}
+
+			if (previousEnd != length) {
+				throw new IOException("Corrupt blob table");
+			}
+		} catch (BufferUnderflowException | IllegalArgumentException | CharacterCodingException e) {
+			throw new IOException("Corrupt index", e);
+		}
+
+		// Map the contents in as few buffers as possible, without splitting a file between them
+		List<ByteBuffer> buffers = new ArrayList<>();
+		int[] blobBuffers = new int[blobCount];
+		int[] blobBufferOffsets = new int[blobCount];
+		long bufferStart = dataStart;
+		for (int blob = 0; blob < blobCount; blob++) {
+			long blobEnd = blobOffsets[blob] + blobSizes[blob];
+			if (blobEnd - bufferStart > MemoryFileSystemBuilder.MAX_BUFFER_SIZE && blobOffsets[blob] > bufferStart) {
+				buffers.add(channel.map(MapMode.READ_ONLY, bufferStart, blobOffsets[blob] - bufferStart));
+				bufferStart = blobOffsets[blob];
+			}
+			blobBuffers[blob] = buffers.size();
+			blobBufferOffsets[blob] = (int) (blobOffsets[blob] - bufferStart);
+		}
+		buffers.add(channel.map(MapMode.READ_ONLY, bufferStart, length - bufferStart));
+
+		for (int i = 0; i < entryCount; i++) {
+			if (childCount[i] < 0) {
+				int blob = firstChild[i];
+				firstChild[i] = blobBuffers[blob];
+				offsets[i] = blobBufferOffsets[blob];
+				sizes[i] = blobSizes[blob];
+			}
+		}
+
+		return new MemoryFileSystem(
+			provider, name, time, names, parents, firstChild, childCount, offsets, sizes,
+			buffers.toArray(new ByteBuffer[0])
+		);
+	}
+
+	/** Checks that following the index from an entry can't go out of bounds or loop forever. */
+	private static void checkEntry(
+		int entry, String name, int parent, int first, int count, int entryCount, int blobCount
+	) throws IOException {
+		boolean valid;
+		if (entry == MemoryFileSystem.ROOT) {
+			valid = parent == MemoryFileSystem.MISSING && count >= 0 && name.isEmpty();
+		} else {
+			valid = parent >= 0 && parent < entry && !name.isEmpty() && name.indexOf('/') < 0;
+		}
+
+		if (count >= 0) {
+			valid &= first > entry && first + (long) count <= entryCount;
+		} else {
+			valid &= count == -1 && first >= 0 && first < blobCount;
+		}
+
+		if (!valid) {
+			throw new IOException("Corrupt entry " + entry);
+		}
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every java platform is required to support SHA-256
+			throw new Error(e);
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, position + buffer.position());
+		}
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of file");
+			}
+		}
+	}
+}
@@ -0,0 +1,391 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.memfs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.DirectoryStream.Filter;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.LinkOption;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.NotLinkException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.ReadOnlyFileSystemException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.quiltmc.boot.AttributedDirectoryStreamProvider;
+import org.quiltmc.boot.AttributedPath;
+import org.quiltmc.boot.BootstrapContext;
+
+/** A provider of read-only {@link MemoryFileSystem}s for one quilt.*fs letter, which a loader can register with
+ * {@link #register(BootstrapContext)} instead of writing its own.
+ * <p>
+ * Every filesystem is identified by a name, which is the authority of its uris, like
+ * {@code quilt.afs://mods/example/Example.class}. Filesystems are created with {@link MemoryFileSystemBuilder}. */
+public final class MemoryFileSystemProvider extends FileSystemProvider implements AttributedDirectoryStreamProvider {
+
+	private static final List<String> BASIC_ATTRIBUTES = Arrays.asList(
+		"lastModifiedTime", "lastAccessTime", "creationTime", "size", "isRegularFile", "isDirectory",
+		"isSymbolicLink", "isOther", "fileKey"
+	);
+
+	private final char letter;
+	private final String scheme;
+	private final Map<String, MemoryFileSystem> fileSystems = new ConcurrentHashMap<>();
+	private final MemoryUrlStreamHandler urlHandler = new MemoryUrlStreamHandler(this);
+
+	public MemoryFileSystemProvider(char letter) {
+		if (letter < 'a' || letter > 'z') {
+			throw new IllegalArgumentException("Only 'a-z' filesystems are supported!");
+		}
+		this.letter = letter;
+		this.scheme = "quilt." + letter + "fs";
+	}
+
+	/** Registers this provider, and a url handler for its filesystems, as the delegate of its letter. */
+	public void register(BootstrapContext context) {
+		context.putFileSystemProvider(letter, this, urlHandler);
+	}
+
+	public char letter() {
+		return letter;
+	}
+
+	/** @return The url handler for this provider's filesystems, which {@link #register(BootstrapContext)} passes to the
+	 *         bootstrap. */
+	public MemoryUrlStreamHandler urlHandler() {
+		return urlHandler;
+	}
+
+	@Override
+	public String getScheme() {
+		return scheme;
+	}
+
+	/** @return The open filesystem with the given name, or null if there isn't one. */
+	public MemoryFileSystem getFileSystem(String name) {
+		return fileSystems.get(name);
+	}
+
+	void add(MemoryFileSystem fs) {
+		if (fileSystems.putIfAbsent(fs.name, fs) != null) {
+			throw new FileSystemAlreadyExistsException(fs.toString());
+		}
+	}
+
+	void remove(MemoryFileSystem fs) {
+		fileSystems.remove(fs.name, fs);
+	}
+
+	private MemoryFileSystem fileSystemOf(URI uri) {
+		if (!scheme.equalsIgnoreCase(uri.getScheme())) {
+			throw new IllegalArgumentException("Expected a " + scheme + " uri, but got " + uri);
+		}
+
+		String name = uri.getAuthority();
+		MemoryFileSystem fs = name == null ? null : fileSystems.get(name);
+		if (fs == null) {
+			throw new FileSystemNotFoundException(uri.toString());
+		}
+		return fs;
+	}
+
+	/** Memory filesystems are built up front, so they can't be created from a uri. */
+	@Override
+	public MemoryFileSystem newFileSystem(URI uri, Map<String, ?> env) {
+		throw new UnsupportedOperationException("Use " + MemoryFileSystemBuilder.class.getName() + " instead");
+	}
+
+	@Override
+	public MemoryFileSystem getFileSystem(URI uri) {
+		return fileSystemOf(uri);
+	}
+
+	@Override
+	public Path getPath(URI uri) {
+		String path = uri.getPath();
+		if (path == null || !path.startsWith("/")) {
+			throw new IllegalArgumentException("Expected an absolute path in " + uri);
+		}
+		return fileSystemOf(uri).getPath(path);
+	}
+
+	// Reading
+
+	@Override
+	public InputStream newInputStream(Path path, OpenOption... options) throws IOException {
+		for (OpenOption option : options) {
+			checkReadOnly(option);
+		}
+		return new ByteBufferInputStream(contentsOf(MemoryPath.cast(path)));
+	}
+
+	@Override
+	public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs)
+		throws IOException {
+
+		return newFileChannel(path, options, attrs);
+	}
+
+	@Override
+	public FileChannel newFileChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs)
+		throws IOException {
+
+		for (OpenOption option : options) {
+			checkReadOnly(option);
+		}
+		return new MemoryFileChannel(contentsOf(MemoryPath.cast(path)));
+	}
+
+	private static void checkReadOnly(OpenOption option) {
+		if (option == StandardOpenOption.WRITE || option == StandardOpenOption.APPEND
+			|| option == StandardOpenOption.DELETE_ON_CLOSE) {
+			throw new ReadOnlyFileSystemException();
+		}
+	}
+
+	private static ByteBuffer contentsOf(MemoryPath path) throws IOException {
+		int entry = path.existingEntry();
+		if (path.fs.isDirectory(entry)) {
+			throw new FileSystemException(path.toString(), null, "Is a directory");
+		}
+		return path.fs.contents(entry);
+	}
+
+	@Override
+	public DirectoryStream<Path> newDirectoryStream(Path dir, Filter<? super Path> filter) throws IOException {
+		MemoryPath path = MemoryPath.cast(dir);
+		return new MemoryDirectoryStream<>(path, directoryEntry(path), filter, (child, entry) -> child);
+	}
+
+	@Override
+	public DirectoryStream<AttributedPath> newAttributedDirectoryStream(
+		Path dir, Filter<? super Path> filter, LinkOption... options
+	) throws IOException {
+
+		MemoryPath path = MemoryPath.cast(dir);
+		return new MemoryDirectoryStream<>(
+			path, directoryEntry(path), filter,
+			(child, entry) -> new AttributedPath(child, new MemoryAttributes(path.fs, entry))
+		);
+	}
+
+	private static int directoryEntry(MemoryPath path) throws IOException {
+		int entry = path.existingEntry();
+		if (!path.fs.isDirectory(entry)) {
+			throw new NotDirectoryException(path.toString());
+		}
+		return entry;
+	}
+
+	@Override
+	public Path readSymbolicLink(Path link) throws IOException {
+		MemoryPath path = MemoryPath.cast(link);
+		path.existingEntry();
+		throw new NotLinkException(path.toString());
+	}
+
+	@Override
+	public boolean isSameFile(Path path, Path path2) throws IOException {
+		MemoryPath a = MemoryPath.cast(path);
+		if (a.equals(path2)) {
+			return true;
+		}
+
+		if (!(path2 instanceof MemoryPath) || ((MemoryPath) path2).fs != a.fs) {
+			return false;
+		}
+		return a.existingEntry() == ((MemoryPath) path2).existingEntry();
+	}
+
+	@Override
+	public boolean isHidden(Path path) throws IOException {
+		MemoryPath.cast(path).existingEntry();
+		return false;
+	}
+
+	@Override
+	public FileStore getFileStore(Path path) throws IOException {
+		MemoryPath p = MemoryPath.cast(path);
+		p.existingEntry();
+		return p.fs.store();
+	}
+
+	@Override
+	public void checkAccess(Path path, AccessMode... modes) throws IOException {
+		MemoryPath p = MemoryPath.cast(path);
+		p.existingEntry();
+		for (AccessMode mode : modes) {
+			if (mode == AccessMode.WRITE) {
+				throw new AccessDeniedException(p.toString(), null, "Memory filesystems are read-only");
+			}
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
+		MemoryPath p = MemoryPath.cast(path);
+		if (type != BasicFileAttributeView.class) {
+			return null;
+		}
+
+		return (V) new BasicFileAttributeView() {
+			@Override
+			public String name() {
+				return "basic";
+			}
+
+			@Override
+			public BasicFileAttributes readAttributes() throws IOException {
+				return new MemoryAttributes(p.fs, p.existingEntry());
+			}
+
+			@Override
+			public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) {
+				throw new ReadOnlyFileSystemException();
+			}
+		};
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options)
+		throws IOException {
+
+		if (type != BasicFileAttributes.class) {
+			throw new UnsupportedOperationException("Memory filesystems only support BasicFileAttributes");
+		}
+
+		MemoryPath p = MemoryPath.cast(path);
+		return (A) new MemoryAttributes(p.fs, p.existingEntry());
+	}
+
+	@Override
+	public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
+		String names = attributes;
+		int colon = attributes.indexOf(':');
+		if (colon >= 0) {
+			String view = attributes.substring(0, colon);
+			if (!view.equals("basic")) {
+				throw new UnsupportedOperationException("Memory filesystems only support the basic attribute view");
+			}
+			names = attributes.substring(colon + 1);
+		}
+
+		MemoryPath p = MemoryPath.cast(path);
+		BasicFileAttributes attrs = new MemoryAttributes(p.fs, p.existingEntry());
+		List<String> requested = names.equals("*") ? BASIC_ATTRIBUTES : Arrays.asList(names.split(","));
+		Map<String, Object> map = new HashMap<>();
+		for (String name : requested) {
+			map.put(name, basicAttribute(attrs, name));
+		}
+		return map;
+	}
+
+	private static Object basicAttribute(BasicFileAttributes attrs, String name) {
+		switch (name) {
+			case "lastModifiedTime":
+				return attrs.lastModifiedTime();
+			case "lastAccessTime":
+				return attrs.lastAccessTime();
+			case "creationTime":
+				return attrs.creationTime();
+			case "size":
+				return attrs.size();
+			case "isRegularFile":
+				return attrs.isRegularFile();
+			case "isDirectory":
+				return attrs.isDirectory();
+			case "isSymbolicLink":
+				return attrs.isSymbolicLink();
+			case "isOther":
+				return attrs.isOther();
+			case "fileKey":
+				return attrs.fileKey();
+			default:
+				throw new IllegalArgumentException("Unknown basic attribute " + name);
+		}
+	}
+
+	// Writing, which is never allowed
+
+	@Override
+	public OutputStream newOutputStream(Path path, OpenOption... options) {
+		throw new ReadOnlyFileSystemException();
+	}
+
+	@Override
+	public void createDirectory(Path dir, FileAttribute<?>... attrs) {
+		throw new ReadOnlyFileSystemException();
+	}
+
+	@Override
+	public void createSymbolicLink(Path link, Path target, FileAttribute<?>... attrs) {
+		throw new ReadOnlyFileSystemException();
+	}
+
+	@Override
+	public void createLink(Path link, Path existing) {
+		throw new ReadOnlyFileSystemException();
+	}
+
+	@Override
+	public void delete(Path path) {
+		throw new ReadOnlyFileSystemException();
+	}
+
+	@Override
+	public void copy(Path source, Path target, CopyOption... options) {
+		throw new ReadOnlyFileSystemException();
+	}
+
+	@Override
+	public void move(Path source, Path target, CopyOption... options) {
+		throw new ReadOnlyFileSystemException();
+	}
+
+	@Override
+	public void setAttribute(Path path, String attribute, Object value, LinkOption... options) {
+		throw new ReadOnlyFileSystemException();
+	}
+}
@@ -0,0 +1,455 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.memfs;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/** A path in a {@link MemoryFileSystem}, which behaves like a unix path. */
+final class MemoryPath implements Path {
+
+	private static final int UNRESOLVED = -2;
+
+	final MemoryFileSystem fs;
+	/** Never has repeated or trailing slashes, except for the root itself. */
+	final String path;
+	/** The start of each name in the path, computed when first needed. */
+	private int[] offsets;
+	/** The entry of {@link #absolute()}, computed when first needed. The filesystem never changes, so this is always
+	 * valid once computed. */
+	private int entry = UNRESOLVED;
+
+	MemoryPath(MemoryFileSystem fs, String path) {
+		this.fs = fs;
+		this.path = path;
+	}
+
+	/** Removes repeated and trailing slashes, and rejects nul characters. */
+	static String clean(String input) {
+		int nul = input.indexOf('\0');
+		if (nul >= 0) {
+			throw new InvalidPathException(input, "Nul character not allowed", nul);
+		}
+
+		int length = input.length();
+		if (input.indexOf("//") < 0 && (length <= 1 || input.charAt(length - 1) != '/')) {
+			return input;
+		}
+
+		StringBuilder sb = new StringBuilder(length);
+		char previous = 0;
+		for (int i = 0; i < length; i++) {
+			char c = input.charAt(i);
+			if (c != '/' || previous != '/') {
+				sb.append(c);
+			}
+			previous = c;
+		}
+
+		if (sb.length() > 1 && sb.charAt(sb.length() - 1) == '/') {
+			sb.setLength(sb.length() - 1);
+		}
+		return sb.toString();
+	}
+
+	static MemoryPath cast(Path path) {
+		if (path == null) {
+			throw new NullPointerException();
+		}
+
+		if (!(path instanceof MemoryPath)) {
+			throw new ProviderMismatchException();
+		}
+		return (MemoryPath) path;
+	}
+
+	/** @return The index of the entry at this path, or {@link MemoryFileSystem#MISSING}. */
+	int entry() {
+		int entry = this.entry;
+		if (entry == UNRESOLVED) {
+			entry = fs.find(absolute().path);
+			this.entry = entry;
+		}
+		return entry;
+	}
+
+	/** @return The index of the entry at this path.
+	 * @throws NoSuchFileException if there isn't one. */
+	int existingEntry() throws NoSuchFileException {
+		fs.ensureOpen();
+		int entry = entry();
+		if (entry == MemoryFileSystem.MISSING) {
+			throw new NoSuchFileException(path);
+		}
+		return entry;
+	}
+
+	/** @return The normalized absolute form of this path. */
+	MemoryPath absolute() {
+		return toAbsolutePath().normalize();
+	}
+
+	private int[] offsets() {
+		int[] offsets = this.offsets;
+		if (offsets == null) {
+			if (path.equals("/")) {
+				offsets = new int[0];
+			} else {
+				int count = 1;
+				for (int i = 1; i < path.length(); i++) {
+					if (path.charAt(i) == '/') {
+						count++;
+					}
+				}
+
+				offsets = new int[count];
+				int start = path.startsWith("/") ? 1 : 0;
+				for (int i = 0; i < count; i++) {
+					offsets[i] = start;
+					start = path.indexOf('/', start) + 1;
+				}
+			}
+			this.offsets = offsets;
+		}
+		return offsets;
+	}
+
+	private String nameAt(int index) {
+		int[] offsets = offsets();
+		int start = offsets[index];
+		int end = index + 1 < offsets.length ? offsets[index + 1] - 1 : path.length();
+		return path.substring(start, end);
+	}
+
+	private String[] names() {
+		String[] names = new String[getNameCount()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = nameAt(i);
+		}
+		return names;
+	}
+
+	@Override
+	public MemoryFileSystem getFileSystem() {
+		return fs;
+	}
+
+	@Override
+	public boolean isAbsolute() {
+		return path.startsWith("/");
+	}
+
+	@Override
+	public MemoryPath getRoot() {
+		return isAbsolute() ? fs.root : null;
+	}
+
+	@Override
+	public MemoryPath getFileName() {
+		int count = getNameCount();
+		if (count == 0) {
+			return null;
+		}
+
+		if (count == 1 && !isAbsolute()) {
+			return this;
+		}
+		return new MemoryPath(fs, nameAt(count - 1));
+	}
+
+	@Override
+	public MemoryPath getParent() {
+		int count = getNameCount();
+		if (count == 0) {
+			return null;
+		}
+
+		if (count == 1) {
+			return getRoot();
+		}
+		return new MemoryPath(fs, path.substring(0, offsets()[count - 1] - 1));
+	}
+
+	@Override
+	public int getNameCount() {
+		return offsets().length;
+	}
+
+	@Override
+	public MemoryPath getName(int index) {
+		if (index < 0 || index >= getNameCount()) {
+			throw new IllegalArgumentException("Index " + index + " is out of bounds for " + path);
+		}
+		return new MemoryPath(fs, nameAt(index));
+	}
+
+	@Override
+	public MemoryPath subpath(int beginIndex, int endIndex) {
+		int count = getNameCount();
+		if (beginIndex < 0 || beginIndex >= count || endIndex > count || beginIndex >= endIndex) {
+			throw new IllegalArgumentException("Invalid subpath " + beginIndex + ", " + endIndex + " of " + path);
+		}
+
+		int[] offsets = offsets();
+		int start = offsets[beginIndex];
+		int end = endIndex < count ? offsets[endIndex] - 1 : path.length();
+		return new MemoryPath(fs, path.substring(start, end));
+	}
+
+	@Override
+	public boolean startsWith(Path other) {
+		if (!(other instanceof MemoryPath) || ((MemoryPath) other).fs != fs) {
+			return false;
+		}
+
+		String prefix = ((MemoryPath) other).path;
+		if (prefix.isEmpty()) {
+			return path.isEmpty();
+		}
+
+		if (!path.startsWith(prefix)) {
+			return false;
+		}
+		return path.length() == prefix.length() || prefix.equals("/") || path.charAt(prefix.length()) == '/';
+	}
+
+	@Override
+	public boolean startsWith(String other) {
+		return startsWith(new MemoryPath(fs, clean(other)));
+	}
+
+	@Override
+	public boolean endsWith(Path other) {
+		if (!(other instanceof MemoryPath) || ((MemoryPath) other).fs != fs) {
+			return false;
+		}
+
+		MemoryPath suffix = (MemoryPath) other;
+		if (suffix.isAbsolute()) {
+			return path.equals(suffix.path);
+		}
+
+		if (suffix.path.isEmpty()) {
+			return path.isEmpty();
+		}
+
+		if (!path.endsWith(suffix.path)) {
+			return false;
+		}
+		int start = path.length() - suffix.path.length();
+		return start == 0 || path.charAt(start - 1) == '/';
+	}
+
+	@Override
+	public boolean endsWith(String other) {
+		return endsWith(new MemoryPath(fs, clean(other)));
+	}
+
+	@Override
+	public MemoryPath normalize() {
+		String[] names = names();
+		boolean changed = false;
+		for (String name : names) {
+			if (name.equals(".") || name.equals("..")) {
+				changed = true;
+				break;
+			}
+		}
+
+		if (!changed) {
+			return this;
+		}
+
+		List<String> kept = new ArrayList<>(names.length);
+		for (String name : names) {
+			if (name.equals(".")) {
+				continue;
+			}
+
+			if (name.equals("..")) {
+				int last = kept.size() - 1;
+				if (last >= 0 && !kept.get(last).equals("..")) {
+					kept.remove(last);
+					continue;
+				} else if (isAbsolute()) {
+					// The parent of the root is the root
+					continue;
+				}
+			}
+			kept.add(name);
+		}
+
+		String joined = String.join("/", kept);
+		return new MemoryPath(fs, isAbsolute() ? "/" + joined : joined);
+	}
+
+	@Override
+	public MemoryPath resolve(Path other) {
+		MemoryPath o = cast(other);
+		if (o.isAbsolute()) {
+			return o;
+		}
+
+		if (o.path.isEmpty()) {
+			return this;
+		}
+
+		if (path.isEmpty()) {
+			return o;
+		}
+		return new MemoryPath(fs, path.equals("/") ? "/" + o.path : path + "/" + o.path);
+	}
+
+	@Override
+	public MemoryPath resolve(String other) {
+		return resolve(new MemoryPath(fs, clean(other)));
+	}
+
+	/** Resolves a single name, which is already known to be clean. */
+	MemoryPath resolveName(String name) {
+		return new MemoryPath(fs, path.isEmpty() ? name : path.equals("/") ? "/" + name : path + "/" + name);
+	}
+
+	@Override
+	public Path resolveSibling(Path other) {
+		MemoryPath parent = getParent();
+		return parent == null ? cast(other) : parent.resolve(other);
+	}
+
+	@Override
+	public Path resolveSibling(String other) {
+		return resolveSibling(new MemoryPath(fs, clean(other)));
+	}
+
+	@Override
+	public MemoryPath relativize(Path other) {
+		MemoryPath o = cast(other);
+		if (o.isAbsolute() != isAbsolute()) {
+			throw new IllegalArgumentException("'other' is different type of Path");
+		}
+
+		if (o.path.equals(path)) {
+			return new MemoryPath(fs, "");
+		}
+
+		String[] from = path.isEmpty() ? new String[0] : names();
+		String[] to = o.path.isEmpty() ? new String[0] : o.names();
+		int common = 0;
+		while (common < from.length && common < to.length && from[common].equals(to[common])) {
+			common++;
+		}
+
+		List<String> parts = new ArrayList<>();
+		for (int i = common; i < from.length; i++) {
+			parts.add("..");
+		}
+		parts.addAll(Arrays.asList(to).subList(common, to.length));
+		return new MemoryPath(fs, String.join("/", parts));
+	}
+
+	/** Directories end with a slash, like they do for the default filesystem, so relative urls resolve inside them. */
+	@Override
+	public URI toUri() {
+		MemoryPath absolute = absolute();
+		int entry = absolute.entry();
+		if (entry > MemoryFileSystem.ROOT && fs.isDirectory(entry)) {
+			return fs.toUri(absolute.path + "/");
+		}
+		return fs.toUri(absolute.path);
+	}
+
+	@Override
+	public MemoryPath toAbsolutePath() {
+		if (isAbsolute()) {
+			return this;
+		}
+		return new MemoryPath(fs, path.isEmpty() ? "/" : "/" + path);
+	}
+
+	@Override
+	public MemoryPath toRealPath(LinkOption... options) throws IOException {
+		MemoryPath absolute = absolute();
+		absolute.existingEntry();
+		return absolute;
+	}
+
+	@Override
+	public File toFile() {
+		throw new UnsupportedOperationException("Memory filesystem paths aren't files on disk");
+	}
+
+	@Override
+	public WatchKey register(WatchService watcher, WatchEvent.Kind<?>[] events, WatchEvent.Modifier... modifiers) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public WatchKey register(WatchService watcher, WatchEvent.Kind<?>... events) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Iterator<Path> iterator() {
+		List<Path> list = new ArrayList<>();
+		for (int i = 0; i < getNameCount(); i++) {
+			list.add(getName(i));
+		}
+		return list.iterator();
+	}
+
+	@Override
+	public int compareTo(Path other) {
+		return path.compareTo(cast(other).path);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+
+		if (!(obj instanceof MemoryPath)) {
+			return false;
+		}
+
+		MemoryPath other = (MemoryPath) obj;
+		return other.fs == fs && other.path.equals(path);
+	}
+
+	@Override
+	public int hashCode() {
+		return path.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return path;
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.memfs;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.net.InetAddress;
+import java.net.Proxy;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.NoSuchFileException;
+
+import org.quiltmc.boot.urlhandler.RedirectedUrlStreamHandler;
+
+/** Opens urls of a {@link MemoryFileSystemProvider}'s filesystems. Every method is overridden publicly, so the
+ * bootstrap can find them with {@link java.lang.invoke.MethodHandles#publicLookup()}. */
+public final class MemoryUrlStreamHandler extends URLStreamHandler implements RedirectedUrlStreamHandler {
+
+	private final MemoryFileSystemProvider provider;
+	private volatile MethodHandle setUrlHandle;
+
+	MemoryUrlStreamHandler(MemoryFileSystemProvider provider) {
+		this.provider = provider;
+	}
+
+	@Override
+	public void quilt_passSetURL(MethodHandle handle) {
+		setUrlHandle = handle;
+	}
+
+	@Override
+	public URLConnection openConnection(URL u) throws IOException {
+		MemoryPath path;
+		try {
+			path = (MemoryPath) provider.getPath(u.toURI());
+		} catch (URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+			FileNotFoundException error = new FileNotFoundException(u.toString());
+			error.initCause(e);
+			throw error;
+		}
+		return new MemoryUrlConnection(u, path);
+	}
+
+	@Override
+	public URLConnection openConnection(URL u, Proxy p) throws IOException {
+		return openConnection(u);
+	}
+
+	@Override
+	public void parseURL(URL u, String spec, int start, int limit) {
+		super.parseURL(u, spec, start, limit);
+	}
+
+	@Override
+	public int getDefaultPort() {
+		return -1;
+	}
+
+	@Override
+	public boolean equals(URL u1, URL u2) {
+		return super.equals(u1, u2);
+	}
+
+	@Override
+	public int hashCode(URL u) {
+		return super.hashCode(u);
+	}
+
+	@Override
+	public boolean sameFile(URL u1, URL u2) {
+		return super.sameFile(u1, u2);
+	}
+
+	/** The host is the name of a filesystem, not a network address, so this never looks it up. */
+	@Override
+	public InetAddress getHostAddress(URL u) {
+		return null;
+	}
+
+	@Override
+	public boolean hostsEqual(URL u1, URL u2) {
+		String h1 = u1.getHost();
+		String h2 = u2.getHost();
+		return h1 == null ? h2 == null : h1.equalsIgnoreCase(h2);
+	}
+
+	@Override
+	public String toExternalForm(URL u) {
+		return super.toExternalForm(u);
+	}
+
+	@Override
+	public void setURL(
+		URL u, String protocol, String host, int port, String authority, String userInfo, String path, String query,
+		String ref
+	) {
+		MethodHandle setUrlHandle = this.setUrlHandle;
+		if (setUrlHandle == null) {
+			super.setURL(u, protocol, host, port, authority, userInfo, path, query, ref);
+		} else {
+			RedirectedUrlStreamHandler.invokeSetURL(
+				setUrlHandle, u, protocol, host, port, authority, userInfo, path, query, ref
+			);
+		}
+	}
+
+	@Override
+	@Deprecated
+	public void setURL(URL u, String protocol, String host, int port, String file, String ref) {
+		super.setURL(u, protocol, host, port, file, ref);
+	}
+
+	static final class MemoryUrlConnection extends URLConnection {
+		private final MemoryPath path;
+		private int entry = MemoryFileSystem.MISSING;
+
+		MemoryUrlConnection(URL url, MemoryPath path) {
+			super(url);
+			this.path = path;
+		}
+
+		@Override
+		public void connect() throws IOException {
+			if (!connected) {
+				try {
+					entry = path.existingEntry();
+				} catch (NoSuchFileException e) {
+					FileNotFoundException error = new FileNotFoundException(url.toString());
+					error.initCause(e);
+					throw error;
+				}
+
+				if (path.fs.isDirectory(entry)) {
+					throw new FileNotFoundException(url + " is a directory");
+				}
+				connected = true;
+			}
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			connect();
+			return new ByteBufferInputStream(path.fs.contents(entry));
+		}
+
+		@Override
+		public long getContentLengthLong() {
+			try {
+				connect();
+				return path.fs.size(entry);
+			} catch (IOException e) {
+				return -1;
+			}
+		}
+
+		@Override
+		public int getContentLength() {
+			long length = getContentLengthLong();
+			return length > Integer.MAX_VALUE ? -1 : (int) length;
+		}
+
+		@Override
+		public long getLastModified() {
+			return path.fs.time.toMillis();
+		}
+	}
+}
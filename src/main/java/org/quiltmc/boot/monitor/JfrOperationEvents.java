@@ -0,0 +1,228 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.monitor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.quiltmc.boot.BootstrapLog;
+
+/** Emits a "org.quiltmc.boot.Operation" Java Flight Recorder event for every operation which takes longer than the
+ * threshold. The threshold is the default of the event's own threshold setting, so recordings can override it.
+ * <p>
+ * The bootstrap is compiled against java 8, which doesn't have jdk.jfr, so everything is found reflectively and the
+ * event type is created with jdk.jfr.EventFactory. The event type is only created once a recording starts, and is
+ * never created on JVMs without jdk.jfr. */
+final class JfrOperationEvents {
+
+	private static final int FIELD_LETTER = 0;
+	private static final int FIELD_OPERATION = 1;
+	private static final int FIELD_TARGET = 2;
+	private static final int FIELD_OUTCOME = 3;
+
+	private final long thresholdMicros;
+	private final Method getFlightRecorder;
+	private final Method getRecordings;
+	private final Method getState;
+	/** True if at least one recording is running, and the event type has been created. */
+	volatile boolean recording;
+	private volatile EventType eventType;
+	private boolean failed;
+
+	private JfrOperationEvents(long thresholdMicros, Class<?> flightRecorder) throws ReflectiveOperationException {
+		this.thresholdMicros = thresholdMicros;
+		this.getFlightRecorder = flightRecorder.getMethod("getFlightRecorder");
+		this.getRecordings = flightRecorder.getMethod("getRecordings");
+		this.getState = Class.forName("jdk.jfr.Recording").getMethod("getState");
+	}
+
+	/** @return The event emitter, or null if JFR isn't available or events are disabled. */
+	static JfrOperationEvents create(long thresholdMicros) {
+		if (thresholdMicros < 0) {
+			return null;
+		}
+
+		try {
+			Class<?> flightRecorder = Class.forName("jdk.jfr.FlightRecorder");
+			Class<?> listenerClass = Class.forName("jdk.jfr.FlightRecorderListener");
+			JfrOperationEvents events = new JfrOperationEvents(thresholdMicros, flightRecorder);
+
+			Object listener = Proxy.newProxyInstance(
+				JfrOperationEvents.class.getClassLoader(), new Class<?>[] { listenerClass }, (proxy, method, args) -> {
+					switch (method.getName()) {
+						case "recorderInitialized":
+						case "recordingStateChanged":
+							events.updateRecording();
+							return null;
+						case "equals":
+							return proxy == args[0];
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						case "toString":
+							return "QuiltBootstrap JFR listener";
+						default:
+							return null;
+					}
+				}
+			);
+			flightRecorder.getMethod("addListener", listenerClass).invoke(null, listener);
+
+			if ((Boolean) flightRecorder.getMethod("isInitialized").invoke(null)) {
+				events.updateRecording();
+			}
+			return events;
+		} catch (ClassNotFoundException e) {
+			// Not available on this JVM
+			return null;
+		} catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+			BootstrapLog.warn("Unable to listen for JFR recordings", e);
+			return null;
+		}
+	}
+
+	synchronized void updateRecording() {
+		if (failed) {
+			return;
+		}
+
+		try {
+			boolean running = false;
+			for (Object r : (List<?>) getRecordings.invoke(getFlightRecorder.invoke(null))) {
+				if ("RUNNING".equals(String.valueOf(getState.invoke(r)))) {
+					running = true;
+					break;
+				}
+			}
+
+			if (running && eventType == null) {
+				eventType = new EventType(thresholdMicros);
+			}
+			recording = running;
+		} catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+			disable(e);
+		}
+	}
+
+	/** @return A new event which has begun timing, to pass to {@link #end}, or null if nothing is recording. */
+	Object begin() {
+		EventType type = eventType;
+		if (!recording || type == null) {
+			return null;
+		}
+
+		try {
+			Object event = type.newEvent.invokeExact();
+			type.begin.invokeExact(event);
+			return event;
+		} catch (Throwable t) {
+			disable(t);
+			return null;
+		}
+	}
+
+	/** Ends the event, and commits it if it took longer than the threshold. */
+	void end(Object event, char letter, Operation operation, Object target, Throwable error) {
+		EventType type = eventType;
+		try {
+			type.end.invokeExact(event);
+			if (!(boolean) type.shouldCommit.invokeExact(event)) {
+				return;
+			}
+
+			type.set.invokeExact(event, FIELD_LETTER, (Object) String.valueOf(letter));
+			type.set.invokeExact(event, FIELD_OPERATION, (Object) operation.id);
+			type.set.invokeExact(event, FIELD_TARGET, (Object) String.valueOf(target));
+			type.set.invokeExact(event, FIELD_OUTCOME, (Object) (error == null ? "success" : error.getClass().getName()));
+			type.commit.invokeExact(event);
+		} catch (Throwable t) {
+			disable(t);
+		}
+	}
+
+	private synchronized void disable(Throwable t) {
+		if (!failed) {
+			failed = true;
+			recording = false;
+			BootstrapLog.warn("Disabling JFR operation events after an error", t);
+		}
+	}
+
+	private static final class EventType {
+		final MethodHandle newEvent;
+		final MethodHandle begin;
+		final MethodHandle end;
+		final MethodHandle shouldCommit;
+		final MethodHandle set;
+		final MethodHandle commit;
+
+		EventType(long thresholdMicros) throws ReflectiveOperationException {
+			Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+			Class<?> eventClass = Class.forName("jdk.jfr.Event");
+			Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+			Constructor<?> newValue = valueDescriptor.getConstructor(Class.class, String.class, List.class);
+
+			List<Object> annotations = Arrays.asList(
+				annotation("Name", "org.quiltmc.boot.Operation"),
+				annotation("Label", "Quilt Bootstrap Operation"),
+				annotation("Description", "An operation passed from a quilt.*fs filesystem or url to its delegate"),
+				annotation("Category", new String[] { "Quilt", "Bootstrap" }),
+				annotation("Threshold", thresholdMicros + " us")
+			);
+
+			// Indices must match the FIELD_ constants
+			List<Object> fields = new ArrayList<>();
+			fields.add(newValue.newInstance(String.class, "letter", Arrays.asList(annotation("Label", "Letter"))));
+			fields.add(newValue.newInstance(String.class, "operation", Arrays.asList(annotation("Label", "Operation"))));
+			fields.add(newValue.newInstance(String.class, "target", Arrays.asList(annotation("Label", "Path or URL"))));
+			fields.add(newValue.newInstance(String.class, "outcome", Arrays.asList(annotation("Label", "Outcome"))));
+
+			Object factory = eventFactory.getMethod("create", List.class, List.class).invoke(null, annotations, fields);
+
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			newEvent = lookup.findVirtual(eventFactory, "newEvent", MethodType.methodType(eventClass))
+				.bindTo(factory)
+				.asType(MethodType.methodType(Object.class));
+			begin = voidMethod(lookup, eventClass, "begin");
+			end = voidMethod(lookup, eventClass, "end");
+			shouldCommit = lookup.findVirtual(eventClass, "shouldCommit", MethodType.methodType(boolean.class))
+				.asType(MethodType.methodType(boolean.class, Object.class));
+			set = lookup.findVirtual(eventClass, "set", MethodType.methodType(void.class, int.class, Object.class))
+				.asType(MethodType.methodType(void.class, Object.class, int.class, Object.class));
+			commit = voidMethod(lookup, eventClass, "commit");
+		}
+
+		private static MethodHandle voidMethod(MethodHandles.Lookup lookup, Class<?> eventClass, String name)
+			throws ReflectiveOperationException {
+
+			return lookup.findVirtual(eventClass, name, MethodType.methodType(void.class))
+				.asType(MethodType.methodType(void.class, Object.class));
+		}
+
+		private static Object annotation(String name, Object value) throws ReflectiveOperationException {
+			Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+			return annotationElement.getConstructor(Class.class, Object.class)
+				.newInstance(Class.forName("jdk.jfr." + name), value);
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.monitor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** A lock-free latency histogram with power-of-two buckets. Recording never allocates, and is striped by thread so
+ * that threads on different cores rarely write to the same cache line. */
+final class LatencyHistogram {
+
+	/** Bucket 0 holds everything below 2^MIN_SHIFT nanoseconds. */
+	static final int MIN_SHIFT = 6;
+	static final int BUCKETS = 32;
+	private static final int FAILURES = BUCKETS;
+	private static final int TOTAL_NANOS = BUCKETS + 1;
+	private static final int MAX_NANOS = BUCKETS + 2;
+	/** Padded to a multiple of 8 longs, so stripes don't share cache lines. */
+	private static final int STRIDE = 40;
+	private static final int STRIPES = stripeCount();
+
+	private final AtomicLongArray values = new AtomicLongArray(STRIPES * STRIDE);
+
+	private static int stripeCount() {
+		int cpus = Runtime.getRuntime().availableProcessors();
+		int stripes = Integer.highestOneBit(Math.max(1, cpus - 1)) << 1;
+		return Math.min(stripes, 64);
+	}
+
+	static int bucketOf(long nanos) {
+		int bucket = 64 - Long.numberOfLeadingZeros(nanos) - MIN_SHIFT;
+		return bucket < 0 ? 0 : bucket >= BUCKETS ? BUCKETS - 1 : bucket;
+	}
+
+	/** @return The (exclusive) upper bound of the given bucket, in nanoseconds. */
+	static long bucketLimit(int bucket) {
+		return 1L << (bucket + MIN_SHIFT);
+	}
+
+	void record(long nanos, boolean failed) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+
+		int base = ((int) Thread.currentThread().getId() & (STRIPES - 1)) * STRIDE;
+		values.getAndIncrement(base + bucketOf(nanos));
+		values.getAndAdd(base + TOTAL_NANOS, nanos);
+		if (failed) {
+			values.getAndIncrement(base + FAILURES);
+		}
+
+		long max;
+		while ((max = values.get(base + MAX_NANOS)) < nanos) {
+			if (values.compareAndSet(base + MAX_NANOS, max, nanos)) {
+				break;
+			}
+		}
+	}
+
+	OperationStatistics snapshot(char letter, Operation operation) {
+		long[] buckets = new long[BUCKETS];
+		long count = 0;
+		long failures = 0;
+		long total = 0;
+		long max = 0;
+
+		for (int stripe = 0; stripe < STRIPES; stripe++) {
+			int base = stripe * STRIDE;
+			for (int b = 0; b < BUCKETS; b++) {
+				long value = values.get(base + b);
+				buckets[b] += value;
+				count += value;
+			}
+			failures += values.get(base + FAILURES);
+			total += values.get(base + TOTAL_NANOS);
+			max = Math.max(max, values.get(base + MAX_NANOS));
+		}
+
+		return new OperationStatistics(
+			letter, operation.id, count, failures, total, max,
+			percentile(buckets, count, 0.5, max), percentile(buckets, count, 0.9, max),
+			percentile(buckets, count, 0.99, max), percentile(buckets, count, 0.999, max)
+		);
+	}
+
+	/** @return The upper bound of the bucket containing the given quantile, which is never more than the maximum. */
+	private static long percentile(long[] buckets, long count, double quantile, long max) {
+		if (count == 0) {
+			return 0;
+		}
+
+		long target = (long) Math.ceil(count * quantile);
+		long seen = 0;
+		for (int b = 0; b < BUCKETS; b++) {
+			seen += buckets[b];
+			if (seen >= target) {
+				return Math.min(bucketLimit(b), max);
+			}
+		}
+		return max;
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.monitor;
+
+/** Every operation that {@link org.quiltmc.boot.BootFileSystemProvider} and
+ * {@link org.quiltmc.boot.urlhandler.BootUrlStreamHandler} pass on to their delegate. */
+public enum Operation {
+	// FileSystemProvider
+	NEW_FILE_SYSTEM("newFileSystem"),
+	GET_FILE_SYSTEM("getFileSystem"),
+	GET_PATH("getPath"),
+	NEW_INPUT_STREAM("newInputStream"),
+	NEW_OUTPUT_STREAM("newOutputStream"),
+	NEW_FILE_CHANNEL("newFileChannel"),
+	NEW_ASYNCHRONOUS_FILE_CHANNEL("newAsynchronousFileChannel"),
+	NEW_BYTE_CHANNEL("newByteChannel"),
+	NEW_DIRECTORY_STREAM("newDirectoryStream"),
+	NEW_ATTRIBUTED_DIRECTORY_STREAM("newAttributedDirectoryStream"),
+	CREATE_DIRECTORY("createDirectory"),
+	CREATE_SYMBOLIC_LINK("createSymbolicLink"),
+	CREATE_LINK("createLink"),
+	DELETE("delete"),
+	DELETE_IF_EXISTS("deleteIfExists"),
+	READ_SYMBOLIC_LINK("readSymbolicLink"),
+	COPY("copy"),
+	MOVE("move"),
+	IS_SAME_FILE("isSameFile"),
+	IS_HIDDEN("isHidden"),
+	GET_FILE_STORE("getFileStore"),
+	CHECK_ACCESS("checkAccess"),
+	GET_FILE_ATTRIBUTE_VIEW("getFileAttributeView"),
+	READ_ATTRIBUTES("readAttributes"),
+	READ_ATTRIBUTES_MAP("readAttributes(String)"),
+	SET_ATTRIBUTE("setAttribute"),
+
+	// URLStreamHandler
+	URL_OPEN_CONNECTION("url.openConnection"),
+	URL_PARSE_URL("url.parseURL"),
+	URL_GET_DEFAULT_PORT("url.getDefaultPort"),
+	URL_EQUALS("url.equals"),
+	URL_HASH_CODE("url.hashCode"),
+	URL_SAME_FILE("url.sameFile"),
+	URL_GET_HOST_ADDRESS("url.getHostAddress"),
+	URL_HOSTS_EQUAL("url.hostsEqual"),
+	URL_TO_EXTERNAL_FORM("url.toExternalForm"),
+	URL_SET_URL("url.setURL");
+
+	/** The name used in events and metrics. */
+	public final String id;
+
+	Operation(String id) {
+		this.id = id;
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.monitor;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.quiltmc.boot.Bootstrap;
+import org.quiltmc.boot.BootstrapLog;
+
+/** Counts and latency histograms for every operation on every letter, enabled by
+ * {@link Bootstrap#SYSTEM_PROPERTY_METRICS}. Histograms are created the first time a letter uses an operation, after
+ * which recording never allocates or locks. */
+public final class OperationMetrics implements OperationMetricsMXBean {
+
+	public static final String OBJECT_NAME = "org.quiltmc.boot:type=OperationMetrics";
+
+	private static final Operation[] OPERATIONS = Operation.values();
+	private static final OperationMetrics INSTANCE = Boolean.getBoolean(Bootstrap.SYSTEM_PROPERTY_METRICS)
+		? new OperationMetrics()
+		: null;
+
+	private final AtomicReferenceArray<LatencyHistogram> histograms = new AtomicReferenceArray<>(
+		26 * OPERATIONS.length
+	);
+
+	private OperationMetrics() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+		} catch (JMException | RuntimeException e) {
+			BootstrapLog.warn("Unable to register the operation metrics MBean", e);
+		}
+	}
+
+	/** @return The metrics, or null if they are disabled. */
+	public static OperationMetrics get() {
+		return INSTANCE;
+	}
+
+	void record(char letter, Operation operation, long nanos, boolean failed) {
+		int index = (letter - 'a') * OPERATIONS.length + operation.ordinal();
+		LatencyHistogram histogram = histograms.get(index);
+		if (histogram == null) {
+			histogram = new LatencyHistogram();
+			if (!histograms.compareAndSet(index, null, histogram)) {
+				histogram = histograms.get(index);
+			}
+		}
+		histogram.record(nanos, failed);
+	}
+
+	/** @return Statistics for every letter and operation which has been used at least once, ordered by letter and
+	 *         then operation. */
+	public List<OperationStatistics> snapshot() {
+		List<OperationStatistics> list = new ArrayList<>();
+		for (int i = 0; i < histograms.length(); i++) {
+			LatencyHistogram histogram = histograms.get(i);
+			if (histogram != null) {
+				char letter = (char) ('a' + i / OPERATIONS.length);
+				list.add(histogram.snapshot(letter, OPERATIONS[i % OPERATIONS.length]));
+			}
+		}
+		return list;
+	}
+
+	@Override
+	public OperationStatistics[] getOperations() {
+		return snapshot().toArray(new OperationStatistics[0]);
+	}
+
+	@Override
+	public Map<String, Long> getCountsByLetter() {
+		Map<String, Long> counts = new TreeMap<>();
+		for (OperationStatistics stats : snapshot()) {
+			counts.merge(stats.getLetter(), stats.getCount(), Long::sum);
+		}
+		return counts;
+	}
+}
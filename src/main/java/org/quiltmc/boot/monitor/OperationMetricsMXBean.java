@@ -0,0 +1,29 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.monitor;
+
+import java.util.Map;
+
+/** The JMX view of {@link OperationMetrics}, registered as {@link OperationMetrics#OBJECT_NAME}. */
+public interface OperationMetricsMXBean {
+
+	/** @return Statistics for every letter and operation which has been used at least once. */
+	OperationStatistics[] getOperations();
+
+	/** @return The total number of operations on each letter which has been used at least once. */
+	Map<String, Long> getCountsByLetter();
+}
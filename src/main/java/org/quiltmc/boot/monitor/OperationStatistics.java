@@ -0,0 +1,98 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.monitor;
+
+/** A snapshot of the counters and latency histogram for one operation on one letter. Percentiles are the upper
+ * bound of the power-of-two bucket they fall in, so are accurate to within a factor of two. */
+public final class OperationStatistics {
+
+	private final String letter;
+	private final String operation;
+	private final long count;
+	private final long failures;
+	private final long totalNanos;
+	private final long maxNanos;
+	private final long p50Nanos;
+	private final long p90Nanos;
+	private final long p99Nanos;
+	private final long p999Nanos;
+
+	OperationStatistics(
+		char letter, String operation, long count, long failures, long totalNanos, long maxNanos, long p50Nanos,
+		long p90Nanos, long p99Nanos, long p999Nanos
+	) {
+		this.letter = String.valueOf(letter);
+		this.operation = operation;
+		this.count = count;
+		this.failures = failures;
+		this.totalNanos = totalNanos;
+		this.maxNanos = maxNanos;
+		this.p50Nanos = p50Nanos;
+		this.p90Nanos = p90Nanos;
+		this.p99Nanos = p99Nanos;
+		this.p999Nanos = p999Nanos;
+	}
+
+	/** @return The letter of the "quilt.#fs" filesystem. */
+	public String getLetter() {
+		return letter;
+	}
+
+	/** @return The {@link Operation#id} */
+	public String getOperation() {
+		return operation;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	/** @return How many of the operations threw an exception. */
+	public long getFailures() {
+		return failures;
+	}
+
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	public long getP50Nanos() {
+		return p50Nanos;
+	}
+
+	public long getP90Nanos() {
+		return p90Nanos;
+	}
+
+	public long getP99Nanos() {
+		return p99Nanos;
+	}
+
+	public long getP999Nanos() {
+		return p999Nanos;
+	}
+
+	@Override
+	public String toString() {
+		return "quilt." + letter + "fs " + operation + ": count=" + count + ", failures=" + failures + ", p50="
+			+ p50Nanos + "ns, p99=" + p99Nanos + "ns, max=" + maxNanos + "ns";
+	}
+}
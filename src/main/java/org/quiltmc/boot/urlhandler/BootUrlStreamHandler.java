@@ -26,16 +26,20 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLStreamHandler;
 
-import org.quiltmc.boot.Bootstrap;
+import org.quiltmc.boot.DelegateSlot;
+import org.quiltmc.boot.monitor.Operation;
+import org.quiltmc.boot.monitor.OperationRecorder;
 
 public abstract class BootUrlStreamHandler extends URLStreamHandler {
 
 	final char letter;
+	final DelegateSlot slot;
 	// Reference to this::directSetUrl
 	final MethodHandle directSetUrl;
 
 	public BootUrlStreamHandler(char letter) {
 		this.letter = letter;
+		this.slot = DelegateSlot.get(letter);
 		try {
 			MethodType mType = MethodType.methodType(
 				void.class, URL.class, String.class, String.class, int.class, String.class, String.class,
@@ -48,7 +52,7 @@ public abstract class BootUrlStreamHandler extends URLStreamHandler {
 	}
 
 	private DelegateUrlHandler getDelegate() {
-		return Bootstrap.instance().currentLaunch().getUrlStreamHandler(letter);
+		return slot.urlStreamHandler();
 	}
 
 	private DelegateUrlHandler getDelegateOrThrow() throws IOException {
@@ -61,12 +65,14 @@ public abstract class BootUrlStreamHandler extends URLStreamHandler {
 
 	@Override
 	protected URLConnection openConnection(URL u) throws IOException {
-		return getDelegateOrThrow().openConnection(u);
+		DelegateUrlHandler delegate = getDelegateOrThrow();
+		return OperationRecorder.record(letter, Operation.URL_OPEN_CONNECTION, u, () -> delegate.openConnection(u));
 	}
 
 	@Override
 	protected URLConnection openConnection(URL u, Proxy p) throws IOException {
-		return getDelegateOrThrow().openConnection(u, p);
+		DelegateUrlHandler delegate = getDelegateOrThrow();
+		return OperationRecorder.record(letter, Operation.URL_OPEN_CONNECTION, u, () -> delegate.openConnection(u, p));
 	}
 
 	@Override
@@ -76,13 +82,21 @@ public abstract class BootUrlStreamHandler extends URLStreamHandler {
 			super.parseURL(u, spec, start, limit);
 		} else {
 			passDirectSetUrl(delegate);
-			delegate.parseURL(u, spec, start, limit);
+			OperationRecorder.run(
+				letter, Operation.URL_PARSE_URL, spec, () -> delegate.parseURL(u, spec, start, limit)
+			);
 		}
 	}
 
 	private void passDirectSetUrl(DelegateUrlHandler delegate) {
+		MethodHandle passSetURL = delegate.quilt_passSetURL;
+		if (passSetURL == null) {
+			// Released by a relaunch since it was checked
+			return;
+		}
+
 		try {
-			delegate.quilt_passSetURL.invokeExact(directSetUrl);
+			passSetURL.invokeExact(directSetUrl);
 		} catch (Throwable e) {
 			throw DelegateUrlHandler.asUnchecked(e);
 		}
@@ -93,9 +107,9 @@ public abstract class BootUrlStreamHandler extends URLStreamHandler {
 		DelegateUrlHandler delegate = getDelegate();
 		if (delegate == null) {
 			return super.getDefaultPort();
-		} else {
-			return delegate.getDefaultPort();
 		}
+
+		return OperationRecorder.record(letter, Operation.URL_GET_DEFAULT_PORT, null, () -> delegate.getDefaultPort());
 	}
 
 	@Override
@@ -103,9 +117,9 @@ public abstract class BootUrlStreamHandler extends URLStreamHandler {
 		DelegateUrlHandler delegate = getDelegate();
 		if (delegate == null) {
 			return super.equals(u1, u2);
-		} else {
-			return delegate.equals(u1, u2);
 		}
+
+		return OperationRecorder.record(letter, Operation.URL_EQUALS, u1, () -> delegate.equals(u1, u2));
 	}
 
 	@Override
@@ -113,9 +127,9 @@ public abstract class BootUrlStreamHandler extends URLStreamHandler {
 		DelegateUrlHandler delegate = getDelegate();
 		if (delegate == null) {
 			return super.hashCode(u);
-		} else {
-			return delegate.hashCode(u);
 		}
+
+		return OperationRecorder.record(letter, Operation.URL_HASH_CODE, u, () -> delegate.hashCode(u));
 	}
 
 	@Override
@@ -123,19 +137,19 @@ public abstract class BootUrlStreamHandler extends URLStreamHandler {
 		DelegateUrlHandler delegate = getDelegate();
 		if (delegate == null) {
 			return super.sameFile(u1, u2);
-		} else {
-			return delegate.sameFile(u1, u2);
 		}
+
+		return OperationRecorder.record(letter, Operation.URL_SAME_FILE, u1, () -> delegate.sameFile(u1, u2));
 	}
 
 	@Override
-	protected synchronized InetAddress getHostAddress(URL u) {
+	protected InetAddress getHostAddress(URL u) {
 		DelegateUrlHandler delegate = getDelegate();
 		if (delegate == null) {
-			return super.getHostAddress(u);
-		} else {
-			return delegate.getHostAddress(u);
+			return DelegateUrlHandler.resolve(u);
 		}
+
+		return OperationRecorder.record(letter, Operation.URL_GET_HOST_ADDRESS, u, () -> delegate.getHostAddress(u));
 	}
 
 	@Override
@@ -143,9 +157,9 @@ public abstract class BootUrlStreamHandler extends URLStreamHandler {
 		DelegateUrlHandler delegate = getDelegate();
 		if (delegate == null) {
 			return super.hostsEqual(u1, u2);
-		} else {
-			return delegate.hostsEqual(u1, u2);
 		}
+
+		return OperationRecorder.record(letter, Operation.URL_HOSTS_EQUAL, u1, () -> delegate.hostsEqual(u1, u2));
 	}
 
 	@Override
@@ -153,9 +167,11 @@ public abstract class BootUrlStreamHandler extends URLStreamHandler {
 		DelegateUrlHandler delegate = getDelegate();
 		if (delegate == null) {
 			return super.toExternalForm(u);
-		} else {
-			return delegate.toExternalForm(u);
 		}
+
+		return OperationRecorder.record(
+			letter, Operation.URL_TO_EXTERNAL_FORM, u.getFile(), () -> delegate.toExternalForm(u)
+		);
 	}
 
 	@Override
@@ -168,7 +184,9 @@ public abstract class BootUrlStreamHandler extends URLStreamHandler {
 			super.setURL(u, protocol, host, port, authority, userInfo, path, query, ref);
 		} else {
 			passDirectSetUrl(delegate);
-			delegate.setURL(u, protocol, host, port, authority, userInfo, path, query, ref);
+			OperationRecorder.run(
+				letter, Operation.URL_SET_URL, path, () -> delegate.setURL(u, protocol, host, port, authority, userInfo, path, query, ref)
+			);
 		}
 	}
 
@@ -181,7 +199,9 @@ public abstract class BootUrlStreamHandler extends URLStreamHandler {
 			super.setURL(u, protocol, host, port, file, ref);
 		} else {
 			passDirectSetUrl(delegate);
-			delegate.setURL(u, protocol, host, port, file, ref);
+			OperationRecorder.run(
+				letter, Operation.URL_SET_URL, file, () -> delegate.setURL(u, protocol, host, port, file, ref)
+			);
 		}
 	}
 
@@ -18,66 +18,42 @@ package org.quiltmc.boot.urlhandler;
 
 import java.io.IOException;
 import java.lang.invoke.MethodHandle;
-import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodHandles.Lookup;
-import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.net.InetAddress;
 import java.net.Proxy;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLStreamHandler;
+import java.net.UnknownHostException;
+
+import org.quiltmc.boot.Bootstrap;
 
 public final class DelegateUrlHandler extends URLStreamHandler {
 
-	final URLStreamHandler delegate;
-	// Reflected methods
-	final MethodHandle openConnection_URL;
-	final MethodHandle openConnection_URL_Proxy;
-	final MethodHandle parseURL;
-	final MethodHandle getDefaultPort;
-	final MethodHandle equals_URL_URL;
-	final MethodHandle hashCode_URL;
-	final MethodHandle sameFile;
-	final MethodHandle getHostAddress;
-	final MethodHandle hostsEqual;
-	final MethodHandle toExternalForm;
-	final MethodHandle setURL_NEW;
-	final MethodHandle setURL_DEPRECATED;
+	// Not final so they can be dropped by release()
+	URLStreamHandler delegate;
+	/** Calls the delegate's methods. */
+	UrlHandlerAdapter adapter;
 	// Context passing methods
-	final MethodHandle quilt_passSetURL;
+	MethodHandle quilt_passSetURL;
+
+	/** The address {@link #getHostAddress(URL)} found for each url. Like the address the JDK's own handlers store in
+	 * the url, it's kept for as long as the url is. */
+	private final UrlCanonicalCache<InetAddress> hostAddresses = new UrlCanonicalCache<>();
+	/** The external form of each url. Null unless {@link Bootstrap#SYSTEM_PROPERTY_URL_CACHE} is enabled. */
+	private final UrlCanonicalCache<String> externalForms;
 
 	public DelegateUrlHandler(URLStreamHandler delegate, Lookup lookup) {
 		this.delegate = delegate;
+		this.externalForms = Boolean.getBoolean(Bootstrap.SYSTEM_PROPERTY_URL_CACHE) ? new UrlCanonicalCache<>() : null;
 
-		openConnection_URL = lookup(lookup, "openConnection", URLConnection.class, URL.class);
-		if (openConnection_URL == null) {
-			// It's an abstract method, so it's required
-			throw new IllegalArgumentException(
-				"The delegate '" + delegate.getClass() + "' doesn't override the 'openConnection' method?"
-			);
-		}
-		openConnection_URL_Proxy = lookup(lookup, "openConnection", URLConnection.class, URL.class, Proxy.class);
-		parseURL = lookup(lookup, "parseURL", void.class, URL.class, String.class, int.class, int.class);
-		getDefaultPort = lookup(lookup, "getDefaultPort", int.class);
-		equals_URL_URL = lookup(lookup, "equals", boolean.class, URL.class, URL.class);
-		hashCode_URL = lookup(lookup, "hashCode", int.class, URL.class);
-		sameFile = lookup(lookup, "sameFile", boolean.class, URL.class, URL.class);
-		getHostAddress = lookup(lookup, "getHostAddress", InetAddress.class, URL.class);
-		hostsEqual = lookup(lookup, "hostsEqual", boolean.class, URL.class, URL.class);
-		toExternalForm = lookup(lookup, "toExternalForm", String.class, URL.class);
-		setURL_NEW = lookup(
-			lookup, "setURL", void.class, URL.class, String.class, String.class, int.class, String.class,
-			String.class, String.class, String.class, String.class
-		);
-		setURL_DEPRECATED = lookup(
-			lookup, "setURL", void.class, URL.class, String.class, String.class, int.class, String.class, String.class
-		);
-
-		quilt_passSetURL = lookup(lookup, "quilt_passSetURL", void.class, MethodHandle.class);
+		UrlHandlerAdapter adapter = UrlHandlerAdapters.create(delegate, lookup);
+		this.adapter = adapter;
+		quilt_passSetURL = adapter.quilt_passSetURL;
 
 		if (quilt_passSetURL == null) {
-			if (parseURL != null || setURL_NEW != null || setURL_DEPRECATED != null) {
+			if (adapter.parseURL != null || adapter.setURL_NEW != null || adapter.setURL_DEPRECATED != null) {
 				throw new Error(
 					"Either parseURL or setURL has been overriden without adding a 'void quilt_passSetURL(MethodHandle handle)' method!\n(In "
 						+ delegate.getClass() + ")"
@@ -86,32 +62,27 @@ public final class DelegateUrlHandler extends URLStreamHandler {
 		}
 	}
 
-	private MethodHandle lookup(Lookup lookup, String methodName, Class<?> returnType, Class<?>... argTypes) {
-
-		boolean isPublicLookup = false;
-
-		if (lookup == null) {
-			isPublicLookup = true;
-			lookup = MethodHandles.publicLookup();
-		}
-
-		MethodType type = MethodType.methodType(returnType, argTypes);
+	/** @return The handler this delegates to, or null if it has been {@link #release() released}. */
+	public URLStreamHandler delegate() {
+		return delegate;
+	}
 
-		try {
-			return lookup
-				.findVirtual(delegate.getClass(), methodName, type)
-				.bindTo(delegate);
+	/** Drops the delegate and every method handle bound to it, so a stale reference to this handler can't keep the
+	 * delegate's class loader alive. Afterwards every method behaves like a plain {@link URLStreamHandler}, except
+	 * {@link #openConnection(URL)} which throws an {@link IOException}. */
+	public void release() {
+		delegate = null;
+		adapter = null;
+		quilt_passSetURL = null;
+		invalidateCache();
+	}
 
-		} catch (NoSuchMethodException ignored) {
-			return null;
-		} catch (IllegalAccessException e) {
-			String msg = "Unable to reflect " + methodName + type + " because ";
-			if (isPublicLookup) {
-				msg += "it is not public! Try changing the method to public, or pass a privileged lookup to BootstrapContext.putFileSystemProvider!";
-			} else {
-				msg += "the lookup " + lookup + " doesn't have access to it!";
-			}
-			throw new IllegalArgumentException(msg, e);
+	/** Forgets every url cached since {@link Bootstrap#SYSTEM_PROPERTY_URL_CACHE} was enabled, since the results
+	 * belong to the delegate which computed them. */
+	public void invalidateCache() {
+		hostAddresses.clear();
+		if (externalForms != null) {
+			externalForms.clear();
 		}
 	}
 
@@ -139,130 +110,141 @@ public final class DelegateUrlHandler extends URLStreamHandler {
 
 	@Override
 	protected URLConnection openConnection(URL u) throws IOException {
-		try {
-			return (URLConnection) openConnection_URL.invokeExact(u);
-		} catch (Throwable e) {
-			throw asIOException(e);
+		UrlHandlerAdapter adapter = this.adapter;
+		if (adapter == null) {
+			throw new IOException("The handler for " + u + " has been released by a relaunch");
 		}
+		return adapter.openConnection(u);
 	}
 
 	@Override
 	protected URLConnection openConnection(URL u, Proxy p) throws IOException {
-		if (openConnection_URL_Proxy == null) {
+		UrlHandlerAdapter adapter = this.adapter;
+		if (adapter == null || adapter.openConnection_URL_Proxy == null) {
 			return super.openConnection(u, p);
 		}
-
-		try {
-			return (URLConnection) openConnection_URL_Proxy.invokeExact(u, p);
-		} catch (Throwable e) {
-			throw asIOException(e);
-		}
+		return adapter.openConnection(u, p);
 	}
 
 	@Override
 	protected void parseURL(URL u, String spec, int start, int limit) {
-		if (parseURL == null) {
+		UrlHandlerAdapter adapter = this.adapter;
+		if (adapter == null || adapter.parseURL == null) {
 			super.parseURL(u, spec, start, limit);
-			return;
-		}
-
-		try {
-			parseURL.invokeExact(u, spec, start, limit);
-			return;
-		} catch (Throwable e) {
-			throw asUnchecked(e);
+		} else {
+			adapter.parseURL(u, spec, start, limit);
 		}
 	}
 
 	@Override
 	protected int getDefaultPort() {
-		if (getDefaultPort == null) {
+		UrlHandlerAdapter adapter = this.adapter;
+		if (adapter == null || adapter.getDefaultPort == null) {
 			return super.getDefaultPort();
 		}
-
-		try {
-			return (int) getDefaultPort.invokeExact();
-		} catch (Throwable e) {
-			throw asUnchecked(e);
-		}
+		return adapter.getDefaultPort();
 	}
 
 	@Override
 	protected boolean equals(URL u1, URL u2) {
-		if (equals_URL_URL == null) {
-			return super.equals(u1, u2);
+		if (u1 == u2 && externalForms != null) {
+			return true;
 		}
 
-		try {
-			return (boolean) equals_URL_URL.invokeExact(u1, u2);
-		} catch (Throwable e) {
-			throw asUnchecked(e);
+		UrlHandlerAdapter adapter = this.adapter;
+		if (adapter == null || adapter.equals_URL_URL == null) {
+			return super.equals(u1, u2);
 		}
+		return adapter.equals(u1, u2);
 	}
 
+	/** Not cached, since {@link URL#hashCode()} already only calls this once for each url. */
 	@Override
 	protected int hashCode(URL u) {
-		if (hashCode_URL == null) {
+		UrlHandlerAdapter adapter = this.adapter;
+		if (adapter == null || adapter.hashCode_URL == null) {
 			return super.hashCode(u);
 		}
-
-		try {
-			return (int) hashCode_URL.invokeExact(u);
-		} catch (Throwable e) {
-			throw asUnchecked(e);
-		}
+		return adapter.hashCode(u);
 	}
 
 	@Override
 	protected boolean sameFile(URL u1, URL u2) {
-		if (sameFile == null) {
+		UrlHandlerAdapter adapter = this.adapter;
+		if (adapter == null || adapter.sameFile == null) {
 			return super.sameFile(u1, u2);
 		}
+		return adapter.sameFile(u1, u2);
+	}
 
-		try {
-			return (boolean) sameFile.invokeExact(u1, u2);
-		} catch (Throwable e) {
-			throw asUnchecked(e);
+	/** Not synchronized (unlike {@link URLStreamHandler#getHostAddress(URL)} on java 8), since the JDK reaches this
+	 * from {@link URL#equals(Object)} and {@link URL#hashCode()}. The address is cached for each url, and every url
+	 * (even one without a host) is passed to the delegate if it overrides this. */
+	@Override
+	protected InetAddress getHostAddress(URL u) {
+		InetAddress address = hostAddresses.get(u);
+		if (address != null) {
+			return address;
+		}
+
+		UrlHandlerAdapter adapter = this.adapter;
+		if (adapter == null || adapter.getHostAddress == null) {
+			address = resolve(u);
+		} else {
+			address = adapter.getHostAddress(u);
+		}
+
+		// Failed lookups aren't cached, since they might work later
+		if (address != null) {
+			hostAddresses.put(u, address);
 		}
+		return address;
 	}
 
-	@Override
-	protected synchronized InetAddress getHostAddress(URL u) {
-		if (getHostAddress == null) {
-			return super.getHostAddress(u);
+	/** The same lookup as {@link URLStreamHandler#getHostAddress(URL)}, but without locking. */
+	static InetAddress resolve(URL u) {
+		String host = u.getHost();
+		if (host == null || host.isEmpty()) {
+			return null;
 		}
 
 		try {
-			return (InetAddress) getHostAddress.invokeExact(u);
-		} catch (Throwable e) {
-			throw asUnchecked(e);
+			return InetAddress.getByName(host);
+		} catch (UnknownHostException | SecurityException e) {
+			return null;
 		}
 	}
 
 	@Override
 	protected boolean hostsEqual(URL u1, URL u2) {
-		if (hostsEqual == null) {
+		UrlHandlerAdapter adapter = this.adapter;
+		if (adapter == null || adapter.hostsEqual == null) {
 			return super.hostsEqual(u1, u2);
 		}
-
-		try {
-			return (boolean) hostsEqual.invokeExact(u1, u2);
-		} catch (Throwable e) {
-			throw asUnchecked(e);
-		}
+		return adapter.hostsEqual(u1, u2);
 	}
 
 	@Override
 	protected String toExternalForm(URL u) {
-		if (toExternalForm == null) {
-			return super.toExternalForm(u);
+		UrlCanonicalCache<String> cache = externalForms;
+		if (cache == null) {
+			return toExternalForm0(u);
 		}
 
-		try {
-			return (String) toExternalForm.invokeExact(u);
-		} catch (Throwable e) {
-			throw asUnchecked(e);
+		String form = cache.get(u);
+		if (form == null) {
+			form = toExternalForm0(u);
+			cache.put(u, form);
 		}
+		return form;
+	}
+
+	private String toExternalForm0(URL u) {
+		UrlHandlerAdapter adapter = this.adapter;
+		if (adapter == null || adapter.toExternalForm == null) {
+			return super.toExternalForm(u);
+		}
+		return adapter.toExternalForm(u);
 	}
 
 	@Override
@@ -270,32 +252,22 @@ public final class DelegateUrlHandler extends URLStreamHandler {
 		URL u, String protocol, String host, int port, String authority, String userInfo, String path, String query,
 		String ref
 	) {
-		if (setURL_NEW == null) {
+		UrlHandlerAdapter adapter = this.adapter;
+		if (adapter == null || adapter.setURL_NEW == null) {
 			super.setURL(u, protocol, host, port, authority, userInfo, path, query, ref);
-			return;
-		}
-
-		try {
-			setURL_NEW.invokeExact(u, protocol, host, port, authority, userInfo, path, query, ref);
-			return;
-		} catch (Throwable e) {
-			throw asUnchecked(e);
+		} else {
+			adapter.setURL(u, protocol, host, port, authority, userInfo, path, query, ref);
 		}
 	}
 
 	@Override
 	@Deprecated
 	protected void setURL(URL u, String protocol, String host, int port, String file, String ref) {
-		if (setURL_DEPRECATED == null) {
+		UrlHandlerAdapter adapter = this.adapter;
+		if (adapter == null || adapter.setURL_DEPRECATED == null) {
 			super.setURL(u, protocol, host, port, file, ref);
-			return;
-		}
-
-		try {
-			setURL_DEPRECATED.invokeExact(u, protocol, host, port, file, ref);
-			return;
-		} catch (Throwable e) {
-			throw asUnchecked(e);
+		} else {
+			adapter.setURL(u, protocol, host, port, file, ref);
 		}
 	}
 }
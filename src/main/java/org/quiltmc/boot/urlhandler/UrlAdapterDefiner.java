@@ -0,0 +1,45 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.urlhandler;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.reflect.Method;
+
+/** Defines the classes {@link UrlHandlerAdapters} generates in the package of the delegate they call. The jar has a
+ * java 15 version of this class which prefers hidden classes; this one is used on older versions, and when running from
+ * a plain classes directory. Java 8 can't define classes in another loader, so nothing is defined there. */
+final class UrlAdapterDefiner {
+
+	private UrlAdapterDefiner() {}
+
+	/** @param lookup The lookup passed to putFileSystemProvider, or null.
+	 * @return The defined class, or null if it can't be defined. */
+	static Class<?> define(Class<?> host, Lookup lookup, byte[] bytes) throws ReflectiveOperationException {
+		Method privateLookupIn;
+		Method defineClass;
+		try {
+			privateLookupIn = MethodHandles.class.getMethod("privateLookupIn", Class.class, Lookup.class);
+			defineClass = Lookup.class.getMethod("defineClass", byte[].class);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+
+		Lookup hostLookup = (Lookup) privateLookupIn.invoke(null, host, MethodHandles.lookup());
+		return (Class<?>) defineClass.invoke(hostLookup, (Object) bytes);
+	}
+}
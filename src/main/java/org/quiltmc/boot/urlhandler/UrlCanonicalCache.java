@@ -0,0 +1,110 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.urlhandler;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Remembers something a {@link DelegateUrlHandler} computed for each url it has been asked about, so repeated calls
+ * don't go back through the delegate. Urls are held weakly and compared by identity, since their own equals and
+ * hashCode would call back into the handler. Looking a url up doesn't allocate anything. */
+final class UrlCanonicalCache<V> {
+
+	/** Reused by each thread to look urls up, rather than creating a new weak reference for every lookup. */
+	private static final ThreadLocal<Probe> PROBE = ThreadLocal.withInitial(Probe::new);
+
+	private final ReferenceQueue<URL> queue = new ReferenceQueue<>();
+	private final Map<Object, V> entries = new ConcurrentHashMap<>();
+
+	/** @return The value cached for the url, or null if there isn't one. */
+	V get(URL url) {
+		Probe probe = PROBE.get();
+		probe.url = url;
+		probe.hash = System.identityHashCode(url);
+		try {
+			return entries.get(probe);
+		} finally {
+			probe.url = null;
+		}
+	}
+
+	void put(URL url, V value) {
+		expunge();
+		entries.put(new Key(url, queue), value);
+	}
+
+	void clear() {
+		entries.clear();
+		while (queue.poll() != null) {
+			// Nothing to remove
+		}
+	}
+
+	private void expunge() {
+		Reference<? extends URL> ref;
+		while ((ref = queue.poll()) != null) {
+			entries.remove(ref);
+		}
+	}
+
+	private static final class Key extends WeakReference<URL> {
+		/** Kept since the url can be cleared, while the key still needs to be found to remove it. */
+		private final int hash;
+
+		Key(URL url, ReferenceQueue<URL> queue) {
+			super(url, queue);
+			this.hash = System.identityHashCode(url);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+
+			URL url = get();
+			if (obj instanceof Probe) {
+				return url != null && url == ((Probe) obj).url;
+			}
+			return obj instanceof Key && url != null && url == ((Key) obj).get();
+		}
+	}
+
+	private static final class Probe {
+		URL url;
+		int hash;
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Key && url != null && url == ((Key) obj).get();
+		}
+	}
+}
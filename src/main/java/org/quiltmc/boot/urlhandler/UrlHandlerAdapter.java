@@ -0,0 +1,173 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.urlhandler;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.net.InetAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+
+/** Calls the methods of the {@link URLStreamHandler} that a {@link DelegateUrlHandler} delegates to.
+ * <p>
+ * This class calls each method through a {@link MethodHandle}, which the JIT can't inline as the handles aren't
+ * constants. Where it can, {@link UrlHandlerAdapters} generates a subclass for each delegate class which calls the
+ * methods that class overrides directly instead. Those subclasses are defined in the delegate's package, which is why
+ * this class is public, but it isn't meant to be used or extended by anything else. */
+public class UrlHandlerAdapter {
+
+	// Null if the delegate doesn't override the method, so DelegateUrlHandler needs to call its own
+	final MethodHandle openConnection_URL;
+	final MethodHandle openConnection_URL_Proxy;
+	final MethodHandle parseURL;
+	final MethodHandle getDefaultPort;
+	final MethodHandle equals_URL_URL;
+	final MethodHandle hashCode_URL;
+	final MethodHandle sameFile;
+	final MethodHandle getHostAddress;
+	final MethodHandle hostsEqual;
+	final MethodHandle toExternalForm;
+	final MethodHandle setURL_NEW;
+	final MethodHandle setURL_DEPRECATED;
+
+	// Context passing method
+	final MethodHandle quilt_passSetURL;
+
+	protected UrlHandlerAdapter(URLStreamHandler delegate, Lookup lookup) {
+		UrlHandlerAdapters.Methods methods = UrlHandlerAdapters.methods(delegate.getClass(), lookup);
+		MethodHandle[] slots = methods.slots;
+		openConnection_URL = bind(slots[0], delegate);
+		openConnection_URL_Proxy = bind(slots[1], delegate);
+		parseURL = bind(slots[2], delegate);
+		getDefaultPort = bind(slots[3], delegate);
+		equals_URL_URL = bind(slots[4], delegate);
+		hashCode_URL = bind(slots[5], delegate);
+		sameFile = bind(slots[6], delegate);
+		getHostAddress = bind(slots[7], delegate);
+		hostsEqual = bind(slots[8], delegate);
+		toExternalForm = bind(slots[9], delegate);
+		setURL_NEW = bind(slots[10], delegate);
+		setURL_DEPRECATED = bind(slots[11], delegate);
+		quilt_passSetURL = bind(methods.passSetURL, delegate);
+	}
+
+	private static MethodHandle bind(MethodHandle handle, URLStreamHandler delegate) {
+		return handle == null ? null : handle.bindTo(delegate);
+	}
+
+	public URLConnection openConnection(URL u) throws IOException {
+		try {
+			return (URLConnection) openConnection_URL.invokeExact(u);
+		} catch (Throwable e) {
+			throw DelegateUrlHandler.asIOException(e);
+		}
+	}
+
+	public URLConnection openConnection(URL u, Proxy p) throws IOException {
+		try {
+			return (URLConnection) openConnection_URL_Proxy.invokeExact(u, p);
+		} catch (Throwable e) {
+			throw DelegateUrlHandler.asIOException(e);
+		}
+	}
+
+	public void parseURL(URL u, String spec, int start, int limit) {
+		try {
+			parseURL.invokeExact(u, spec, start, limit);
+		} catch (Throwable e) {
+			throw DelegateUrlHandler.asUnchecked(e);
+		}
+	}
+
+	public int getDefaultPort() {
+		try {
+			return (int) getDefaultPort.invokeExact();
+		} catch (Throwable e) {
+			throw DelegateUrlHandler.asUnchecked(e);
+		}
+	}
+
+	public boolean equals(URL u1, URL u2) {
+		try {
+			return (boolean) equals_URL_URL.invokeExact(u1, u2);
+		} catch (Throwable e) {
+			throw DelegateUrlHandler.asUnchecked(e);
+		}
+	}
+
+	public int hashCode(URL u) {
+		try {
+			return (int) hashCode_URL.invokeExact(u);
+		} catch (Throwable e) {
+			throw DelegateUrlHandler.asUnchecked(e);
+		}
+	}
+
+	public boolean sameFile(URL u1, URL u2) {
+		try {
+			return (boolean) sameFile.invokeExact(u1, u2);
+		} catch (Throwable e) {
+			throw DelegateUrlHandler.asUnchecked(e);
+		}
+	}
+
+	public InetAddress getHostAddress(URL u) {
+		try {
+			return (InetAddress) getHostAddress.invokeExact(u);
+		} catch (Throwable e) {
+			throw DelegateUrlHandler.asUnchecked(e);
+		}
+	}
+
+	public boolean hostsEqual(URL u1, URL u2) {
+		try {
+			return (boolean) hostsEqual.invokeExact(u1, u2);
+		} catch (Throwable e) {
+			throw DelegateUrlHandler.asUnchecked(e);
+		}
+	}
+
+	public String toExternalForm(URL u) {
+		try {
+			return (String) toExternalForm.invokeExact(u);
+		} catch (Throwable e) {
+			throw DelegateUrlHandler.asUnchecked(e);
+		}
+	}
+
+	public void setURL(
+		URL u, String protocol, String host, int port, String authority, String userInfo, String path, String query,
+		String ref
+	) {
+		try {
+			setURL_NEW.invokeExact(u, protocol, host, port, authority, userInfo, path, query, ref);
+		} catch (Throwable e) {
+			throw DelegateUrlHandler.asUnchecked(e);
+		}
+	}
+
+	public void setURL(URL u, String protocol, String host, int port, String file, String ref) {
+		try {
+			setURL_DEPRECATED.invokeExact(u, protocol, host, port, file, ref);
+		} catch (Throwable e) {
+			throw DelegateUrlHandler.asUnchecked(e);
+		}
+	}
+}
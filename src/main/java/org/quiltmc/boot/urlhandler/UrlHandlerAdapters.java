@@ -0,0 +1,470 @@
+/*
+ * Copyright 2024 QuiltMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.quiltmc.boot.urlhandler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.InetAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.quiltmc.boot.Bootstrap;
+import org.quiltmc.boot.BootstrapLog;
+
+/** Generates a subclass of {@link UrlHandlerAdapter} for each delegate class, which calls the methods the delegate
+ * overrides with plain invokevirtual instructions rather than method handles, so the JIT can inline them.
+ * <p>
+ * A method can only be called directly if the generated class (which lives in the delegate's package) has access to
+ * it, so methods inherited from another package still go through method handles. The class is defined as a hidden
+ * class when the lookup passed to putFileSystemProvider allows it, and through {@link Lookup#defineClass(byte[])}
+ * otherwise (see {@link UrlAdapterDefiner}). On java 8 nothing is generated. */
+final class UrlHandlerAdapters {
+
+	private static final String SUFFIX = "$$QuiltUrlAdapter";
+	private static final String SUPER_NAME = UrlHandlerAdapter.class.getName().replace('.', '/');
+	private static final String CONSTRUCTOR_DESCRIPTOR = MethodType
+		.methodType(void.class, URLStreamHandler.class, Lookup.class).toMethodDescriptorString();
+
+	/** Every method {@link UrlHandlerAdapter} calls, which have the same name and type in both classes, in the same
+	 * order as its fields. */
+	private static final Slot[] SLOTS = {
+		new Slot("openConnection", URLConnection.class, URL.class),
+		new Slot("openConnection", URLConnection.class, URL.class, Proxy.class),
+		new Slot("parseURL", void.class, URL.class, String.class, int.class, int.class),
+		new Slot("getDefaultPort", int.class),
+		new Slot("equals", boolean.class, URL.class, URL.class),
+		new Slot("hashCode", int.class, URL.class),
+		new Slot("sameFile", boolean.class, URL.class, URL.class),
+		new Slot("getHostAddress", InetAddress.class, URL.class),
+		new Slot("hostsEqual", boolean.class, URL.class, URL.class),
+		new Slot("toExternalForm", String.class, URL.class),
+		new Slot(
+			"setURL", void.class, URL.class, String.class, String.class, int.class, String.class, String.class,
+			String.class, String.class, String.class
+		),
+		new Slot("setURL", void.class, URL.class, String.class, String.class, int.class, String.class, String.class),
+	};
+
+	private static final Slot PASS_SET_URL = new Slot("quilt_passSetURL", void.class, MethodHandle.class);
+
+	private static final ClassValue<Holder> HOLDERS = new ClassValue<Holder>() {
+		@Override
+		protected Holder computeValue(Class<?> type) {
+			return new Holder(type);
+		}
+	};
+
+	private UrlHandlerAdapters() {}
+
+	/** @param lookup The lookup passed to putFileSystemProvider, or null.
+	 * @return An adapter for the given delegate, which is a generated subclass if one could be made. */
+	static UrlHandlerAdapter create(URLStreamHandler delegate, Lookup lookup) {
+		if ("false".equals(System.getProperty(Bootstrap.SYSTEM_PROPERTY_URL_ADAPTERS))) {
+			return new UrlHandlerAdapter(delegate, lookup);
+		}
+
+		Constructor<? extends UrlHandlerAdapter> constructor = HOLDERS.get(delegate.getClass()).constructor(lookup);
+		if (constructor == null) {
+			return new UrlHandlerAdapter(delegate, lookup);
+		}
+
+		try {
+			return constructor.newInstance(delegate, lookup);
+		} catch (InvocationTargetException e) {
+			throw DelegateUrlHandler.asUnchecked(e.getCause());
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Unable to construct " + constructor.getDeclaringClass(), e);
+		}
+	}
+
+	/** @param lookup The lookup passed to putFileSystemProvider, or null.
+	 * @return The handles of the methods the delegate class overrides, for that lookup. */
+	static Methods methods(Class<?> host, Lookup lookup) {
+		return HOLDERS.get(host).methods(lookup == null ? MethodHandles.publicLookup() : lookup, lookup == null);
+	}
+
+	/** Unbound handles for the methods of one delegate class, found through one lookup. */
+	static final class Methods {
+		final Class<?> lookupClass;
+		final int lookupModes;
+		/** In the same order as {@link UrlHandlerAdapters#SLOTS}. Null where the delegate doesn't override the
+		 * method. */
+		final MethodHandle[] slots;
+		/** Null if the delegate doesn't implement {@link RedirectedUrlStreamHandler}. */
+		final MethodHandle passSetURL;
+
+		Methods(Class<?> host, Lookup lookup, boolean isPublicLookup) {
+			this.lookupClass = lookup.lookupClass();
+			this.lookupModes = lookup.lookupModes();
+			this.slots = new MethodHandle[SLOTS.length];
+			for (int i = 0; i < SLOTS.length; i++) {
+				Slot slot = SLOTS[i];
+				if (findOverride(host, slot) != null) {
+					slots[i] = find(host, lookup, isPublicLookup, slot);
+				}
+			}
+
+			if (slots[0] == null) {
+				// It's an abstract method, so it's required
+				throw new IllegalArgumentException(
+					"The delegate '" + host + "' doesn't override the 'openConnection' method?"
+				);
+			}
+
+			boolean hasPassSetURL = findOverride(host, PASS_SET_URL) != null;
+			// Or a default method in an interface
+			for (Method method : host.getMethods()) {
+				hasPassSetURL |= PASS_SET_URL.matches(method);
+			}
+			this.passSetURL = hasPassSetURL ? find(host, lookup, isPublicLookup, PASS_SET_URL) : null;
+		}
+
+		boolean matches(Lookup lookup) {
+			return lookup.lookupClass() == lookupClass && lookup.lookupModes() == lookupModes;
+		}
+
+		private static MethodHandle find(Class<?> host, Lookup lookup, boolean isPublicLookup, Slot slot) {
+			try {
+				return lookup.findVirtual(host, slot.name, slot.type);
+			} catch (NoSuchMethodException ignored) {
+				return null;
+			} catch (IllegalAccessException e) {
+				String msg = "Unable to reflect " + slot.name + slot.type + " because ";
+				if (isPublicLookup) {
+					msg += "it is not public! Try changing the method to public, or pass a privileged lookup to BootstrapContext.putFileSystemProvider!";
+				} else {
+					msg += "the lookup " + lookup + " doesn't have access to it!";
+				}
+				throw new IllegalArgumentException(msg, e);
+			}
+		}
+	}
+
+	/** The generated class and method handles for one delegate class. The class is only generated once even if several
+	 * threads ask for it at the same time. */
+	private static final class Holder {
+		private final Class<?> host;
+		private boolean generated;
+		private Constructor<? extends UrlHandlerAdapter> constructor;
+		private final List<Methods> methods = new ArrayList<>(1);
+
+		Holder(Class<?> host) {
+			this.host = host;
+		}
+
+		synchronized Methods methods(Lookup lookup, boolean isPublicLookup) {
+			for (Methods cached : methods) {
+				if (cached.matches(lookup)) {
+					return cached;
+				}
+			}
+
+			Methods found = new Methods(host, lookup, isPublicLookup);
+			// The holder lives as long as the delegate class, so it mustn't keep a lookup class from another loader alive
+			if (isPublicLookup || lookup.lookupClass().getClassLoader() == host.getClassLoader()) {
+				methods.add(found);
+			}
+			return found;
+		}
+
+		synchronized Constructor<? extends UrlHandlerAdapter> constructor(Lookup lookup) {
+			if (!generated) {
+				generated = true;
+				try {
+					constructor = generate(host, lookup);
+				} catch (LinkageError | ReflectiveOperationException e) {
+					BootstrapLog.warn(
+						"Unable to generate a url handler adapter for " + host
+							+ ", it will be called through method handles instead", e
+					);
+				}
+			}
+			return constructor;
+		}
+	}
+
+	private static Constructor<? extends UrlHandlerAdapter> generate(Class<?> host, Lookup lookup)
+		throws ReflectiveOperationException {
+
+		List<Slot> direct = new ArrayList<>();
+		for (Slot slot : SLOTS) {
+			if (isDirect(host, slot)) {
+				direct.add(slot);
+			}
+		}
+
+		// The generated class refers to the delegate class by name, so that name has to find the same class
+		ClassLoader loader = host.getClassLoader();
+		if (direct.isEmpty() || loader == null || Class.forName(host.getName(), false, loader) != host) {
+			return null;
+		}
+
+		String name = host.getName() + SUFFIX;
+		Class<?> cls = UrlAdapterDefiner.define(host, lookup, write(name, host, direct));
+		// If the delegate's class loader has its own copy of this library the generated class won't extend ours
+		if (cls == null || cls.getSuperclass() != UrlHandlerAdapter.class) {
+			return null;
+		}
+
+		return cls.asSubclass(UrlHandlerAdapter.class).getConstructor(URLStreamHandler.class, Lookup.class);
+	}
+
+	/** @return True if the generated class can call the delegate's own implementation of the slot directly. */
+	private static boolean isDirect(Class<?> host, Slot slot) {
+		// Not overridden, so the DelegateUrlHandler calls its own version
+		Method method = findOverride(host, slot);
+		if (method == null) {
+			return false;
+		}
+
+		int modifiers = method.getModifiers();
+		if (Modifier.isPrivate(modifiers) || Modifier.isStatic(modifiers)) {
+			// The JVM would pick this over the inherited method
+			return false;
+		}
+
+		Class<?> c = method.getDeclaringClass();
+		if (Modifier.isPublic(modifiers) && Modifier.isPublic(c.getModifiers())) {
+			return true;
+		}
+
+		return c.getClassLoader() == host.getClassLoader() && packageOf(c).equals(packageOf(host));
+	}
+
+	/** @return The first method matching the slot declared by the host or one of its superclasses below
+	 *         {@link URLStreamHandler}, or null if there isn't one. */
+	private static Method findOverride(Class<?> host, Slot slot) {
+		for (Class<?> c = host; c != URLStreamHandler.class && c != null; c = c.getSuperclass()) {
+			for (Method method : c.getDeclaredMethods()) {
+				if (slot.matches(method)) {
+					return method;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static String packageOf(Class<?> c) {
+		String name = c.getName();
+		int index = name.lastIndexOf('.');
+		return index < 0 ? "" : name.substring(0, index);
+	}
+
+	// Class file generation. The generated methods have no branches, so version 52 classes don't need stack maps.
+
+	private static byte[] write(String className, Class<?> host, List<Slot> slots) {
+		ConstantPool pool = new ConstantPool();
+		String thisName = className.replace('.', '/');
+		String hostName = host.getName().replace('.', '/');
+		String hostDescriptor = "L" + hostName + ";";
+
+		try {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(body);
+
+			out.writeShort(0x0031); // public final super
+			out.writeShort(pool.classRef(thisName));
+			out.writeShort(pool.classRef(SUPER_NAME));
+			out.writeShort(0); // interfaces
+
+			out.writeShort(1);
+			out.writeShort(0x0012); // private final
+			out.writeShort(pool.utf8("target"));
+			out.writeShort(pool.utf8(hostDescriptor));
+			out.writeShort(0);
+
+			out.writeShort(slots.size() + 1);
+
+			ByteArrayOutputStream code = new ByteArrayOutputStream();
+			code.write(0x2a); // aload_0
+			code.write(0x2b); // aload_1
+			code.write(0x2c); // aload_2
+			writeInstruction(code, 0xb7, pool.methodRef(SUPER_NAME, "<init>", CONSTRUCTOR_DESCRIPTOR));
+			code.write(0x2a);
+			code.write(0x2b);
+			writeInstruction(code, 0xc0, pool.classRef(hostName));
+			writeInstruction(code, 0xb5, pool.fieldRef(thisName, "target", hostDescriptor));
+			code.write(0xb1); // return
+			writeMethod(out, pool, "<init>", CONSTRUCTOR_DESCRIPTOR, code.toByteArray(), 3, 3);
+
+			for (Slot slot : slots) {
+				code.reset();
+				code.write(0x2a);
+				writeInstruction(code, 0xb4, pool.fieldRef(thisName, "target", hostDescriptor));
+				Class<?>[] parameters = slot.type.parameterArray();
+				for (int i = 0; i < parameters.length; i++) {
+					code.write(parameters[i].isPrimitive() ? 0x15 : 0x19); // iload or aload
+					code.write(i + 1);
+				}
+				writeInstruction(code, 0xb6, pool.methodRef(hostName, slot.name, slot.descriptor));
+
+				Class<?> returnType = slot.type.returnType();
+				if (returnType == void.class) {
+					code.write(0xb1);
+				} else if (returnType.isPrimitive()) {
+					code.write(0xac); // ireturn
+				} else {
+					code.write(0xb0); // areturn
+				}
+
+				int size = parameters.length + 1;
+				writeMethod(out, pool, slot.name, slot.descriptor, code.toByteArray(), size, size);
+			}
+
+			out.writeShort(0); // attributes
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream file = new DataOutputStream(bytes);
+			file.writeInt(0xcafebabe);
+			file.writeShort(0);
+			file.writeShort(52);
+			file.writeShort(pool.count);
+			pool.bytes.writeTo(file);
+			body.writeTo(file);
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new IllegalStateException("ByteArrayOutputStream threw an IOException", e);
+		}
+	}
+
+	private static void writeInstruction(ByteArrayOutputStream code, int opcode, int index) {
+		code.write(opcode);
+		code.write(index >> 8);
+		code.write(index);
+	}
+
+	private static void writeMethod(
+		DataOutputStream out, ConstantPool pool, String name, String descriptor, byte[] code, int maxStack,
+		int maxLocals
+	) throws IOException {
+		out.writeShort(0x0001); // public
+		out.writeShort(pool.utf8(name));
+		out.writeShort(pool.utf8(descriptor));
+		out.writeShort(1);
+		out.writeShort(pool.utf8("Code"));
+		out.writeInt(12 + code.length);
+		out.writeShort(maxStack);
+		out.writeShort(maxLocals);
+		out.writeInt(code.length);
+		out.write(code);
+		out.writeShort(0); // exception table
+		out.writeShort(0); // attributes
+	}
+
+	private static final class Slot {
+		final String name;
+		final MethodType type;
+		final String descriptor;
+
+		Slot(String name, Class<?> returnType, Class<?>... parameters) {
+			this.name = name;
+			this.type = MethodType.methodType(returnType, parameters);
+			this.descriptor = type.toMethodDescriptorString();
+		}
+
+		boolean matches(Method method) {
+			return method.getName().equals(name) && method.getReturnType() == type.returnType()
+				&& Arrays.equals(method.getParameterTypes(), type.parameterArray());
+		}
+	}
+
+	private static final class ConstantPool {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(bytes);
+		private final Map<String, Integer> indices = new HashMap<>();
+		int count = 1;
+
+		int utf8(String value) throws IOException {
+			Integer index = indices.get("U" + value);
+			if (index != null) {
+				return index;
+			}
+			out.writeByte(1);
+			out.writeUTF(value);
+			return add("U" + value);
+		}
+
+		int classRef(String internalName) throws IOException {
+			Integer index = indices.get("C" + internalName);
+			if (index != null) {
+				return index;
+			}
+			int name = utf8(internalName);
+			out.writeByte(7);
+			out.writeShort(name);
+			return add("C" + internalName);
+		}
+
+		int fieldRef(String owner, String name, String descriptor) throws IOException {
+			return memberRef(9, owner, name, descriptor);
+		}
+
+		int methodRef(String owner, String name, String descriptor) throws IOException {
+			return memberRef(10, owner, name, descriptor);
+		}
+
+		private int memberRef(int tag, String owner, String name, String descriptor) throws IOException {
+			String key = tag + owner + "." + name + descriptor;
+			Integer index = indices.get(key);
+			if (index != null) {
+				return index;
+			}
+			int ownerIndex = classRef(owner);
+			int nameAndType = nameAndType(name, descriptor);
+			out.writeByte(tag);
+			out.writeShort(ownerIndex);
+			out.writeShort(nameAndType);
+			return add(key);
+		}
+
+		private int nameAndType(String name, String descriptor) throws IOException {
+			String key = "N" + name + ":" + descriptor;
+			Integer index = indices.get(key);
+			if (index != null) {
+				return index;
+			}
+			int nameIndex = utf8(name);
+			int descriptorIndex = utf8(descriptor);
+			out.writeByte(12);
+			out.writeShort(nameIndex);
+			out.writeShort(descriptorIndex);
+			return add(key);
+		}
+
+		private int add(String key) {
+			int index = count++;
+			indices.put(key, index);
+			return index;
+		}
+	}
+}